@@ -1,9 +1,21 @@
 package applications;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import logging.PikaLogger;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.runtime.MemoryManager;
 
 public class PikaApplication {
 	private static final int EXIT_CODE_FOR_ERROR = 1;
+	private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+	private static final String MEMORY_MODE_PROPERTY = "pika.memory.mode";
 	private static String outputDirectory = "output/";
 
 	public PikaApplication() {
@@ -18,6 +30,13 @@ public class PikaApplication {
 		ensureSourceFileExists(args, applicationName); 			// first arg
 		ensureTargetDirectoryExists(args, applicationName);		// second (optional) arg
 	}
+	// for applications that only read their source file, and write nothing.
+	protected static void checkSourceArgument(String[] args, String applicationName) {
+		if(args.length != 1) {
+			printUsageMessage(applicationName, "");
+		}
+		ensureSourceFileExists(args, applicationName);
+	}
 
 	
 	protected static boolean correctNumArguments(String[] args) {
@@ -65,6 +84,10 @@ public class PikaApplication {
 		return filename.substring(start, end);
 	}
 	
+	// the system property pika.memory.mode picks how the generated program manages its heap.
+	protected static MemoryManager.Mode memoryMode() {
+		return MemoryManager.Mode.forName(System.getProperty(MEMORY_MODE_PROPERTY));
+	}
 	protected static String className() {
 		return (new Throwable()).getStackTrace()[0].getClassName();
 	}
@@ -84,6 +107,21 @@ public class PikaApplication {
 	}
 
 
+	// streams the code straight to the file, without building it as a String first.
+	protected static void printCodeToFile(String filename, ASMCodeFragment code)
+			throws FileNotFoundException {
+		File file = new File(filename);
+		try(Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)), OUTPUT_BUFFER_SIZE)) {
+			code.writeTo(out);
+		} catch (FileNotFoundException e) {
+			throw e;								// the caller reports files it can't open.
+		} catch (IOException e) {
+			PikaLogger log = PikaLogger.getLogger("compiler.PikaApplication");
+			log.severe("cannot write " + filename + ": " + e.getMessage());
+		}
+	}
+
+
 	protected static void printUsageMessage(String applicationName, String errorMessage) {
 		System.err.println("usage: " + applicationName + " filename" + " [target output directory]");
 		System.err.println(errorMessage);
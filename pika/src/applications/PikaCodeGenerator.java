@@ -3,7 +3,6 @@ package applications;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.PrintStream;
 
 import asmCodeGenerator.ASMCodeGenerator;
 import asmCodeGenerator.codeStorage.ASMCodeFragment;
@@ -16,6 +15,7 @@ import tokens.Tokens;
 
 public class PikaCodeGenerator extends PikaApplication {
 	/** Compiles a Pika file.
+	 *  The system property pika.memory.mode picks the MemoryManager.Mode.
 	 * @param args
 	 * @throws FileNotFoundException 
 	 */
@@ -69,16 +69,9 @@ public class PikaCodeGenerator extends PikaApplication {
 	// normal code generation.
 	private static void generateAndPrintCode(String outfile, ParseNode decoratedTree) 
 			throws FileNotFoundException {
-		ASMCodeFragment code = ASMCodeGenerator.generate(decoratedTree);
+		ASMCodeFragment code = ASMCodeGenerator.generate(decoratedTree, memoryMode());
 		printCodeToFile(outfile, code);
 	}
-	private static void printCodeToFile(String filename, ASMCodeFragment code)
-			throws FileNotFoundException {
-		File file = new File(filename);
-		PrintStream out = new PrintStream(file);
-		out.print(code);
-		out.close();
-	}
 
 	private static boolean thereAreErrors() {
 		return logging.PikaLogger.hasErrors();
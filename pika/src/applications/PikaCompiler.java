@@ -3,7 +3,6 @@ package applications;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.PrintStream;
 
 import optimizer.Optimizer;
 import asmCodeGenerator.ASMCodeGenerator;
@@ -17,6 +16,7 @@ import tokens.Tokens;
 
 public class PikaCompiler extends PikaApplication {
 	/** Compiles a Pika file.
+	 *  The system property pika.memory.mode picks the MemoryManager.Mode.
 	 * @param args
 	 * @throws FileNotFoundException 
 	 */
@@ -70,17 +70,10 @@ public class PikaCompiler extends PikaApplication {
 	// normal code generation and optimization.
 	private static void generateOptimizeAndPrintCode(String outfile, ParseNode decoratedTree) 
 			throws FileNotFoundException {
-		ASMCodeFragment code = ASMCodeGenerator.generate(decoratedTree);
+		ASMCodeFragment code = ASMCodeGenerator.generate(decoratedTree, memoryMode());
 		ASMCodeFragment optimized = Optimizer.optimize(code);
 		printCodeToFile(outfile, optimized);
 	}
-	private static void printCodeToFile(String filename, ASMCodeFragment code)
-			throws FileNotFoundException {
-		File file = new File(filename);
-		PrintStream out = new PrintStream(file);
-		out.print(code);
-		out.close();
-	}
 
 	private static boolean thereAreErrors() {
 		return logging.PikaLogger.hasErrors();
@@ -0,0 +1,36 @@
+package applications;
+
+import emulator.EmulatorException;
+import emulator.ExecutionTier;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+
+public class PikaEmulator extends PikaApplication {
+	private static final int EXIT_CODE_FOR_RUNTIME_ERROR = 2;
+	private static final String TIER_PROPERTY = "pika.emulator.tier";
+
+	/** Runs an ASM file (as written by the Pika compiler) on the in-tree emulator.
+	 *  The system property pika.emulator.tier picks the ExecutionTier.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		checkSourceArgument(args, className());
+
+		run(args[0]);
+	}
+
+	/** runs a file specified by filename, printing its output to System.out.
+	 * @param filename the name of the ASM file to be run.
+	 */
+	public static void run(String filename) {
+		ASMCodeFragment fragment = ASMCodeFragment.readFrom(filename);
+		ExecutionTier tier = ExecutionTier.forName(System.getProperty(TIER_PROPERTY));
+		try {
+			tier.run(fragment, System.out);
+		}
+		catch(EmulatorException e) {
+			System.out.flush();
+			System.err.println("Simulation error: " + e.getMessage());
+			System.exit(EXIT_CODE_FOR_RUNTIME_ERROR);
+		}
+	}
+}
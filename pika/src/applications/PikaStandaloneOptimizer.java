@@ -3,7 +3,6 @@ package applications;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.PrintStream;
 
 import optimizer.Optimizer;
 import asmCodeGenerator.codeStorage.ASMCodeFragment;
@@ -60,13 +59,6 @@ public class PikaStandaloneOptimizer extends PikaApplication {
 		}
 	}
 	
-	private static void printCodeToFile(String filename, ASMCodeFragment code)
-			throws FileNotFoundException {
-		File file = new File(filename);
-		PrintStream out = new PrintStream(file);
-		out.print(code);
-		out.close();
-	}
 
 	private static boolean thereAreErrors() {
 		return logging.PikaLogger.hasErrors();
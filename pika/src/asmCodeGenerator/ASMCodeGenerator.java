@@ -16,41 +16,74 @@ import semanticAnalyzer.types.PrimitiveType;
 import semanticAnalyzer.types.Type;
 import semanticAnalyzer.types.TypeLiteral;
 import symbolTable.Binding;
+import symbolTable.MemoryAccessMethod;
+import symbolTable.MemoryAllocator;
+import symbolTable.MemoryLocation;
+import symbolTable.PositiveMemoryAllocator;
 import symbolTable.Scope;
+import tokens.IdentifierToken;
+import tokens.StringToken;
+import tokens.Symbol;
+import tokens.Token;
 import static asmCodeGenerator.codeStorage.ASMCodeFragment.CodeType.*;
 import static asmCodeGenerator.codeStorage.ASMOpcode.*;
 
 // do not call the code generator if any errors have occurred during analysis.
 public class ASMCodeGenerator {
 	ParseNode root;
-	public HashMap<String,String> stringlist;
-	public HashMap<String,ParseNode> arraylist;
-	public HashMap<String,String[]> looplist;
-	int offset;
+	public HashMap<Symbol,String> stringlist;			// literal text -> its StringConstant label
+	public HashMap<Binding,String> stringvarlist;		// string variable -> label of its literal
+	public HashMap<Binding,ParseNode> arraylist;		// array variable -> its ArrayNode
+	public HashMap<ParseNode,String[]> looplist;		// WhileNode -> its start, block and end labels
+	public HashMap<ParseNode,MemoryLocation[]> indexlist;	// IndexNode -> its array and index slots
+	MemoryAllocator temporaries;						// scratch slots in the temporary block
+	MemoryManager.Mode memoryMode;						// how this program's heap is managed
 
 	public static ASMCodeFragment generate(ParseNode syntaxTree) {
-		ASMCodeGenerator codeGenerator = new ASMCodeGenerator(syntaxTree);
+		return generate(syntaxTree, MemoryManager.Mode.DEFAULT);
+	}
+	public static ASMCodeFragment generate(ParseNode syntaxTree, MemoryManager.Mode memoryMode) {
+		ASMCodeGenerator codeGenerator = new ASMCodeGenerator(syntaxTree, memoryMode);
 		return codeGenerator.makeASM();
 	}
-	public ASMCodeGenerator(ParseNode root) {
+	public ASMCodeGenerator(ParseNode root, MemoryManager.Mode memoryMode) {
 		super();
 		this.root = root;
-		stringlist = new HashMap<String,String>();
-		arraylist = new HashMap<String,ParseNode>();
-		looplist = new HashMap<String,String[]>();
-		offset = 0;
+		this.memoryMode = memoryMode;
+		stringlist = new HashMap<Symbol,String>();
+		stringvarlist = new HashMap<Binding,String>();
+		arraylist = new HashMap<Binding,ParseNode>();
+		looplist = new HashMap<ParseNode,String[]>();
+		indexlist = new HashMap<ParseNode,MemoryLocation[]>();
+		temporaries = new PositiveMemoryAllocator(MemoryAccessMethod.DIRECT_ACCESS_BASE,
+				MemoryLocation.TEMPORARY_VARIABLE_BLOCK);
 	}
 	
 	public ASMCodeFragment makeASM() {
 		ASMCodeFragment code = new ASMCodeFragment(GENERATES_VOID);
-		code.append( MemoryManager.codeForInitialization() );
-		code.append( RunTime.getEnvironment() );
-		code.append( globalVariableBlockASM() );
-		code.append( programASM() );
-		code.append( MemoryManager.codeForAfterApplication() );
+		ASMCodeFragment environment = RunTime.getEnvironment();
+		ASMCodeFragment program = programASM();
+		ASMCodeFragment globals = globalVariableBlockASM();		// after the program has taken its temporaries
+		
+		code.append( MemoryManager.codeForInitialization(memoryMode) );
+		code.append( environment );
+		code.append( globals );
+		code.append( program );
+		code.append( MemoryManager.codeForAfterApplication(memoryMode) );
 		
 		return code;
 	}
+	// the stringlist key for a token: the interned text of a string literal,
+	// or of the lexeme with its quotes dropped.
+	public static Symbol stringKey(Token token) {
+		if(token instanceof StringToken) {
+			return ((StringToken)token).getValueSymbol();
+		}
+		if(token instanceof IdentifierToken) {
+			return ((IdentifierToken)token).getSymbol();
+		}
+		return Symbol.intern(token.getLexeme().replaceAll("\"", ""));
+	}
 	private ASMCodeFragment globalVariableBlockASM() {
 		assert root.hasScope();
 		Scope scope = root.getScope();
@@ -59,6 +92,12 @@ public class ASMCodeGenerator {
 		ASMCodeFragment code = new ASMCodeFragment(GENERATES_VOID);
 		code.add(DLabel, RunTime.GLOBAL_MEMORY_BLOCK);
 		code.add(DataZ, globalBlockSize);
+		
+		int temporaryBlockSize = temporaries.getMaxAllocatedSize();
+		if(temporaryBlockSize > 0) {
+			code.add(DLabel, RunTime.TEMPORARY_MEMORY_BLOCK);
+			code.add(DataZ, temporaryBlockSize);
+		}
 		return code;
 	}
 	private ASMCodeFragment programASM() {
@@ -108,6 +147,32 @@ public class ASMCodeGenerator {
 			codeMap.remove(result);
 			return result;
 		}
+	    
+	    ////////////////////////////////////////////////////////////////////
+        // Temporaries: a slot is allocated between temporaries.saveState()
+	    // and the matching restoreState(), so nested uses get distinct slots.
+		// [... value] -> [...]
+		private void storeITemporary(MemoryLocation slot) {
+			slot.generateAddress(code, "%temporary");
+			code.add(Exchange);
+			code.add(StoreI);
+		}
+		// [...] -> [... value]
+		private void loadITemporary(MemoryLocation slot) {
+			slot.generateAddress(code, "%temporary");
+			code.add(LoadI);
+		}
+		// [... address address+4 numerator denominator] -> [...]
+		private void storeRational() {
+			temporaries.saveState();
+			MemoryLocation denominator = temporaries.allocate(4);
+			storeITemporary(denominator);
+			code.add(StoreI);
+			loadITemporary(denominator);
+			code.add(StoreI);
+			temporaries.restoreState();
+		}
+		
 	    public  ASMCodeFragment removeRootCode(ParseNode tree) {
 			return getAndRemoveCode(tree);
 		}		
@@ -212,7 +277,7 @@ public class ASMCodeGenerator {
 
 		public void visitLeave(PrintStatementNode node) {
 			newVoidCode(node);
-			new PrintStatementGenerator(code, this, stringlist, arraylist).generate(node);	
+			new PrintStatementGenerator(code, this, stringlist, stringvarlist, arraylist, temporaries).generate(node);	
 		}
 		public void visit(NewlineNode node) {
 			newVoidCode(node);
@@ -241,34 +306,26 @@ public class ASMCodeGenerator {
 				code.add(PushI, 4);
 				code.add(Add);
 				code.append(rvalue);
-				code.add(Duplicate);
-				code.add(PushI, 11000);
-				code.add(Exchange);
-				code.add(StoreI);
-				code.add(Pop);
-				code.add(StoreI);
-				code.add(PushI, 11000);
-				code.add(LoadI);
-				code.add(StoreI);
+				storeRational();
 			}
 			else {
 				IdentifierNode idennode = (IdentifierNode) node.child(0);
 				if(node.child(1).getType().getType() == PrimitiveType.STRING) {
-					if(node.child(1).getToken().toString().contains("CAST")) {
+					if(node.child(1).getToken().isLextant(Punctuator.CAST)) {
 						ParseNode tempnode = node.child(1);
 						while(!tempnode.getChildren().isEmpty()) {
 							tempnode = tempnode.child(0);
 						}
-						String label = stringlist.get(tempnode.getToken().getLexeme().replaceAll("\"", ""));
-						stringlist.put(idennode.findVariableBinding().toString(), label);
+						String label = stringlist.get(stringKey(tempnode.getToken()));
+						stringvarlist.put(idennode.findVariableBinding(), label);
 					}
 					else {
-						String label = stringlist.get(node.child(1).getToken().getLexeme().replaceAll("\"", ""));
-						stringlist.put(idennode.findVariableBinding().toString(),label);
+						String label = stringlist.get(stringKey(node.child(1).getToken()));
+						stringvarlist.put(idennode.findVariableBinding(), label);
 					}
 				}
 				else if (node.child(1).getType().getType() instanceof ArrayType) {
-					arraylist.put(idennode.findVariableBinding().toString(),node.child(1));
+					arraylist.put(idennode.findVariableBinding(), node.child(1));
 				}
 			
 				code.append(lvalue);
@@ -311,25 +368,17 @@ public class ASMCodeGenerator {
 			newVoidCode(node);
 			ASMCodeFragment lvalue = removeAddressCode(node.child(0));
 			ASMCodeFragment rvalue = removeValueCode(node.child(1));
-			if ((node.child(1).getType().getType() == PrimitiveType.RATIONAL) && (node.child(1).toString().contains("BinaryOperatorNode (OVER) RATIONAL"))) {
+			if ((node.child(1).getType().getType() == PrimitiveType.RATIONAL) && (containsRationalOver(node.child(1)))) {
 				
 				code.append(lvalue);
 				code.add(Duplicate);
 				code.add(PushI, 4);
 				code.add(Add);
 				code.append(rvalue);
-				code.add(Duplicate);
-				code.add(PushI, 11000);
-				code.add(Exchange);
-				code.add(StoreI);
-				code.add(Pop);
-				code.add(StoreI);
-				code.add(PushI, 11000);
-				code.add(LoadI);
-				code.add(StoreI);
+				storeRational();
 				
 			}
-			else if ((node.child(1).getType().getType() == PrimitiveType.RATIONAL) && (node.child(1).toString().contains("IntegerConstantNode"))) {
+			else if ((node.child(1).getType().getType() == PrimitiveType.RATIONAL) && (node.child(1).containsNodeOfClass(IntegerConstantNode.class))) {
 				
 				code.append(lvalue);
 				code.add(Duplicate);
@@ -337,18 +386,10 @@ public class ASMCodeGenerator {
 				code.add(Add);
 				code.append(rvalue);
 				code.add(PushI, 1);
-				code.add(Duplicate);
-				code.add(PushI, 11000);
-				code.add(Exchange);
-				code.add(StoreI);
-				code.add(Pop);
-				code.add(StoreI);
-				code.add(PushI, 11000);
-				code.add(LoadI);
-				code.add(StoreI);
+				storeRational();
 				
 			}
-			else if ((node.child(1).getType().getType() == PrimitiveType.RATIONAL) && (node.child(1).toString().contains("FloatConstantNode"))) {
+			else if ((node.child(1).getType().getType() == PrimitiveType.RATIONAL) && (node.child(1).containsNodeOfClass(FloatConstantNode.class))) {
 				
 				code.append(lvalue);
 				code.add(Duplicate);
@@ -357,18 +398,10 @@ public class ASMCodeGenerator {
 				code.append(rvalue);
 				code.add(ConvertI);
 				code.add(PushI, 1);
-				code.add(Duplicate);
-				code.add(PushI, 11000);
-				code.add(Exchange);
-				code.add(StoreI);
-				code.add(Pop);
-				code.add(StoreI);
-				code.add(PushI, 11000);
-				code.add(LoadI);
-				code.add(StoreI);
+				storeRational();
 				
 			}
-			else if ((node.child(1).getType().getType() == PrimitiveType.RATIONAL) && (node.child(1).toString().contains("CharacterConstantNode"))) {
+			else if ((node.child(1).getType().getType() == PrimitiveType.RATIONAL) && (node.child(1).containsNodeOfClass(CharacterConstantNode.class))) {
 				
 				code.append(lvalue);
 				code.add(Duplicate);
@@ -376,15 +409,7 @@ public class ASMCodeGenerator {
 				code.add(Add);
 				code.append(rvalue);
 				code.add(PushI, 1);
-				code.add(Duplicate);
-				code.add(PushI, 11000);
-				code.add(Exchange);
-				code.add(StoreI);
-				code.add(Pop);
-				code.add(StoreI);
-				code.add(PushI, 11000);
-				code.add(LoadI);
-				code.add(StoreI);
+				storeRational();
 				
 			}
 			else {
@@ -395,44 +420,43 @@ public class ASMCodeGenerator {
 						while (childnode instanceof BinaryOperatorNode) {
 							childnode = childnode.child(0);
 						}
-						String label1 = stringlist.get(childnode.getToken().getLexeme().replaceAll("\"", ""));
-						stringlist.put(idennode.findVariableBinding().toString(),label1);
+						String label1 = stringlist.get(stringKey(childnode.getToken()));
+						stringvarlist.put(idennode.findVariableBinding(), label1);
 					}
 					else {
-						String label = stringlist.get(idennode.getDeclarationScope().toString());
-						stringlist.put(idennode.findVariableBinding().toString(),label);
+						stringvarlist.put(idennode.findVariableBinding(), null);
 					}
 				}
 				
 				code.append(lvalue);
 				code.append(rvalue);
-				if ((node.child(1).getType().getType() == PrimitiveType.INTEGER) && (node.child(1).toString().contains("FloatConstantNode"))) {
+				if ((node.child(1).getType().getType() == PrimitiveType.INTEGER) && (node.child(1).containsNodeOfClass(FloatConstantNode.class))) {
 					code.add(ConvertI);
 				}
-				else if ((node.child(1).getType().getType() == PrimitiveType.INTEGER) && (node.child(1).toString().contains("OVER"))) {
+				else if ((node.child(1).getType().getType() == PrimitiveType.INTEGER) && (node.child(1).containsLextant(Punctuator.OVER, Punctuator.EXPRESS_OVER))) {
 					code.add(Divide);
 				}
-				else if ((node.child(1).getType().getType() == PrimitiveType.INTEGER) && (node.child(1).toString().contains("CharacterConstantNode"))) {
+				else if ((node.child(1).getType().getType() == PrimitiveType.INTEGER) && (node.child(1).containsNodeOfClass(CharacterConstantNode.class))) {
 				}
-				else if ((node.child(1).getType().getType() == PrimitiveType.FLOAT) && (node.child(1).toString().contains("OVER"))) {
+				else if ((node.child(1).getType().getType() == PrimitiveType.FLOAT) && (node.child(1).containsLextant(Punctuator.OVER, Punctuator.EXPRESS_OVER))) {
 					code.add(ConvertF);
 					code.add(Exchange);
 					code.add(ConvertF);
 					code.add(Exchange);
 					code.add(FDivide);
 				}
-				else if ((node.child(1).getType().getType() == PrimitiveType.FLOAT) && (node.child(1).toString().contains("IntegerConstantNode"))) {
+				else if ((node.child(1).getType().getType() == PrimitiveType.FLOAT) && (node.child(1).containsNodeOfClass(IntegerConstantNode.class))) {
 					code.add(ConvertF);
 				}
-				else if ((node.child(1).getType().getType() == PrimitiveType.FLOAT) && (node.child(1).toString().contains("CharacterConstantNode"))) {
+				else if ((node.child(1).getType().getType() == PrimitiveType.FLOAT) && (node.child(1).containsNodeOfClass(CharacterConstantNode.class))) {
 					code.add(ConvertF);
 				}
-				else if ((node.child(1).getType().getType() == PrimitiveType.CHAR) && (node.child(1).toString().contains("OVER"))) {
+				else if ((node.child(1).getType().getType() == PrimitiveType.CHAR) && (node.child(1).containsLextant(Punctuator.OVER, Punctuator.EXPRESS_OVER))) {
 					code.add(Divide);
 				}
-				else if ((node.child(1).getType().getType() == PrimitiveType.CHAR) && (node.child(1).toString().contains("IntegerConstantNode"))) {
+				else if ((node.child(1).getType().getType() == PrimitiveType.CHAR) && (node.child(1).containsNodeOfClass(IntegerConstantNode.class))) {
 				}
-				else if ((node.child(1).getType().getType() == PrimitiveType.CHAR) && (node.child(1).toString().contains("FloatConstantNode"))) {
+				else if ((node.child(1).getType().getType() == PrimitiveType.CHAR) && (node.child(1).containsNodeOfClass(FloatConstantNode.class))) {
 					code.add(ConvertI);
 				}
 				Type type = node.child(1).getType().getType();
@@ -491,7 +515,7 @@ public class ASMCodeGenerator {
 			ASMCodeFragment exprval = removeValueCode(node.child(0));
 			ASMCodeFragment block = removeVoidCode(node.child(1));
 			
-			String[] labels = looplist.get(node.getLocalScope().toString());
+			String[] labels = looplist.get(node);
 			
 			if (labels != null) {
 				String startLabel = labels[0];
@@ -531,7 +555,7 @@ public class ASMCodeGenerator {
 			String[] labels = null;
 			for (ParseNode nodes : node.pathToRoot()) {
 				if (nodes instanceof WhileNode) {
-					labels = looplist.get(nodes.getLocalScope().toString());
+					labels = looplist.get(nodes);
 					break;
 				}
 			}
@@ -545,7 +569,7 @@ public class ASMCodeGenerator {
 				String[] labels1 = {startLabel, blockLabel, endLabel};
 				for (ParseNode nodes : node.pathToRoot()) {
 					if (nodes instanceof WhileNode) {
-						looplist.put(nodes.getLocalScope().toString(),labels1);
+						looplist.put(nodes, labels1);
 						break;
 					}
 				}
@@ -562,7 +586,7 @@ public class ASMCodeGenerator {
 			String[] labels = null;
 			for (ParseNode nodes : node.pathToRoot()) {
 				if (nodes instanceof WhileNode) {
-					labels = looplist.get(nodes.getLocalScope().toString());
+					labels = looplist.get(nodes);
 					break;
 				}
 			}
@@ -576,7 +600,7 @@ public class ASMCodeGenerator {
 				String[] labels1 = {startLabel, blockLabel, endLabel};
 				for (ParseNode nodes : node.pathToRoot()) {
 					if (nodes instanceof WhileNode) {
-						looplist.put(nodes.getLocalScope().toString(),labels1);
+						looplist.put(nodes, labels1);
 						break;
 					}
 				}
@@ -973,10 +997,8 @@ public class ASMCodeGenerator {
 			code.append(arg1);	
 			if(((node.child(0).getType().getType() == PrimitiveType.INTEGER) || (node.child(0).getType().getType() == PrimitiveType.CHAR)) && (node.child(1).getType().getType() == TypeLiteral.RAT))
 				castrational();
-			if((node.child(0).getType().getType() == PrimitiveType.FLOAT) && (node.child(1).getType().getType() == TypeLiteral.RAT)) {
+			if((node.child(0).getType().getType() == PrimitiveType.FLOAT) && (node.child(1).getType().getType() == TypeLiteral.RAT))
 				castfrational();
-				lowestterms();
-			}
 			if((node.child(0).getType().getType() == PrimitiveType.INTEGER) && (node.child(1).getType().getType() == TypeLiteral.FLOAT))
 				code.add(ConvertF);
 			if((node.child(0).getType().getType() == PrimitiveType.FLOAT) && (node.child(1).getType().getType() == TypeLiteral.INT))
@@ -1040,8 +1062,8 @@ public class ASMCodeGenerator {
 			ASMCodeFragment arg2 = removeValueCode(node.child(1));
 			Type arg1type = null;
 			Type arg2type = null;
-			String arg1pred = node.child(0).toString().split("\n")[0];
-			String arg2pred = node.child(1).toString().split("\n")[0];
+			ParseNode arg1node = node.child(0);
+			ParseNode arg2node = node.child(1);
 			
 			code.append(arg1);
 			if (node.child(0) instanceof IndexNode) {
@@ -1052,39 +1074,39 @@ public class ASMCodeGenerator {
 				arg1type = node.child(0).getType().getType();
 			}
 			if (arg1type == PrimitiveType.INTEGER) {
-				if (arg1pred.contains("FloatConstantNode")) {
+				if (arg1node instanceof FloatConstantNode) {
 					code.add(ConvertI);
 					code.append(arg2);
-					if (arg2pred.contains("BinaryOperatorNode (OVER)"))
+					if (isOverOperator(arg2node))
 						code.add(Divide);
 				}
-				else if (arg1pred.contains("CharacterConstantNode")) {
+				else if (arg1node instanceof CharacterConstantNode) {
 					code.append(arg2);
-					if (arg2pred.contains("FloatConstantNode"))
+					if (arg2node instanceof FloatConstantNode)
 						code.add(ConvertI);
-					else if (arg2pred.contains("BinaryOperatorNode (OVER)"))
+					else if (isOverOperator(arg2node))
 						code.add(Divide);
 				}
-				else if ((arg1pred.contains("BinaryOperatorNode (OVER)")) && (!node.getToken().isLextant(Punctuator.OVER))) {
+				else if ((isOverOperator(arg1node)) && (!node.getToken().isLextant(Punctuator.OVER))) {
 					code.add(Divide);
 					code.append(arg2);
-					if (arg2pred.contains("FloatConstantNode"))
+					if (arg2node instanceof FloatConstantNode)
 						code.add(ConvertI);
 				}
 				else if (node.child(0).nChildren() > 0) {
 					if (node.child(0).child(0).getType() == PrimitiveType.FLOAT) {
 						code.add(ConvertI);
 						code.append(arg2);
-						if (arg2pred.contains("BinaryOperatorNode (OVER)"))
+						if (isOverOperator(arg2node))
 							code.add(Divide);
-						else if (arg2pred.contains("FloatConstantNode"))
+						else if (arg2node instanceof FloatConstantNode)
 							code.add(ConvertI);
 					}
 					else if (node.child(0).child(0).getType() == PrimitiveType.CHAR) {
 						code.append(arg2);
-						if (arg2pred.contains("FloatConstantNode"))
+						if (arg2node instanceof FloatConstantNode)
 							code.add(ConvertI);
-						else if (arg2pred.contains("BinaryOperatorNode (OVER)"))
+						else if (isOverOperator(arg2node))
 							code.add(Divide);
 					}
 					else if (node.child(0).child(0).getType() == PrimitiveType.RATIONAL) {
@@ -1104,14 +1126,14 @@ public class ASMCodeGenerator {
 					if (node.child(0).child(0).getType() == PrimitiveType.INTEGER) {
 						code.add(ConvertF);
 						code.append(arg2);
-						if (arg2pred.contains("BinaryOperatorNode (OVER)"))
+						if (isOverOperator(arg2node))
 							code.add(Divide);
 					}
 				}
-				else if ((arg1pred.contains("IntegerConstantNode"))) {
+				else if ((arg1node instanceof IntegerConstantNode)) {
 					code.add(ConvertF);
 					code.append(arg2);
-					if (arg2pred.contains("BinaryOperatorNode (OVER)"))
+					if (isOverOperator(arg2node))
 						code.add(Divide);
 				}
 				else {
@@ -1119,17 +1141,17 @@ public class ASMCodeGenerator {
 				}
 			}
 			else if (arg1type == PrimitiveType.RATIONAL) {
-				if (arg1pred.contains("IntegerConstantNode")) {
+				if (arg1node instanceof IntegerConstantNode) {
 					code.add(PushI, 1);
 					code.append(arg2);
-					if (arg2pred.contains("FloatConstantNode"))
+					if (arg2node instanceof FloatConstantNode)
 						code.add(ConvertI);
 				}
 				else if (node.child(0).nChildren() > 0) {
 					if ((node.child(0).child(0).getType() == PrimitiveType.INTEGER) && (!node.child(0).getToken().isLextant(Punctuator.OVER))) {
 						code.add(PushI, 1);
 						code.append(arg2);
-						if (arg2pred.contains("FloatConstantNode"))
+						if (arg2node instanceof FloatConstantNode)
 							code.add(ConvertI);
 					}
 					else {
@@ -1156,6 +1178,21 @@ public class ASMCodeGenerator {
 			ASMOpcode opcode = opcodeForOperator(node.getOperator(),arg1type,arg2type);
 			code.add(opcode);							// type-dependent! (opcode is different for floats and for ints)
 		}
+		// structural tests on operands, rather than searching their printed subtrees.
+		private boolean isOverOperator(ParseNode node) {
+			return (node instanceof BinaryOperatorNode) && node.getToken().isLextant(Punctuator.OVER);
+		}
+		private boolean containsRationalOver(ParseNode node) {
+			if(isOverOperator(node) && node.getType().getType() == PrimitiveType.RATIONAL) {
+				return true;
+			}
+			for(ParseNode child : node.getChildren()) {
+				if(containsRationalOver(child)) {
+					return true;
+				}
+			}
+			return false;
+		}
 		private ASMOpcode opcodeForOperator(Lextant lextant, Type arg1, Type arg2) {
 			assert(lextant instanceof Punctuator);
 			Punctuator punctuator = (Punctuator)lextant;
@@ -1166,8 +1203,7 @@ public class ASMCodeGenerator {
 			if  ((arg1 == PrimitiveType.FLOAT) && (arg2 == PrimitiveType.FLOAT))
 				return FAdd;
 			if ((arg1 == PrimitiveType.RATIONAL) && (arg2 == PrimitiveType.RATIONAL)) {
-				rationaladd();
-				lowestterms();
+				code.add(Call, RunTime.RATIONAL_ADD);
 				return Nop;
 			}
 			case SUBTRACT:
@@ -1176,8 +1212,7 @@ public class ASMCodeGenerator {
 			if  ((arg1 == PrimitiveType.FLOAT) && (arg2 == PrimitiveType.FLOAT))
 				return FSubtract;
 			if ((arg1 == PrimitiveType.RATIONAL) && (arg2 == PrimitiveType.RATIONAL)) {
-				rationalsub();
-				lowestterms();
+				code.add(Call, RunTime.RATIONAL_SUBTRACT);
 				return Nop;
 			}
 			case MULTIPLY: 
@@ -1186,8 +1221,7 @@ public class ASMCodeGenerator {
 			if  ((arg1 == PrimitiveType.FLOAT) && (arg2 == PrimitiveType.FLOAT))
 				return FMultiply;
 			if ((arg1 == PrimitiveType.RATIONAL) && (arg2 == PrimitiveType.RATIONAL)) {
-				rationalmul();
-				lowestterms();
+				code.add(Call, RunTime.RATIONAL_MULTIPLY);
 				return Nop;
 			}
 			case DIVIDE: 
@@ -1202,30 +1236,25 @@ public class ASMCodeGenerator {
 				return FDivide;
 			}
 			if ((arg1 == PrimitiveType.RATIONAL) && (arg2 == PrimitiveType.RATIONAL)) {
-				rationaldiv();
-				lowestterms();
+				code.add(Call, RunTime.RATIONAL_DIVIDE);
 				return Nop;
 			}
 			case OVER:
 				code.add(Duplicate);
 				code.add(JumpFalse, "$$i-divide-by-zero" );
-				lowestterms();
+				code.add(Call, RunTime.RATIONAL_NORMALIZE);
 				return Nop;
 			case EXPRESS_OVER:
 			if (arg1 == PrimitiveType.RATIONAL)
-				ratexpressover();
+				code.add(Call, RunTime.RATIONAL_EXPRESS_OVER);
 			if (arg1 == PrimitiveType.FLOAT)
 				floatexpressover();
 				return Nop;
 			case RATIONALIZE:
-			if (arg1 == PrimitiveType.RATIONAL) {
-				rationalizerat();
-				lowestterms();
-			}
-			if (arg1 == PrimitiveType.FLOAT) {
-				rationalizefloat();
-				lowestterms();
-			}
+			if (arg1 == PrimitiveType.RATIONAL)
+				code.add(Call, RunTime.RATIONAL_RATIONALIZE);
+			if (arg1 == PrimitiveType.FLOAT)
+				code.add(Call, RunTime.FLOAT_RATIONALIZE);
 				return Nop;
 			default:
 				assert false : "unimplemented operator in opcodeForOperator";
@@ -1233,161 +1262,6 @@ public class ASMCodeGenerator {
 			return null;
 		}
 		
-		private void rationaladd() {
-			
-			code.add(Duplicate);
-			code.add(PushI, 40000);
-			code.add(Exchange);
-			code.add(StoreI);
-			code.add(Exchange);
-			code.add(Duplicate);
-			code.add(PushI, 40004);
-			code.add(Exchange);
-			code.add(StoreI);
-			code.add(Pop);
-			code.add(Pop);
-			code.add(Duplicate);
-			code.add(PushI, 40008);
-			code.add(Exchange);
-			code.add(StoreI);
-			code.add(PushI, 40004);
-			code.add(LoadI);
-			code.add(Multiply);
-			code.add(Exchange);
-			code.add(PushI, 40000);
-			code.add(LoadI);
-			code.add(Multiply);
-			code.add(Add);
-			code.add(PushI, 40000);
-			code.add(LoadI);
-			code.add(PushI, 40008);
-			code.add(LoadI);
-			code.add(Multiply);
-			
-		}
-		
-		private void rationalsub() {
-			
-			code.add(Duplicate);
-			code.add(PushI, 40000);
-			code.add(Exchange);
-			code.add(StoreI);
-			code.add(Exchange);
-			code.add(Duplicate);
-			code.add(PushI, 40004);
-			code.add(Exchange);
-			code.add(StoreI);
-			code.add(Pop);
-			code.add(Pop);
-			code.add(Duplicate);
-			code.add(PushI, 40008);
-			code.add(Exchange);
-			code.add(StoreI);
-			code.add(PushI, 40004);
-			code.add(LoadI);
-			code.add(Multiply);
-			code.add(Exchange);
-			code.add(PushI, 40000);
-			code.add(LoadI);
-			code.add(Multiply);
-			code.add(Exchange);
-			code.add(Subtract);
-			code.add(PushI, 40000);
-			code.add(LoadI);
-			code.add(PushI, 40008);
-			code.add(LoadI);
-			code.add(Multiply);
-		}
-		
-		private void rationalmul() {
-			
-			code.add(Exchange);
-			code.add(PushI, 40004);
-			code.add(Exchange);
-			code.add(StoreI);
-			code.add(Multiply);
-			code.add(Exchange);
-			code.add(PushI, 40004);
-			code.add(LoadI);
-			code.add(Multiply);
-			code.add(Exchange);
-			
-		}
-		
-		private void rationaldiv() {
-			
-			code.add(PushI, 40004);
-			code.add(Exchange);
-			code.add(StoreI);
-			code.add(Multiply);
-			code.add(Exchange);
-			code.add(PushI, 40004);
-			code.add(LoadI);
-			code.add(Multiply);
-			code.add(Exchange);
-			
-		}
-		
-		private void lowestterms() {
-			Labeller label = new Labeller("gcd");
-			String whileloop = label.newLabel("whileloop");
-			String lowerterms = label.newLabel("lower");
-			
-			code.add(Duplicate);
-			code.add(PushI, 20000);
-			code.add(Exchange);
-			code.add(StoreI);
-			code.add(Exchange);
-			code.add(Duplicate);
-			code.add(PushI, 20004);
-			code.add(Exchange);
-			code.add(StoreI);
-			code.add(Exchange);
-			code.add(Exchange);
-			code.add(Jump, whileloop);
-
-			code.add(Label, whileloop);
-			code.add(Exchange);
-			code.add(Duplicate);
-			code.add(PushI, 19996);
-			code.add(Exchange);
-			code.add(StoreI);
-			code.add(Remainder);
-			code.add(Duplicate);
-			code.add(PushI, 19996);
-			code.add(LoadI);
-			code.add(Exchange);
-			code.add(JumpTrue, whileloop);
-			code.add(Jump, lowerterms);
-			
-			code.add(Label, lowerterms);
-			code.add(Exchange);
-			code.add(Pop);
-			code.add(PushI, 20004);
-			code.add(LoadI);
-			code.add(Exchange);
-			code.add(Divide);
-			code.add(PushI, 20000);
-			code.add(LoadI);
-			code.add(PushI, 19996);
-			code.add(LoadI);
-			code.add(Divide);
-		}
-
-		private void ratexpressover() {
-			
-			code.add(PushI, 30000);
-			code.add(Exchange);
-			code.add(StoreI);
-			code.add(Exchange);
-			code.add(PushI, 30000);
-			code.add(LoadI);
-			code.add(Multiply);
-			code.add(Exchange);
-			code.add(Divide);
-			
-		}
-		
 		private void floatexpressover() {
 			
 			code.add(ConvertF);
@@ -1396,26 +1270,6 @@ public class ASMCodeGenerator {
 			
 		}
 		
-		private void rationalizerat() {
-			
-			ratexpressover();
-			code.add(PushI, 30000);
-			code.add(LoadI);
-			
-		}
-		
-		private void rationalizefloat() {
-			
-			code.add(Duplicate);
-			code.add(PushI, 30000);
-			code.add(Exchange);
-			code.add(StoreI);
-			floatexpressover();
-			code.add(PushI, 30000);
-			code.add(LoadI);
-			
-		}
-		
 		private void castrational() {
 			
 			code.add(PushI, 1);
@@ -1425,7 +1279,7 @@ public class ASMCodeGenerator {
 		private void castfrational() {
 			
 			code.add(PushI, 223092870);
-			rationalizefloat();
+			code.add(Call, RunTime.FLOAT_RATIONALIZE);
 			
 		}
 		
@@ -1446,13 +1300,9 @@ public class ASMCodeGenerator {
 			String subtypesize = label.newLabel("subtypesize");
 			String data = label.newLabel("data");
 			Type argtype = node.child(0).getType().getType();
-			arraylist.put(node.toString(), node);
 
-			code.add(PushD, MemoryManager.MEM_MANAGER_ALLOCATE);
-			code.add(PushI, offset);
-			code.add(Add);
+			MemoryManager.allocateInline(code, memoryMode, 16 + argtype.getSize() * node.nChildren());
 			code.add(Duplicate);
-			code.add(DataZ, 16 + node.getType().getType().getSize() * node.nChildren());
 			code.add(Label, typeid);
 			code.add(Duplicate);
 			code.add(PushI, 4);
@@ -1482,8 +1332,6 @@ public class ASMCodeGenerator {
 			code.add(PushI, node.nChildren());
 			code.add(StoreI);	
 			code.add(Label, data);
-
-			offset = offset + (16 + argtype.getSize()*node.nChildren());
 			
 			for(ParseNode childnodes : node.getChildren()) {
 
@@ -1517,43 +1365,43 @@ public class ASMCodeGenerator {
 					ASMCodeFragment arg2 = removeValueCode(childnodes.child(1));
 					Type arg1type = childnodes.child(0).getType().getType();
 					Type arg2type = childnodes.child(1).getType().getType();
-					String arg1pred = childnodes.child(0).toString().split("\n")[0];
-					String arg2pred = childnodes.child(1).toString().split("\n")[0];
+					ParseNode arg1node = childnodes.child(0);
+					ParseNode arg2node = childnodes.child(1);
 					code.append(arg1);
 					if (arg1type == PrimitiveType.INTEGER) {
-						if (arg1pred.contains("FloatConstantNode")) {
+						if (arg1node instanceof FloatConstantNode) {
 							code.add(ConvertI);
 							code.append(arg2);
-							if (arg2pred.contains("BinaryOperatorNode (OVER)"))
+							if (isOverOperator(arg2node))
 								code.add(Divide);
 						}
-						else if (arg1pred.contains("CharacterConstantNode")) {
+						else if (arg1node instanceof CharacterConstantNode) {
 							code.append(arg2);
-							if (arg2pred.contains("FloatConstantNode"))
+							if (arg2node instanceof FloatConstantNode)
 								code.add(ConvertI);
-							else if (arg2pred.contains("BinaryOperatorNode (OVER)"))
+							else if (isOverOperator(arg2node))
 								code.add(Divide);
 						}
-						else if ((arg1pred.contains("BinaryOperatorNode (OVER)")) && (!childnodes.getToken().isLextant(Punctuator.OVER))) {
+						else if ((isOverOperator(arg1node)) && (!childnodes.getToken().isLextant(Punctuator.OVER))) {
 							code.add(Divide);
 							code.append(arg2);
-							if (arg2pred.contains("FloatConstantNode"))
+							if (arg2node instanceof FloatConstantNode)
 								code.add(ConvertI);
 						}
 						else if (childnodes.child(0).nChildren() > 0) {
 							if (childnodes.child(0).child(0).getType() == PrimitiveType.FLOAT) {
 								code.add(ConvertI);
 								code.append(arg2);
-								if (arg2pred.contains("BinaryOperatorNode (OVER)"))
+								if (isOverOperator(arg2node))
 									code.add(Divide);
-								else if (arg2pred.contains("FloatConstantNode"))
+								else if (arg2node instanceof FloatConstantNode)
 									code.add(ConvertI);
 							}
 							else if (childnodes.child(0).child(0).getType() == PrimitiveType.CHAR) {
 								code.append(arg2);
-								if (arg2pred.contains("FloatConstantNode"))
+								if (arg2node instanceof FloatConstantNode)
 									code.add(ConvertI);
-								else if (arg2pred.contains("BinaryOperatorNode (OVER)"))
+								else if (isOverOperator(arg2node))
 									code.add(Divide);
 							}
 							else if (childnodes.child(0).child(0).getType() == PrimitiveType.RATIONAL) {
@@ -1573,14 +1421,14 @@ public class ASMCodeGenerator {
 							if (node.child(0).child(0).getType() == PrimitiveType.INTEGER) {
 								code.add(ConvertF);
 								code.append(arg2);
-								if (arg2pred.contains("BinaryOperatorNode (OVER)"))
+								if (isOverOperator(arg2node))
 									code.add(Divide);
 							}
 						}
-						else if ((arg1pred.contains("IntegerConstantNode"))) {
+						else if ((arg1node instanceof IntegerConstantNode)) {
 							code.add(ConvertF);
 							code.append(arg2);
-							if (arg2pred.contains("BinaryOperatorNode (OVER)"))
+							if (isOverOperator(arg2node))
 								code.add(Divide);
 						}
 						else {
@@ -1588,17 +1436,17 @@ public class ASMCodeGenerator {
 						}
 					}
 					else if (arg1type == PrimitiveType.RATIONAL) {
-						if (arg1pred.contains("IntegerConstantNode")) {
+						if (arg1node instanceof IntegerConstantNode) {
 							code.add(PushI, 1);
 							code.append(arg2);
-							if (arg2pred.contains("FloatConstantNode"))
+							if (arg2node instanceof FloatConstantNode)
 								code.add(ConvertI);
 						}
 						else if (childnodes.child(0).nChildren() > 0) {
 							if ((childnodes.child(0).child(0).getType() == PrimitiveType.INTEGER) && (!childnodes.child(0).getToken().isLextant(Punctuator.OVER))) {
 								code.add(PushI, 1);
 								code.append(arg2);
-								if (arg2pred.contains("FloatConstantNode"))
+								if (arg2node instanceof FloatConstantNode)
 									code.add(ConvertI);
 							}
 							else {
@@ -1617,15 +1465,7 @@ public class ASMCodeGenerator {
 					ASMOpcode opcode = opcodeForOperator(bnode.getOperator(),arg1type,arg2type);
 					code.add(opcode);
 					
-					code.add(Duplicate);
-					code.add(PushI, 11000);
-					code.add(Exchange);
-					code.add(StoreI);
-					code.add(Pop);
-					code.add(StoreI);
-					code.add(PushI, 11000);
-					code.add(LoadI);
-					code.add(StoreI);
+					storeRational();
 					continue;
 				}
 				else if (childnodes.getType().getType() instanceof ArrayType) {
@@ -1637,8 +1477,17 @@ public class ASMCodeGenerator {
 			code.add(Pop);
 		}
 		
+		// the array and index slots stay live across the code for the index
+		// expressions, so they are taken here, before any nested IndexNode's.
+		public void visitEnter(IndexNode node) {
+			temporaries.saveState();
+			MemoryLocation[] slots = { temporaries.allocate(4), temporaries.allocate(4) };
+			indexlist.put(node, slots);
+		}
 		public void visitLeave(IndexNode node) {
 			newAddressCode(node);
+			MemoryLocation array = indexlist.get(node)[0];
+			MemoryLocation index = indexlist.get(node)[1];
 			
 			IdentifierNode iden = null;
 			ParseNode child = node.child(0);
@@ -1652,9 +1501,7 @@ public class ASMCodeGenerator {
 				for(int i = 1; i < node.nChildren(); i++) {
 					code.add(LoadI);
 					code.add(Duplicate);
-					code.add(PushI, 90000);
-					code.add(Exchange);
-					code.add(StoreI);
+					storeITemporary(array);
 					code.add(PushI, 12);
 					code.add(Add);
 					code.add(LoadI);
@@ -1662,23 +1509,17 @@ public class ASMCodeGenerator {
 					code.add(Subtract);								//highest index possible
 					code.append(removeValueCode(node.child(i)));
 					code.add(Duplicate);
-					code.add(PushI, 76000);
-					code.add(Exchange);
-					code.add(StoreI);
+					storeITemporary(index);
 					code.add(JumpNeg, "$$index-out-of-range");		//negative index
-					code.add(PushI, 76000);
-					code.add(LoadI);
+					loadITemporary(index);
 					code.add(Subtract);								//if it is less than 0, it is out of range
 					code.add(JumpNeg, "$$index-out-of-range");
 					
-					code.add(PushI, 90000);
-					code.add(LoadI);
+					loadITemporary(array);
 					code.add(PushI, 16);
 					code.add(Add);
-					code.add(PushI, 76000);
-					code.add(LoadI);
-					code.add(PushI, 90000);
-					code.add(LoadI);
+					loadITemporary(index);
+					loadITemporary(array);
 					code.add(PushI, 8);
 					code.add(Add);
 					code.add(LoadI);
@@ -1694,18 +1535,16 @@ public class ASMCodeGenerator {
 				code.add(LoadI);
 				code.add(Duplicate);
 				code.append(removeValueCode(node.child(1)));
-				code.add(PushI, 90000);
-				code.add(Exchange);
-				code.add(StoreI);
+				storeITemporary(index);
 				code.add(Exchange);
 				code.add(Subtract);
 				code.add(JumpNeg, "$$index-out-of-range");
 				
-				code.add(PushI, 90000);
-				code.add(LoadI);
+				loadITemporary(index);
 				code.add(Add);
 				code.add(LoadC);
 			}
+			temporaries.restoreState();
 		}
 		
 		public void visitLeave(LengthNode node) {
@@ -1749,19 +1588,11 @@ public class ASMCodeGenerator {
 		}
 		public void visit2(StringConstantNode node) {
 			Labeller label = new Labeller("StringConstant");
-			stringlist.put(node.getValue(), label.newLabel(""));
-			code.add(PushD, MemoryManager.MEM_MANAGER_ALLOCATE);
-			code.add(PushI, offset);
-			code.add(Add);
-			code.add(Duplicate);
-			code.add(PushI, node.getValue().replaceAll("\"", "").length());
-			code.add(StoreI);
-			code.add(PushI, 4);
-			code.add(Add);
+			stringlist.put(node.StringToken().getValueSymbol(), label.newLabel(""));
+			code.add(DataI, node.getValue().replaceAll("\"", "").length());	// the length, just before the characters
 			code.add(DLabel, label.newLabel(""));
 			code.add(DataS, node.getValue());
-
-			offset = offset + node.getValue().length() + 4;
+			code.add(PushD, label.newLabel(""));
 		}
 		public void visit(CharacterConstantNode node) {
 			newValueCode(node);
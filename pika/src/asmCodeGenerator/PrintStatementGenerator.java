@@ -3,7 +3,6 @@ package asmCodeGenerator;
 import static asmCodeGenerator.codeStorage.ASMOpcode.*;
 import java.util.HashMap;
 import java.util.Set;
-import java.util.concurrent.ThreadLocalRandom;
 
 import parseTree.ParseNode;
 import parseTree.nodeTypes.ArrayNode;
@@ -15,6 +14,10 @@ import parseTree.nodeTypes.SpaceNode;
 import semanticAnalyzer.types.ArrayType;
 import semanticAnalyzer.types.PrimitiveType;
 import semanticAnalyzer.types.Type;
+import symbolTable.Binding;
+import symbolTable.MemoryAllocator;
+import symbolTable.MemoryLocation;
+import tokens.Symbol;
 import asmCodeGenerator.ASMCodeGenerator.CodeVisitor;
 import asmCodeGenerator.codeStorage.ASMCodeFragment;
 import asmCodeGenerator.ASMCodeGenerator;
@@ -24,16 +27,20 @@ import asmCodeGenerator.runtime.RunTime;
 public class PrintStatementGenerator {
 	ASMCodeFragment code;
 	ASMCodeGenerator.CodeVisitor visitor;
-	public HashMap<String,String> stringlist;
-	public HashMap<String,ParseNode> arraylist;
+	public HashMap<Symbol,String> stringlist;
+	public HashMap<Binding,String> stringvarlist;
+	public HashMap<Binding,ParseNode> arraylist;
+	MemoryAllocator temporaries;
 	
 	
-	public PrintStatementGenerator(ASMCodeFragment code, CodeVisitor visitor, HashMap<String,String> stringlist, HashMap<String, ParseNode> arraylist) {
+	public PrintStatementGenerator(ASMCodeFragment code, CodeVisitor visitor, HashMap<Symbol,String> stringlist, HashMap<Binding,String> stringvarlist, HashMap<Binding, ParseNode> arraylist, MemoryAllocator temporaries) {
 		super();
 		this.code = code;
 		this.visitor = visitor;
 		this.stringlist = stringlist;
+		this.stringvarlist = stringvarlist;
 		this.arraylist = arraylist;
+		this.temporaries = temporaries;
 	}
 
 	public void generate(PrintStatementNode node) {
@@ -94,142 +101,18 @@ public class PrintStatementGenerator {
 		String format = null;
 		if (node instanceof IdentifierNode) {
 			IdentifierNode idennode = (IdentifierNode) node;
-			format = stringlist.get(idennode.findVariableBinding().toString());
+			format = stringvarlist.get(idennode.findVariableBinding());
 		}
 		else {
 			code.append(visitor.removeValueCode(node));
-			format = stringlist.get(node.getToken().getLexeme().replaceAll("\"", ""));
+			format = stringlist.get(ASMCodeGenerator.stringKey(node.getToken()));
 		}
 		return format;
 	}
 	
 	private void printRational(ParseNode node) {
-		Labeller label = new Labeller("rational");
-		String sign = label.newLabel("sign");
-		String negpart = label.newLabel("negative");
-		String division = label.newLabel("division");
-		String negatequot = label.newLabel("negatequotient");
-		String quot2 = label.newLabel("quot2");
-		String zeroremainder = label.newLabel("zeroremainder");
-		String fractionpart = label.newLabel("fraction");
-		String quotientpart = label.newLabel("quotient");
-		String negremainder = label.newLabel("negativeremainder");
-		String printremainder = label.newLabel("printremainder");
-		String negdenom = label.newLabel("negativedenominator");
-		String printdenom = label.newLabel("printdenom");
-		String endlabel = label.newLabel("endlabel");
-		
-		code.add(PushI, 9997);
-		code.add(PushI, 45);
-		code.add(StoreC);
-		code.add(PushI, 9998);
-		code.add(PushI, 95);
-		code.add(StoreC);
-		code.add(PushI, 9999);
-		code.add(PushI, 47);
-		code.add(StoreC);
-		
 		code.append(visitor.removeValueCode(node));
-		code.add(Duplicate);
-		code.add(PushI, 10000);
-		code.add(Exchange);
-		code.add(StoreI);
-		code.add(Exchange);
-		code.add(Duplicate);
-		code.add(PushI, 10004);
-		code.add(Exchange);
-		code.add(StoreI);
-		code.add(Exchange);
-		
-		code.add(JumpNeg, sign);
-		code.add(JumpNeg, negpart);
-		code.add(Jump, division);
-		
-		code.add(Label, sign);
-		code.add(JumpPos, negpart);
-		code.add(Jump, division);
-		code.add(Label, negpart);
-		code.add(PushI, 9997);
-		code.add(LoadC);
-		code.add(PushD, RunTime.CHARACTER_PRINT_FORMAT);
-		code.add(Printf);
-		code.add(Jump, division);
-		
-		code.add(Label, division);
-		code.add(PushI, 10004);
-		code.add(LoadI);
-		code.add(PushI, 10000);
-		code.add(LoadI);
-		code.add(Divide);
-		code.add(Duplicate);
-		code.add(JumpNeg, negatequot);
-		code.add(Jump, quot2);
-		
-		code.add(Label, negatequot);
-		code.add(Negate);
-		code.add(Jump, quot2);
-		
-		code.add(Label, quot2);
-		code.add(Duplicate);
-		code.add(JumpFalse, zeroremainder);
-		code.add(Jump, quotientpart);
-		
-		code.add(Label, quotientpart);
-		code.add(PushD, RunTime.INTEGER_PRINT_FORMAT);
-		code.add(Printf);
-		code.add(Jump, zeroremainder);
-		
-		code.add(Label, zeroremainder);
-		code.add(PushI, 10004);
-		code.add(LoadI);
-		code.add(PushI, 10000);
-		code.add(LoadI);
-		code.add(Remainder);
-		code.add(JumpFalse, endlabel);
-		code.add(Jump, fractionpart);
-		
-		code.add(Label, fractionpart);
-		code.add(PushI, 9998);
-		code.add(LoadC);
-		code.add(PushD, RunTime.CHARACTER_PRINT_FORMAT);
-		code.add(Printf);
-		code.add(PushI, 10004);
-		code.add(LoadI);
-		code.add(PushI, 10000);
-		code.add(LoadI);
-		code.add(Remainder);
-		code.add(Duplicate);
-		code.add(JumpNeg, negremainder);
-		code.add(Jump, printremainder);
-		
-		code.add(Label, negremainder);
-		code.add(Negate);
-		code.add(Jump, printremainder);
-		
-		code.add(Label, printremainder);
-		code.add(PushD, RunTime.INTEGER_PRINT_FORMAT);
-		code.add(Printf);
-		code.add(PushI, 9999);
-		code.add(LoadC);
-		code.add(PushD, RunTime.CHARACTER_PRINT_FORMAT);
-		code.add(Printf);
-		code.add(PushI, 10000);
-		code.add(LoadI);
-		code.add(Duplicate);
-		code.add(JumpNeg, negdenom);
-		code.add(Jump, printdenom);
-		
-		code.add(Label, negdenom);
-		code.add(Negate);
-		code.add(Jump, printdenom);
-		
-		code.add(Label, printdenom);
-		code.add(PushD, RunTime.INTEGER_PRINT_FORMAT);
-		code.add(Printf);
-		code.add(Jump, endlabel);
-		
-		code.add(Label, endlabel);
-		code.add(Pop);
+		code.add(Call, RunTime.RATIONAL_PRINT);
 	}
 	
 	private void printArray(ParseNode node) {
@@ -239,7 +122,7 @@ public class PrintStatementGenerator {
 		ArrayNode arraynode = null;
 		if (node instanceof IdentifierNode) {
 			IdentifierNode idennode = (IdentifierNode) node;
-			arraynode = (ArrayNode) arraylist.get(idennode.findVariableBinding().toString());
+			arraynode = (ArrayNode) arraylist.get(idennode.findVariableBinding());
 		}
 		
 		else {
@@ -256,15 +139,14 @@ public class PrintStatementGenerator {
 		code.add(Printf);
 		
 		String format = null;
-		int offset = ThreadLocalRandom.current().nextInt(35700,83150);
+		temporaries.saveState();
+		MemoryLocation elementSize = temporaries.allocate(4);		// nested arrays take their own slot
 		
 		code.add(Duplicate);
 		code.add(PushI, 8);
 		code.add(Add);
 		code.add(LoadI);
-		code.add(PushI, offset);
-		code.add(Exchange);
-		code.add(StoreI);
+		storeITemporary(elementSize);
 		
 		for (int i = 0; i < arraynode.nChildren(); i++) {
 			Type childtype = arraynode.child(i).getType().getType();
@@ -272,8 +154,7 @@ public class PrintStatementGenerator {
 				code.add(Duplicate);
 				code.add(PushI, 16);
 				code.add(Add);
-				code.add(PushI, offset);
-				code.add(LoadI);
+				loadITemporary(elementSize);
 				code.add(PushI, i);
 				code.add(Multiply);
 				code.add(Add);
@@ -290,8 +171,7 @@ public class PrintStatementGenerator {
 				code.add(Duplicate);
 				code.add(PushI, 16);
 				code.add(Add);
-				code.add(PushI, offset);
-				code.add(LoadI);
+				loadITemporary(elementSize);
 				code.add(PushI, i);
 				code.add(Multiply);
 				code.add(Add);
@@ -304,7 +184,7 @@ public class PrintStatementGenerator {
 					format = printFormat(childtype);
 				}
 				else if (childtype == PrimitiveType.STRING) {
-					format = stringlist.get(arraynode.child(i).getToken().getLexeme().replaceAll("\"", ""));
+					format = stringlist.get(ASMCodeGenerator.stringKey(arraynode.child(i).getToken()));
 				}
 				else if (childtype == PrimitiveType.CHAR) {
 					code.add(LoadC);
@@ -315,138 +195,13 @@ public class PrintStatementGenerator {
 					format = printFormat(childtype);
 				}
 				else if (childtype == PrimitiveType.RATIONAL) {
-					Labeller label = new Labeller("rational");
-					String sign = label.newLabel("sign");
-					String negpart = label.newLabel("negative");
-					String division = label.newLabel("division");
-					String negatequot = label.newLabel("negatequotient");
-					String quot2 = label.newLabel("quot2");
-					String zeroremainder = label.newLabel("zeroremainder");
-					String fractionpart = label.newLabel("fraction");
-					String quotientpart = label.newLabel("quotient");
-					String negremainder = label.newLabel("negativeremainder");
-					String printremainder = label.newLabel("printremainder");
-					String negdenom = label.newLabel("negativedenominator");
-					String printdenom = label.newLabel("printdenom");
-					String endlabel = label.newLabel("endlabel");
-					
-					code.add(PushI, 9997);
-					code.add(PushI, 45);
-					code.add(StoreC);
-					code.add(PushI, 9998);
-					code.add(PushI, 95);
-					code.add(StoreC);
-					code.add(PushI, 9999);
-					code.add(PushI, 47);
-					code.add(StoreC);
-					
 					code.add(Duplicate);
-					code.add(PushI, 4);
-					code.add(Add);
 					code.add(LoadI);
 					code.add(Exchange);
+					code.add(PushI, 4);
+					code.add(Add);
 					code.add(LoadI);
-					
-					code.add(Duplicate);
-					code.add(PushI, 10000);
-					code.add(Exchange);
-					code.add(StoreI);
-					code.add(Exchange);
-					code.add(Duplicate);
-					code.add(PushI, 10004);
-					code.add(Exchange);
-					code.add(StoreI);
-					code.add(Exchange);
-					
-					code.add(JumpNeg, sign);
-					code.add(JumpNeg, negpart);
-					code.add(Jump, division);
-					
-					code.add(Label, sign);
-					code.add(JumpPos, negpart);
-					code.add(Jump, division);
-					code.add(Label, negpart);
-					code.add(PushI, 9997);
-					code.add(LoadC);
-					code.add(PushD, RunTime.CHARACTER_PRINT_FORMAT);
-					code.add(Printf);
-					code.add(Jump, division);
-					
-					code.add(Label, division);
-					code.add(PushI, 10004);
-					code.add(LoadI);
-					code.add(PushI, 10000);
-					code.add(LoadI);
-					code.add(Divide);
-					code.add(Duplicate);
-					code.add(JumpNeg, negatequot);
-					code.add(Jump, quot2);
-					
-					code.add(Label, negatequot);
-					code.add(Negate);
-					code.add(Jump, quot2);
-					
-					code.add(Label, quot2);
-					code.add(Duplicate);
-					code.add(JumpFalse, zeroremainder);
-					code.add(Jump, quotientpart);
-					
-					code.add(Label, quotientpart);
-					code.add(PushD, RunTime.INTEGER_PRINT_FORMAT);
-					code.add(Printf);
-					code.add(Jump, zeroremainder);
-					
-					code.add(Label, zeroremainder);
-					code.add(PushI, 10004);
-					code.add(LoadI);
-					code.add(PushI, 10000);
-					code.add(LoadI);
-					code.add(Remainder);
-					code.add(JumpFalse, endlabel);
-					code.add(Jump, fractionpart);
-					
-					code.add(Label, fractionpart);
-					code.add(PushI, 9998);
-					code.add(LoadC);
-					code.add(PushD, RunTime.CHARACTER_PRINT_FORMAT);
-					code.add(Printf);
-					code.add(PushI, 10004);
-					code.add(LoadI);
-					code.add(PushI, 10000);
-					code.add(LoadI);
-					code.add(Remainder);
-					code.add(Duplicate);
-					code.add(JumpNeg, negremainder);
-					code.add(Jump, printremainder);
-					
-					code.add(Label, negremainder);
-					code.add(Negate);
-					code.add(Jump, printremainder);
-					
-					code.add(Label, printremainder);
-					code.add(PushD, RunTime.INTEGER_PRINT_FORMAT);
-					code.add(Printf);
-					code.add(PushI, 9999);
-					code.add(LoadC);
-					code.add(PushD, RunTime.CHARACTER_PRINT_FORMAT);
-					code.add(Printf);
-					code.add(PushI, 10000);
-					code.add(LoadI);
-					code.add(Duplicate);
-					code.add(JumpNeg, negdenom);
-					code.add(Jump, printdenom);
-					
-					code.add(Label, negdenom);
-					code.add(Negate);
-					code.add(Jump, printdenom);
-					
-					code.add(Label, printdenom);
-					code.add(PushD, RunTime.INTEGER_PRINT_FORMAT);
-					code.add(Printf);
-					code.add(Jump, endlabel);
-					
-					code.add(Label, endlabel);
-					code.add(Pop);
+					code.add(Call, RunTime.RATIONAL_PRINT);
 					
 					if (i < arraynode.nChildren()-1) {
 						code.add(PushI, 44);
@@ -473,6 +228,19 @@ public class PrintStatementGenerator {
 		code.add(Printf);
 		
 		code.add(Pop);
+		temporaries.restoreState();
+	}
+	
+	// [... value] -> [...]
+	private void storeITemporary(MemoryLocation slot) {
+		slot.generateAddress(code, "%temporary");
+		code.add(Exchange);
+		code.add(StoreI);
+	}
+	// [...] -> [... value]
+	private void loadITemporary(MemoryLocation slot) {
+		slot.generateAddress(code, "%temporary");
+		code.add(LoadI);
 	}
  
 	private static String printFormat(Type type) {
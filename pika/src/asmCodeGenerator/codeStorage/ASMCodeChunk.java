@@ -1,51 +1,264 @@
 package asmCodeGenerator.codeStorage;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 // a glorified list of instructions.
+// Stored column-wise: one array of opcode ordinals, one of int operands, one of
+// float operands and one of comments.  String operands (labels) are interned in
+// a per-chunk table, and the int column holds their index in it.
+// ASMInstruction objects are only made when someone asks for one.
+// Most chunks hold a handful of instructions, so they start small, and the float
+// column and the string table are only made when something needs them.
 public class ASMCodeChunk {
-	List<ASMInstruction> instructions;
-	
+	private static final int INITIAL_CAPACITY = 4;
+	private static final int NO_STRING = -1;
+	private static final ASMOpcode[] OPCODES = ASMOpcode.values();
+
+	private byte[] opcodes;
+	private int[] intOperands;
+	private double[] floatOperands;
+	private String[] comments;
+	private int size;
+
+	private List<String> strings;
+	private Map<String, Integer> stringIndices;
+
 	public ASMCodeChunk() {
-		instructions = new LinkedList<ASMInstruction>();
+		opcodes = new byte[INITIAL_CAPACITY];
+		intOperands = new int[INITIAL_CAPACITY];
+		floatOperands = null;
+		comments = new String[INITIAL_CAPACITY];
+		size = 0;
+		strings = null;
+		stringIndices = null;
 	}
 	public void add(ASMOpcode opcode, int operand, String comment) {
-		ASMInstruction instruction = new ASMInstruction(opcode, operand, comment);
-		instructions.add(instruction);
+		assert opcode.takesInteger() : opcode.toString();
+		int index = newSlot(opcode, comment);
+		intOperands[index] = operand;
 	}
 	public void add(ASMOpcode opcode, int operand) {
-		ASMInstruction instruction = new ASMInstruction(opcode, operand);
-		instructions.add(instruction);
+		add(opcode, operand, "");
 	}
 	public void add(ASMOpcode opcode, double operand, String comment) {
-		ASMInstruction instruction = new ASMInstruction(opcode, operand, comment);
-		instructions.add(instruction);
+		assert opcode.takesFloat() : opcode.toString();
+		int index = newSlot(opcode, comment);
+		storeFloat(index, operand);
 	}
 	public void add(ASMOpcode opcode, double operand) {
-		ASMInstruction instruction = new ASMInstruction(opcode, operand);
-		instructions.add(instruction);
+		add(opcode, operand, "");
 	}
 	public void add(ASMOpcode opcode, String operand, String comment) {
-		ASMInstruction instruction = new ASMInstruction(opcode, operand, comment);
-		instructions.add(instruction);
+		assert (operand == null || operand.length()==0 || opcode.takesString()) : opcode.toString();
+		int index = newSlot(opcode, comment);
+		intOperands[index] = intern(operand);
 	}
 	public void add(ASMOpcode opcode, String operand) {
-		ASMInstruction instruction = new ASMInstruction(opcode, operand);
-		instructions.add(instruction);
+		add(opcode, operand, "");
 	}
 	public void add(ASMOpcode opcode) {
-		ASMInstruction instruction = new ASMInstruction(opcode);
-		instructions.add(instruction);
+		add(opcode, (String)null, "");
+	}
+	public void add(ASMInstruction instruction) {
+		int index = newSlot(instruction.getOpcode(), instruction.getComment());
+		store(index, instruction);
+	}
+	/** Add all of other's instructions to the end of this chunk. */
+	public void addAll(ASMCodeChunk other) {
+		ensureCapacity(size + other.size);
+		for(int i = 0; i < other.size; i++) {
+			ASMOpcode opcode = OPCODES[other.opcodes[i]];
+			int index = newSlot(opcode, other.comments[i]);
+			if(opcode.takesInteger()) {
+				intOperands[index] = other.intOperands[i];
+			}
+			else if(opcode.takesFloat()) {
+				storeFloat(index, other.floatOperands[i]);
+			}
+			else {
+				intOperands[index] = intern(other.getStringOperand(i));
+			}
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// random access and in-place rewriting
+
+	public int size() {
+		return size;
+	}
+	public ASMOpcode getOpcode(int index) {
+		checkIndex(index);
+		return OPCODES[opcodes[index]];
+	}
+	public int getIntOperand(int index) {
+		assert getOpcode(index).takesInteger() : getOpcode(index).toString();
+		return intOperands[index];
+	}
+	public double getFloatOperand(int index) {
+		assert getOpcode(index).takesFloat() : getOpcode(index).toString();
+		return floatOperands[index];
 	}
-	
+	public String getStringOperand(int index) {
+		checkIndex(index);
+		int stringIndex = intOperands[index];
+		return (stringIndex == NO_STRING) ? null : strings.get(stringIndex);
+	}
+	public String getComment(int index) {
+		checkIndex(index);
+		return comments[index];
+	}
+	public ASMInstruction get(int index) {
+		ASMOpcode opcode = getOpcode(index);
+		if(opcode.takesInteger()) {
+			return new ASMInstruction(opcode, intOperands[index], comments[index]);
+		}
+		if(opcode.takesFloat()) {
+			return new ASMInstruction(opcode, floatOperands[index], comments[index]);
+		}
+		return new ASMInstruction(opcode, getStringOperand(index), comments[index]);
+	}
+	public void set(int index, ASMInstruction instruction) {
+		checkIndex(index);
+		opcodes[index] = (byte)instruction.getOpcode().ordinal();
+		comments[index] = instruction.getComment();
+		store(index, instruction);
+	}
+	/** Copy the instruction at index from to index to, overwriting what was there.
+	 *  Passes that delete instructions compact the chunk with this as they sweep.
+	 */
+	public void move(int from, int to) {
+		checkIndex(from);
+		checkIndex(to);
+		opcodes[to] = opcodes[from];
+		intOperands[to] = intOperands[from];
+		if(floatOperands != null) {
+			floatOperands[to] = floatOperands[from];
+		}
+		comments[to] = comments[from];
+	}
+	/** Drop every instruction from index newSize on. */
+	public void truncate(int newSize) {
+		assert 0 <= newSize && newSize <= size : newSize;
+		Arrays.fill(comments, newSize, size, null);
+		size = newSize;
+	}
+
+	/** The instructions of this chunk, in order.  The list is a copy; changing
+	 *  it does not change the chunk.
+	 */
+	public List<ASMInstruction> getInstructions() {
+		List<ASMInstruction> result = new ArrayList<ASMInstruction>(size);
+		for(int i = 0; i < size; i++) {
+			result.add(get(i));
+		}
+		return result;
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// storage
+
+	private int newSlot(ASMOpcode opcode, String comment) {
+		ensureCapacity(size + 1);
+		int index = size++;
+		opcodes[index] = (byte)opcode.ordinal();
+		comments[index] = comment;
+		return index;
+	}
+	private void store(int index, ASMInstruction instruction) {
+		ASMOpcode opcode = instruction.getOpcode();
+		if(opcode.takesInteger()) {
+			intOperands[index] = instruction.getIntArgument();
+		}
+		else if(opcode.takesFloat()) {
+			storeFloat(index, instruction.getFloatArgument());
+		}
+		else {
+			intOperands[index] = intern((String)instruction.getArgument());
+		}
+	}
+	private void storeFloat(int index, double operand) {
+		if(floatOperands == null) {
+			floatOperands = new double[opcodes.length];
+		}
+		floatOperands[index] = operand;
+	}
+	private void ensureCapacity(int capacity) {
+		if(capacity <= opcodes.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, opcodes.length * 2);
+		opcodes = Arrays.copyOf(opcodes, newCapacity);
+		intOperands = Arrays.copyOf(intOperands, newCapacity);
+		if(floatOperands != null) {
+			floatOperands = Arrays.copyOf(floatOperands, newCapacity);
+		}
+		comments = Arrays.copyOf(comments, newCapacity);
+	}
+	private int intern(String string) {
+		if(string == null) {
+			return NO_STRING;
+		}
+		if(strings == null) {
+			strings = new ArrayList<String>();
+			stringIndices = new HashMap<String, Integer>();
+		}
+		Integer index = stringIndices.get(string);
+		if(index == null) {
+			index = strings.size();
+			strings.add(string);
+			stringIndices.put(string, index);
+		}
+		return index;
+	}
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("instruction " + index + " of " + size);
+		}
+	}
+
 	static private String terminator = System.getProperty("line.separator");
 	public String toString() {
-		StringBuffer buffer = new StringBuffer();
-		for(ASMInstruction instruction: instructions) {
-			buffer.append(instruction.toString());
-			buffer.append(terminator);
+		StringBuilder builder = new StringBuilder();
+		try {
+			writeTo(builder);
+		} catch (IOException e) {
+			throw new AssertionError(e);		// StringBuilder never throws
+		}
+		return builder.toString();
+	}
+	/** Write the chunk as ASMInstruction.writeTo would write each instruction,
+	 *  one per line, without making the instructions.
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		for(int i = 0; i < size; i++) {
+			ASMOpcode opcode = OPCODES[opcodes[i]];
+			if(opcode == ASMOpcode.DataS) {
+				ASMInstruction.writeDataS(out, getStringOperand(i), comments[i]);
+			}
+			else {
+				ASMInstruction.writeLine(out, opcode, argumentString(opcode, i), comments[i]);
+			}
+			out.append(terminator);
+		}
+	}
+	private String argumentString(ASMOpcode opcode, int index) {
+		if(opcode.takesFloat()) {
+			return String.format("%g", floatOperands[index]);
+		}
+		if(opcode.takesInteger()) {
+			return Integer.toString(intOperands[index]);
+		}
+		if(opcode.takesString()) {
+			return String.valueOf(getStringOperand(index));
 		}
-		return buffer.toString();
+		return "";
 	}
 }
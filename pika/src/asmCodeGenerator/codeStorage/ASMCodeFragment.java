@@ -2,13 +2,18 @@ package asmCodeGenerator.codeStorage;
 
 import inputHandler.InputHandler;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import logging.PikaLogger;
 
 public class ASMCodeFragment {
-	private List<ASMCodeChunk> chunks;
+	// The chunks are kept as a rope: appending another fragment just makes a
+	// node joining the two, and the chunks are put in order (once) when the
+	// fragment is printed or its instructions are asked for.
+	private Rope chunks;
+	private ASMCodeChunk lastChunk;
 	
 	// these names refer to what the code in the fragment
 	// leaves on top of the accumulator: either nothing, a value
@@ -22,7 +27,8 @@ public class ASMCodeFragment {
 	CodeType codeType;
 	
 	public ASMCodeFragment(CodeType codeType) {
-		chunks = new ArrayList<ASMCodeChunk>();
+		chunks = null;
+		lastChunk = null;
 		this.codeType = codeType;
 	}
 	
@@ -51,7 +57,11 @@ public class ASMCodeFragment {
 	 * @param fragment
 	 */
 	public void append(ASMCodeFragment fragment) {
-		chunks.addAll(fragment.chunks);
+		if(fragment.chunks == null) {
+			return;
+		}
+		chunks = Rope.concatenate(chunks, fragment.chunks);
+		lastChunk = fragment.lastChunk;
 	}
 	
 	public void add(ASMOpcode opcode, int operand, String comment) {
@@ -75,33 +85,100 @@ public class ASMCodeFragment {
 	public void add(ASMOpcode opcode) {
 		lastChunk().add(opcode);
 	}
+	public void add(ASMInstruction instruction) {
+		lastChunk().add(instruction);
+	}
+	public CodeType getCodeType() {
+		return codeType;
+	}
 
+	// as with a list of chunks, this is the last chunk of the last fragment appended,
+	// if that is more recent than any chunk this fragment made itself.
 	private ASMCodeChunk lastChunk() {
-		if(chunks.size() == 0) {
+		if(lastChunk == null) {
 			newChunk();
 		}
-		return chunks.get(chunks.size() - 1);
+		return lastChunk;
 	}
 
 	private void newChunk() {
 		ASMCodeChunk chunk = new ASMCodeChunk();
-		chunks.add(chunk);
+		chunks = Rope.concatenate(chunks, new Rope(chunk));
+		lastChunk = chunk;
 	}
 	
 	public String toString() {
-		StringBuffer buffer = new StringBuffer();
-		for(ASMCodeChunk chunk: chunks) {
-			buffer.append(chunk.toString());
+		StringBuilder builder = new StringBuilder();
+		try {
+			writeTo(builder);
+		} catch (IOException e) {
+			throw new AssertionError(e);		// StringBuilder never throws
+		}
+		return builder.toString();
+	}
+	/** Write the code, as the emulator reads it, one instruction at a time.
+	 *  Use this rather than toString() to print a whole program.
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		for(ASMCodeChunk chunk: toChunks()) {
+			chunk.writeTo(out);
 		}
-		return buffer.toString();
 	}
 	
+	/** The chunks of this fragment, in order.  Takes time linear in the number
+	 *  of chunks and appends that built the fragment.
+	 */
 	public List<ASMCodeChunk> toChunks() {
-		return chunks;
+		List<ASMCodeChunk> result = new ArrayList<ASMCodeChunk>();
+		if(chunks != null) {
+			chunks.flattenInto(result);
+		}
+		return result;
+	}
+
+	/** All instructions of this fragment, in order, as a single list.
+	 *  The list is a copy; changing it does not change the fragment.
+	 */
+	public List<ASMInstruction> instructions() {
+		List<ASMInstruction> result = new ArrayList<ASMInstruction>();
+		for(ASMCodeChunk chunk: toChunks()) {
+			result.addAll(chunk.getInstructions());
+		}
+		return result;
+	}
+	/** All instructions of this fragment, in order, copied into a single chunk
+	 *  that the caller may rewrite in place.
+	 */
+	public ASMCodeChunk toChunk() {
+		ASMCodeChunk result = new ASMCodeChunk();
+		for(ASMCodeChunk chunk: toChunks()) {
+			result.addAll(chunk);
+		}
+		return result;
+	}
+	/** Make a fragment whose code is the given chunk.  The chunk is not copied.
+	 * @param codeType type of the new fragment
+	 * @param chunk the instructions, in order
+	 */
+	public static ASMCodeFragment fromChunk(CodeType codeType, ASMCodeChunk chunk) {
+		ASMCodeFragment result = new ASMCodeFragment(codeType);
+		result.chunks = new Rope(chunk);
+		result.lastChunk = chunk;
+		return result;
+	}
+	/** Make a one-chunk fragment holding the given instructions.
+	 * @param codeType type of the new fragment
+	 * @param instructions the instructions, in order
+	 */
+	public static ASMCodeFragment fromInstructions(CodeType codeType, List<ASMInstruction> instructions) {
+		ASMCodeFragment result = new ASMCodeFragment(codeType);
+		for(ASMInstruction instruction: instructions) {
+			result.add(instruction);
+		}
+		return result;
 	}
 
 	public static ASMCodeFragment readFrom(String filename) {
-		System.out.println("readFrom: " + filename);
 		ASMCodeFragment result = new ASMCodeFragment(CodeType.GENERATES_VOID);
 		try {
 			read(filename, result);
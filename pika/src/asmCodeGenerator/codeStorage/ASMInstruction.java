@@ -1,5 +1,6 @@
 package asmCodeGenerator.codeStorage;
 
+import java.io.IOException;
 
 public class ASMInstruction {
 	private ASMOpcode opcode;
@@ -47,49 +48,95 @@ public class ASMInstruction {
 		this.comment = "";
 	}
 
-	
+
+/////////////////////////////////////////////////////////////////////////
+// accessors
+
+	public ASMOpcode getOpcode() {
+		return opcode;
+	}
+	public Object getArgument() {
+		return argument;
+	}
+	public int getIntArgument() {
+		assert opcode.takesInteger() : opcode.toString();
+		return (Integer)argument;
+	}
+	public double getFloatArgument() {
+		assert opcode.takesFloat() : opcode.toString();
+		return (Double)argument;
+	}
+	public String getStringArgument() {
+		assert opcode.takesString() : opcode.toString();
+		return (String)argument;
+	}
+	public String getComment() {
+		return comment;
+	}
+
+
 /////////////////////////////////////////////////////////////////////////
-// toString ... particular attention paid to the DataS instruction, which
-//              the emulator doesn't handle.
+// toString and writeTo ... particular attention paid to the DataS instruction,
+//              which the emulator doesn't handle.
 	
 	static private String indentation = "        ";
+	static private final int OPCODE_WIDTH = 12;
+	static private final int ARGUMENT_WIDTH = 25;
+	
 	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		try {
+			writeTo(builder);
+		} catch (IOException e) {
+			throw new AssertionError(e);		// StringBuilder never throws
+		}
+		return builder.toString();
+	}
+	/** Write this instruction, as the emulator reads it, with no line terminator
+	 *  after it.  (DataS writes several lines, separated by terminators.)
+	 */
+	public void writeTo(Appendable out) throws IOException {
 		if(opcode == ASMOpcode.DataS) {
-			return DataStoString();
+			writeDataS(out, (String)argument, comment);
+			return;
+		}
+		writeLine(out, opcode, argumentString(), comment);
+	}
+	
+	// the parts of writeTo that don't need an ASMInstruction; ASMCodeChunk
+	// writes its columns with these.
+	static void writeLine(Appendable out, ASMOpcode opcode, String argument, String comment) throws IOException {
+		out.append(indentation);
+		writePadded(out, opcode.toString(), OPCODE_WIDTH);
+		out.append(' ');
+		writePadded(out, argument, ARGUMENT_WIDTH);
+		if(comment != null) {
+			out.append(' ').append(comment);
 		}
-		String result = indentation;	// indentation(8);
-		result += opcodeString();
-		result += argumentString();
-		if(comment != null)
-			result += " " + comment;
-		return result;
 	}
 	
 	static String terminator = System.getProperty("line.separator");
-	private String DataStoString() {
-		String string = (String)this.argument;
-		
+	static void writeDataS(Appendable out, String string, String comment) throws IOException {
 		if(string.length() == 0) {
-			return NullDataStoString();
+			writeDataC(out, 0, comment);
+			return;
 		}
 		
-		if(comment == null || comment == "") {
-			comment = DataSComment();
-		}
-		String result = dataCString((int)string.charAt(0), comment) + terminator;
+		String firstComment = (comment == null || comment.length() == 0) ? DataSComment(string) : comment;
+		writeDataC(out, (int)string.charAt(0), firstComment);
+		out.append(terminator);
 		
 		for(int i=1; i<string.length(); i++) {
-			result += dataCString((int)string.charAt(i), "");
-			result += terminator;
+			writeDataC(out, (int)string.charAt(i), "");
+			out.append(terminator);
 		}
 		
-		result += dataCString(0, "");	// no terminator
-		return result;
+		writeDataC(out, 0, "");	// no terminator
 	}
-	private String DataSComment() {
-		return "%% \"" + printable((String)argument) + "\"";
+	private static String DataSComment(String string) {
+		return "%% \"" + printable(string) + "\"";
 	}
-	private String printable(String string) {
+	private static String printable(String string) {
 		StringBuilder sb = new StringBuilder();
 		
 		for(int i=0 ; i<string.length(); i++) {
@@ -99,7 +146,7 @@ public class ASMInstruction {
 		
 		return sb.toString();
 	}
-	private String printable(char c) {
+	private static String printable(char c) {
 		switch(c) {
 		case '\n': return "\\n";
 		case '\r': return "\\r";
@@ -109,30 +156,26 @@ public class ASMInstruction {
 		default:   return String.valueOf(c);
 		}
 	}
-	private String NullDataStoString() {
-		return dataCString(0, this.comment);
-	}
-	private String dataCString(int charAt, String comment) {
-		ASMInstruction instruction = new ASMInstruction(ASMOpcode.DataC, charAt, comment);
-		return instruction.toString();
+	private static void writeDataC(Appendable out, int charAt, String comment) throws IOException {
+		writeLine(out, ASMOpcode.DataC, Integer.toString(charAt), comment);
 	}
 	
-	private String opcodeString() {
-		return String.format("%-12s ", opcode.toString());
+	private static void writePadded(Appendable out, String string, int width) throws IOException {
+		out.append(string);
+		for(int i = string.length(); i < width; i++) {
+			out.append(' ');
+		}
 	}
-	
 	private String argumentString() {
 		if(opcode.takesFloat()) {
-			return String.format("%-25g", (Double)argument);
+			return String.format("%g", (Double)argument);
 		}
-		
 		if(opcode.takesInteger()) {
-			return String.format("%-25d", (Integer)argument);
+			return Integer.toString((Integer)argument);
 		}
-		
 		if(opcode.takesString()) {
-			return String.format("%-25s", (String)argument);
+			return String.valueOf((String)argument);
 		}
-		return String.format("%-25s", "");		
+		return "";
 	}
 }
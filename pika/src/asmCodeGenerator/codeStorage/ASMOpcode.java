@@ -166,4 +166,23 @@ public enum ASMOpcode {
 	private boolean labelJumpOrCall() {
 		return this == Label || this == Call || (this.name().indexOf("Jump") == 0 && this != JumpV);
 	}
+	
+	// control-flow classification, for the optimizer.
+	public boolean isLabelJump() {
+		return this.name().indexOf("Jump") == 0 && this != JumpV;
+	}
+	public boolean isConditionalJump() {
+		return isLabelJump() && this != Jump;
+	}
+	// true if execution never continues with the next instruction.
+	public boolean isUnconditionalTransfer() {
+		return this == Jump || this == JumpV || this == Return || this == PopPC || this == Halt;
+	}
+	// true if the instruction after this one starts a new basic block.
+	public boolean endsBasicBlock() {
+		return isLabelJump() || isUnconditionalTransfer() || this == Call || this == CallV;
+	}
+	public boolean isDataDirective() {
+		return this == DLabel || this.name().indexOf("Data") == 0;
+	}
 }
@@ -0,0 +1,126 @@
+package asmCodeGenerator.codeStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// a straight-line run of instructions: control enters only at the top
+// (at one of its Labels, or by falling in from the block before it) and
+// leaves only at the bottom.
+// Data directives (DLabel, DataX) sit wherever the code generator put them; a
+// block may contain some, and a block may consist only of them.
+public class BasicBlock {
+	private List<ASMInstruction> instructions;
+	private List<BasicBlock> successors;
+	private List<BasicBlock> predecessors;
+	private BasicBlock fallThroughSuccessor;
+	private int start;
+	private int end;
+
+	BasicBlock(int start) {
+		this.start = start;
+		this.end = start;
+		instructions = new ArrayList<ASMInstruction>();
+		successors = new ArrayList<BasicBlock>();
+		predecessors = new ArrayList<BasicBlock>();
+		fallThroughSuccessor = null;
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// instructions
+
+	void add(ASMInstruction instruction) {
+		instructions.add(instruction);
+	}
+	void setEnd(int end) {
+		this.end = end;
+	}
+	/** The block is the instructions from getStart() up to (not including) getEnd()
+	 *  of the code the graph was built from.  Not updated when blocks are changed.
+	 */
+	public int getStart() {
+		return start;
+	}
+	public int getEnd() {
+		return end;
+	}
+	public List<ASMInstruction> getInstructions() {
+		return instructions;
+	}
+	public boolean startsWithLabel() {
+		return !instructions.isEmpty() && instructions.get(0).getOpcode() == ASMOpcode.Label;
+	}
+	public List<String> getLabels() {
+		List<String> result = new ArrayList<String>();
+		for(ASMInstruction instruction: instructions) {
+			if(instruction.getOpcode() == ASMOpcode.Label) {
+				result.add(instruction.getStringArgument());
+			}
+		}
+		return result;
+	}
+
+	/** The last instruction of the block that is not a data directive, or null if
+	 *  there is none.  This is the instruction that decides where control goes next.
+	 */
+	public ASMInstruction getTerminator() {
+		for(int i = instructions.size()-1; i >= 0; i--) {
+			ASMInstruction instruction = instructions.get(i);
+			if(!instruction.getOpcode().isDataDirective()) {
+				return instruction;
+			}
+		}
+		return null;
+	}
+	public boolean canFallThrough() {
+		ASMInstruction terminator = getTerminator();
+		return terminator == null || !terminator.getOpcode().isUnconditionalTransfer();
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// edges
+
+	public List<BasicBlock> getSuccessors() {
+		return successors;
+	}
+	public List<BasicBlock> getPredecessors() {
+		return predecessors;
+	}
+	/** The block control reaches when this block runs off its end, or null if
+	 *  it cannot (or if this is the last block).
+	 */
+	public BasicBlock getFallThroughSuccessor() {
+		return fallThroughSuccessor;
+	}
+	void setFallThroughSuccessor(BasicBlock block) {
+		fallThroughSuccessor = block;
+		addSuccessor(block);
+	}
+	void addSuccessor(BasicBlock block) {
+		if(!successors.contains(block)) {
+			successors.add(block);
+			block.predecessors.add(this);
+		}
+	}
+	void unlink() {
+		for(BasicBlock successor: successors) {
+			successor.predecessors.remove(this);
+		}
+		for(BasicBlock predecessor: predecessors) {
+			predecessor.successors.remove(this);
+			if(predecessor.fallThroughSuccessor == this) {
+				predecessor.fallThroughSuccessor = null;
+			}
+		}
+		successors.clear();
+		predecessors.clear();
+		fallThroughSuccessor = null;
+	}
+
+	public String toString() {
+		List<String> labels = getLabels();
+		String name = labels.isEmpty() ? "(unlabelled)" : labels.get(0);
+		return "block " + name + " [" + instructions.size() + " instructions]";
+	}
+}
@@ -0,0 +1,249 @@
+package asmCodeGenerator.codeStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import asmCodeGenerator.Labeller;
+import asmCodeGenerator.codeStorage.ASMCodeFragment.CodeType;
+
+// The basic blocks of a program, in program order, with successor and
+// predecessor edges.
+//
+// A new block starts at the first instruction, at every Label that isn't
+// immediately preceded by another Label, and after every Jump, Call, Return,
+// PopPC and Halt.
+// Edges:  Jump L goes to L; a conditional jump goes to L and falls through;
+//         Call L goes to L and falls through (to where the callee returns);
+//         CallV falls through; JumpV, Return, PopPC and Halt have no known successors;
+//         anything else falls through.
+// Code labels whose address is taken (by PushD or DataD) may be reached through
+// JumpV or CallV; they are reported by getAddressTakenBlocks().
+//
+// A graph built from an ASMCodeChunk doesn't copy the instructions out: its
+// blocks are only index ranges into the chunk (BasicBlock.getStart/getEnd), for
+// passes that analyze the chunk and then rewrite it in place.
+public class ControlFlowGraph {
+	private List<BasicBlock> blocks;
+	private Map<String, BasicBlock> blocksByLabel;
+	private Set<String> addressTakenLabels;
+
+	public static ControlFlowGraph build(ASMCodeFragment fragment) {
+		return build(fragment.instructions());
+	}
+	public static ControlFlowGraph build(final List<ASMInstruction> instructions) {
+		ControlFlowGraph graph = build(new Code() {
+			public int size() {
+				return instructions.size();
+			}
+			public ASMOpcode opcode(int index) {
+				return instructions.get(index).getOpcode();
+			}
+			public String operand(int index) {
+				return instructions.get(index).getStringArgument();
+			}
+		});
+		for(BasicBlock block: graph.blocks) {
+			for(int i = block.getStart(); i < block.getEnd(); i++) {
+				block.add(instructions.get(i));
+			}
+		}
+		return graph;
+	}
+	public static ControlFlowGraph build(final ASMCodeChunk chunk) {
+		return build(new Code() {
+			public int size() {
+				return chunk.size();
+			}
+			public ASMOpcode opcode(int index) {
+				return chunk.getOpcode(index);
+			}
+			public String operand(int index) {
+				return chunk.getStringOperand(index);
+			}
+		});
+	}
+	private static ControlFlowGraph build(Code code) {
+		ControlFlowGraph graph = new ControlFlowGraph();
+		graph.split(code);
+		graph.link(code);
+		return graph;
+	}
+	private ControlFlowGraph() {
+		blocks = new ArrayList<BasicBlock>();
+		blocksByLabel = new HashMap<String, BasicBlock>();
+		addressTakenLabels = new HashSet<String>();
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// construction
+
+	// the instructions being split, by index.  operand is only asked of
+	// instructions with a string operand.
+	private interface Code {
+		int size();
+		ASMOpcode opcode(int index);
+		String operand(int index);
+	}
+
+	private void split(Code code) {
+		BasicBlock current = null;
+		boolean onlyLabels = false;
+		for(int i = 0; i < code.size(); i++) {
+			ASMOpcode opcode = code.opcode(i);
+			if(current == null || (opcode == ASMOpcode.Label && !onlyLabels)) {
+				if(current != null) {
+					current.setEnd(i);
+				}
+				current = new BasicBlock(i);
+				blocks.add(current);
+				onlyLabels = true;
+			}
+
+			if(opcode == ASMOpcode.Label) {
+				blocksByLabel.put(code.operand(i), current);
+			}
+			else {
+				onlyLabels = false;
+			}
+			if(opcode == ASMOpcode.PushD || opcode == ASMOpcode.DataD) {
+				addressTakenLabels.add(code.operand(i));
+			}
+			if(opcode.endsBasicBlock()) {
+				current.setEnd(i+1);
+				current = null;
+			}
+		}
+		if(current != null) {
+			current.setEnd(code.size());
+		}
+	}
+	private void link(Code code) {
+		for(int i = 0; i < blocks.size(); i++) {
+			BasicBlock block = blocks.get(i);
+			BasicBlock next = (i+1 < blocks.size()) ? blocks.get(i+1) : null;
+
+			int terminator = terminatorOf(code, block);
+			ASMOpcode opcode = (terminator < 0) ? null : code.opcode(terminator);
+			if(opcode != null && (opcode.isLabelJump() || opcode == ASMOpcode.Call)) {
+				BasicBlock target = blocksByLabel.get(code.operand(terminator));
+				if(target != null) {
+					block.addSuccessor(target);
+				}
+			}
+			if(next != null && (opcode == null || !opcode.isUnconditionalTransfer())) {
+				block.setFallThroughSuccessor(next);
+			}
+		}
+	}
+	// the index of BasicBlock.getTerminator(), or -1.
+	private static int terminatorOf(Code code, BasicBlock block) {
+		for(int i = block.getEnd()-1; i >= block.getStart(); i--) {
+			if(!code.opcode(i).isDataDirective()) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// queries
+
+	/** The blocks, in the order they will be linearized.  Callers may reorder
+	 *  this list; use removeBlock to delete a block.
+	 */
+	public List<BasicBlock> getBlocks() {
+		return blocks;
+	}
+	public BasicBlock getEntry() {
+		return blocks.isEmpty() ? null : blocks.get(0);
+	}
+	/** @return the block containing the given Label, or null if there is none. */
+	public BasicBlock blockLabelled(String label) {
+		return blocksByLabel.get(label);
+	}
+	public List<BasicBlock> getAddressTakenBlocks() {
+		List<BasicBlock> result = new ArrayList<BasicBlock>();
+		for(String label: addressTakenLabels) {
+			BasicBlock block = blocksByLabel.get(label);
+			if(block != null && !result.contains(block)) {
+				result.add(block);
+			}
+		}
+		return result;
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// modification
+
+	public void removeBlock(BasicBlock block) {
+		block.unlink();
+		blocks.remove(block);
+		for(String label: block.getLabels()) {
+			blocksByLabel.remove(label);
+		}
+	}
+	public void removeBlocks(Collection<BasicBlock> toRemove) {
+		for(BasicBlock block: toRemove) {
+			block.unlink();
+			for(String label: block.getLabels()) {
+				blocksByLabel.remove(label);
+			}
+		}
+		blocks.removeAll(toRemove);
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// linearization
+
+	/** The instructions of all blocks in getBlocks() order.  Where a block's
+	 *  fall-through successor no longer follows it, a Jump to that successor
+	 *  is added (and a Label, if the successor has none).
+	 */
+	public List<ASMInstruction> linearize() {
+		labelDisplacedFallThroughTargets();
+
+		List<ASMInstruction> result = new ArrayList<ASMInstruction>();
+		for(int i = 0; i < blocks.size(); i++) {
+			BasicBlock block = blocks.get(i);
+			result.addAll(block.getInstructions());
+
+			BasicBlock fallThrough = block.getFallThroughSuccessor();
+			if(fallThrough != null && !isAt(i+1, fallThrough)) {
+				String label = fallThrough.getLabels().get(0);
+				result.add(new ASMInstruction(ASMOpcode.Jump, label));
+			}
+		}
+		return result;
+	}
+	public ASMCodeFragment toFragment(CodeType codeType) {
+		return ASMCodeFragment.fromInstructions(codeType, linearize());
+	}
+
+	private void labelDisplacedFallThroughTargets() {
+		Labeller labeller = null;
+		for(int i = 0; i < blocks.size(); i++) {
+			BasicBlock fallThrough = blocks.get(i).getFallThroughSuccessor();
+			if(fallThrough == null || isAt(i+1, fallThrough) || !fallThrough.getLabels().isEmpty()) {
+				continue;
+			}
+			if(labeller == null) {
+				labeller = new Labeller("fall-through");
+			}
+			String label = labeller.newLabel("block-" + i);
+			fallThrough.getInstructions().add(0, new ASMInstruction(ASMOpcode.Label, label));
+			blocksByLabel.put(label, fallThrough);
+		}
+	}
+	private boolean isAt(int index, BasicBlock block) {
+		return index < blocks.size() && blocks.get(index) == block;
+	}
+}
@@ -0,0 +1,48 @@
+package asmCodeGenerator.codeStorage;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+// an immutable binary tree of chunks: either a single chunk, or the
+// concatenation of two ropes.  Used by ASMCodeFragment to make append O(1).
+// Ropes are shared freely between fragments; since a rope never changes, a
+// fragment appended somewhere keeps its own contents afterwards.
+class Rope {
+	private ASMCodeChunk chunk;		// non-null for a leaf
+	private Rope left;
+	private Rope right;
+
+	Rope(ASMCodeChunk chunk) {
+		this.chunk = chunk;
+	}
+	private Rope(Rope left, Rope right) {
+		this.left = left;
+		this.right = right;
+	}
+	static Rope concatenate(Rope left, Rope right) {
+		if(left == null) {
+			return right;
+		}
+		if(right == null) {
+			return left;
+		}
+		return new Rope(left, right);
+	}
+
+	// iterative, since ropes built by long runs of appends are very deep.
+	void flattenInto(List<ASMCodeChunk> result) {
+		Deque<Rope> pending = new ArrayDeque<Rope>();
+		pending.push(this);
+		while(!pending.isEmpty()) {
+			Rope rope = pending.pop();
+			if(rope.chunk != null) {
+				result.add(rope.chunk);
+			}
+			else {
+				pending.push(rope.right);
+				pending.push(rope.left);
+			}
+		}
+	}
+}
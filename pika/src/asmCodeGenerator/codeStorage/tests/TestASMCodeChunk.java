@@ -0,0 +1,80 @@
+package asmCodeGenerator.codeStorage.tests;
+
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+import junit.framework.TestCase;
+import asmCodeGenerator.codeStorage.ASMCodeChunk;
+import asmCodeGenerator.codeStorage.ASMInstruction;
+
+public class TestASMCodeChunk extends TestCase {
+
+	public void testOperandsRoundTrip() {
+		ASMCodeChunk chunk = new ASMCodeChunk();
+		chunk.add(PushI, 42, "answer");
+		chunk.add(PushF, 2.5);
+		chunk.add(Label, "loop");
+		chunk.add(Jump, "loop");
+		chunk.add(Pop);
+
+		assertEquals(5, chunk.size());
+		assertEquals(42, chunk.getIntOperand(0));
+		assertEquals("answer", chunk.getComment(0));
+		assertEquals(2.5, chunk.getFloatOperand(1));
+		assertEquals("loop", chunk.getStringOperand(2));
+		assertEquals("loop", chunk.getStringOperand(3));
+		assertEquals(Pop, chunk.getOpcode(4));
+		assertNull(chunk.get(4).getArgument());
+	}
+	public void testPrintsLikeInstructions() {
+		ASMCodeChunk chunk = new ASMCodeChunk();
+		chunk.add(PushI, 7, "seven");
+		chunk.add(DataS, "hi");
+		chunk.add(Halt);
+
+		String[] lines = chunk.toString().split("\r?\n");
+		assertEquals(5, lines.length);			// DataS prints as one DataC per character, plus the 0.
+		assertEquals(new ASMInstruction(PushI, 7, "seven").toString(), lines[0]);
+		assertEquals(new ASMInstruction(DataC, 0).toString(), lines[3]);
+		assertEquals(new ASMInstruction(Halt).toString(), lines[4]);
+	}
+	public void testPrintsEveryOperandKind() {
+		ASMCodeChunk chunk = new ASMCodeChunk();
+		chunk.add(Label, "start", "entry");
+		chunk.add(PushF, 2.5);
+		chunk.add(PushI, -3);
+		chunk.add(DataS, "a\n", "");
+		chunk.add(Pop);
+
+		StringBuilder expected = new StringBuilder();
+		for(ASMInstruction instruction: chunk.getInstructions()) {
+			expected.append(instruction.toString()).append(System.getProperty("line.separator"));
+		}
+		assertEquals(expected.toString(), chunk.toString());
+	}
+	public void testInPlaceRewriting() {
+		ASMCodeChunk chunk = new ASMCodeChunk();
+		for(int i = 0; i < 100; i++) {
+			chunk.add(PushI, i);
+		}
+		chunk.set(10, new ASMInstruction(PushD, "x"));
+		for(int i = 1; i < chunk.size(); i++) {		// drop the first instruction
+			chunk.move(i, i-1);
+		}
+		chunk.truncate(chunk.size() - 1);
+
+		assertEquals(99, chunk.size());
+		assertEquals(PushD, chunk.getOpcode(9));
+		assertEquals("x", chunk.getStringOperand(9));
+		assertEquals(99, chunk.getIntOperand(98));
+	}
+	public void testFloatsAfterMove() {
+		ASMCodeChunk chunk = new ASMCodeChunk();
+		chunk.add(PushI, 1);
+		chunk.add(PushF, 2.5);
+		chunk.move(1, 0);
+		chunk.truncate(1);
+
+		assertEquals(PushF, chunk.getOpcode(0));
+		assertEquals(2.5, chunk.getFloatOperand(0));
+	}
+}
@@ -0,0 +1,105 @@
+package asmCodeGenerator.codeStorage.tests;
+
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMInstruction;
+import asmCodeGenerator.codeStorage.BasicBlock;
+import asmCodeGenerator.codeStorage.ControlFlowGraph;
+import asmCodeGenerator.codeStorage.ASMCodeFragment.CodeType;
+
+public class TestControlFlowGraph extends TestCase {
+
+	// main:  PushI 1; JumpFalse else; Call sub; Jump join
+	// else:  PushI 2; Pop
+	// join:  Halt
+	// sub:   Return
+	private ASMCodeFragment program() {
+		ASMCodeFragment code = new ASMCodeFragment(CodeType.GENERATES_VOID);
+		code.add(Label, "main");
+		code.add(PushI, 1);
+		code.add(JumpFalse, "else");
+		code.add(Call, "sub");
+		code.add(Jump, "join");
+		code.add(Label, "else");
+		code.add(PushI, 2);
+		code.add(Pop);
+		code.add(Label, "join");
+		code.add(Halt);
+		code.add(Label, "sub");
+		code.add(DLabel, "sub-local");
+		code.add(DataI, 0);
+		code.add(Return);
+		return code;
+	}
+
+	public void testBlockSplitting() {
+		ControlFlowGraph graph = ControlFlowGraph.build(program());
+		List<BasicBlock> blocks = graph.getBlocks();
+
+		assertEquals(6, blocks.size());
+		assertSame(graph.blockLabelled("main"), graph.getEntry());
+		assertEquals(JumpFalse, graph.getEntry().getTerminator().getOpcode());
+		assertEquals(Return, graph.blockLabelled("sub").getTerminator().getOpcode());
+	}
+	public void testEdges() {
+		ControlFlowGraph graph = ControlFlowGraph.build(program());
+		List<BasicBlock> blocks = graph.getBlocks();
+		BasicBlock entry = graph.getEntry();
+		BasicBlock callBlock = blocks.get(1);
+		BasicBlock jumpBlock = blocks.get(2);
+		BasicBlock elseBlock = graph.blockLabelled("else");
+		BasicBlock joinBlock = graph.blockLabelled("join");
+		BasicBlock subBlock  = graph.blockLabelled("sub");
+
+		assertTrue(entry.getSuccessors().contains(elseBlock));
+		assertSame(callBlock, entry.getFallThroughSuccessor());
+		assertTrue(callBlock.getSuccessors().contains(subBlock));
+		assertSame(jumpBlock, callBlock.getFallThroughSuccessor());
+		assertEquals(1, jumpBlock.getSuccessors().size());
+		assertSame(joinBlock, jumpBlock.getSuccessors().get(0));
+		assertSame(joinBlock, elseBlock.getFallThroughSuccessor());
+		assertEquals(2, joinBlock.getPredecessors().size());
+		assertTrue(joinBlock.getSuccessors().isEmpty());
+		assertTrue(subBlock.getSuccessors().isEmpty());
+	}
+	public void testChunkGraphMatches() {
+		ControlFlowGraph graph = ControlFlowGraph.build(program());
+		ControlFlowGraph chunkGraph = ControlFlowGraph.build(program().toChunk());
+		List<BasicBlock> blocks = graph.getBlocks();
+		List<BasicBlock> chunkBlocks = chunkGraph.getBlocks();
+
+		assertEquals(blocks.size(), chunkBlocks.size());
+		for(int i = 0; i < blocks.size(); i++) {
+			BasicBlock block = blocks.get(i);
+			BasicBlock chunkBlock = chunkBlocks.get(i);
+			assertEquals(block.getStart(), chunkBlock.getStart());
+			assertEquals(block.getEnd(), chunkBlock.getEnd());
+			assertEquals(block.getSuccessors().size(), chunkBlock.getSuccessors().size());
+			for(BasicBlock successor: block.getSuccessors()) {
+				assertTrue(chunkBlock.getSuccessors().contains(chunkBlocks.get(blocks.indexOf(successor))));
+			}
+		}
+		assertSame(chunkBlocks.get(3), chunkGraph.blockLabelled("else"));
+	}
+	public void testLinearizeRoundTrip() {
+		ASMCodeFragment original = program();
+		ControlFlowGraph graph = ControlFlowGraph.build(original);
+
+		assertEquals(original.toString(), graph.toFragment(CodeType.GENERATES_VOID).toString());
+	}
+	public void testLinearizeRestoresFallThrough() {
+		ControlFlowGraph graph = ControlFlowGraph.build(program());
+		BasicBlock elseBlock = graph.blockLabelled("else");
+		graph.getBlocks().remove(elseBlock);
+		graph.getBlocks().add(elseBlock);
+
+		List<ASMInstruction> code = graph.linearize();
+		ASMInstruction last = code.get(code.size()-1);
+		assertEquals(Jump, last.getOpcode());
+		assertEquals("join", last.getStringArgument());
+	}
+}
@@ -12,6 +12,30 @@ public class MemoryManager {
 	private static final boolean DEBUGGING = false;
 	private static final boolean DEBUGGING2 = false;		// does not insertDebugMain
 	
+	// Allocation modes, chosen per compilation.  FREE_LISTS is the general allocator
+	// below.  ARENA bumps a pointer through the heap, with no tags, and makes
+	// deallocation a no-op; it suits programs that never deallocate, which is every
+	// program the code generator makes today, so it is the default.
+	public enum Mode {
+		FREE_LISTS,
+		ARENA;
+
+		public static final Mode DEFAULT = ARENA;
+
+		/** The mode with the given name (in any case), or DEFAULT if name is null. */
+		public static Mode forName(String name) {
+			if(name == null) {
+				return DEFAULT;
+			}
+			for(Mode mode: values()) {
+				if(mode.name().equalsIgnoreCase(name)) {
+					return mode;
+				}
+			}
+			throw new IllegalArgumentException("no memory manager mode named " + name);
+		}
+	}
+	
 	// ASM Subroutines.  User/Compiler-writer needs only ALLOCATE and DEALLOCATE
 	private static final String MEM_MANAGER_INITIALIZE =   "-mem-manager-initialize";
 	private static final String MEM_MANAGER_MAKE_TAGS =    "-mem-manager-make-tags";
@@ -19,11 +43,13 @@ public class MemoryManager {
 	public  static final String MEM_MANAGER_ALLOCATE =     "-mem-manager-allocate";
 	public  static final String MEM_MANAGER_DEALLOCATE =   "-mem-manager-deallocate";
 	private static final String MEM_MANAGER_REMOVE_BLOCK = "-mem-manager-remove-block";
+	private static final String MEM_MANAGER_INSERT_BLOCK = "-mem-manager-insert-block";
+	private static final String MEM_MANAGER_SIZE_CLASS =   "-mem-manager-size-class";
 	
 	// Main memory manager variables.
 	private static final String MEM_MANAGER_HEAP_START_PTR =   "$heap-start-ptr";
 	private static final String MEM_MANAGER_HEAP_END_PTR =     "$heap-after-ptr";
-	private static final String MEM_MANAGER_FIRST_FREE_BLOCK = "$heap-first-free";
+	private static final String MEM_MANAGER_FREE_LISTS =       "$heap-free-lists";
 	private static final String MEM_MANAGER_HEAP =             "$heap-memory";
 	
 	// locals for MAKE_TAGS
@@ -47,6 +73,12 @@ public class MemoryManager {
 	private static final String MMGR_ALLOC_CURRENT_BLOCK =  	"$mmgr-alloc-current-block";
 	private static final String MMGR_ALLOC_REMAINDER_BLOCK =	"$mmgr-alloc-remainder-block";
 	private static final String MMGR_ALLOC_REMAINDER_SIZE = 	"$mmgr-alloc-remainder-size";
+	private static final String MMGR_ALLOC_CLASS = 				"$mmgr-alloc-class";
+	private static final String MMGR_ALLOC_ROUNDED_SIZE = 		"$mmgr-alloc-rounded-size";
+	private static final String MMGR_ALLOC_SMALL =				"-mmgr-alloc-small";
+	private static final String MMGR_ALLOC_ROUND_UP =			"-mmgr-alloc-round-up";
+	private static final String MMGR_ALLOC_ROUNDED =			"-mmgr-alloc-rounded";
+	private static final String MMGR_ALLOC_NEXT_CLASS =			"-mmgr-alloc-next-class";
 	private static final String MMGR_ALLOC_FOUND_BLOCK =		"-mmgr-alloc-found-block";
 	private static final String MMGR_ALLOC_PROCESS_CURRENT = 	"-mmgr-alloc-process-current";
 	private static final String MMGR_ALLOC_TEST_BLOCK =  		"-mmgr-alloc-test-block";
@@ -56,6 +88,22 @@ public class MemoryManager {
 	// locals and branch targets for DEALLOCATE	
 	private static final String MMGR_DEALLOC_RETURN_ADDRESS = 	"$mmgr-dealloc-return";
 	private static final String MMGR_DEALLOC_BLOCK = 			"$mmgr-dealloc-block";
+	private static final String MMGR_DEALLOC_NEIGHBOR = 		"$mmgr-dealloc-neighbor";
+	private static final String MMGR_DEALLOC_TRY_PREV = 		"-mmgr-dealloc-try-prev";
+	private static final String MMGR_DEALLOC_INSERT = 			"-mmgr-dealloc-insert";
+
+	// locals and branch targets for INSERT_BLOCK
+	private static final String MMGR_INSERT_RETURN_ADDRESS = 	"$mmgr-insert-return";
+	private static final String MMGR_INSERT_BLOCK = 			"$mmgr-insert-block";
+	private static final String MMGR_INSERT_HEAD = 				"$mmgr-insert-head";
+	private static final String MMGR_INSERT_BYPASS_FIRST = 		"-mmgr-insert-bypass-first";
+
+	// locals and branch targets for SIZE_CLASS
+	private static final String MMGR_CLASS_RETURN_ADDRESS = 	"$mmgr-class-return";
+	private static final String MMGR_CLASS_SIZE = 				"$mmgr-class-size";
+	private static final String MMGR_CLASS_CLASS = 				"$mmgr-class-class";
+	private static final String MMGR_CLASS_LOOP = 				"-mmgr-class-loop";
+	private static final String MMGR_CLASS_DONE = 				"-mmgr-class-done";
 
 	// locals and branch targets for REMOVE_BLOCK
 	private static final String MMGR_REMOVE_RETURN_ADDRESS = 	"$mmgr-remove-return";
@@ -82,19 +130,38 @@ public class MemoryManager {
 	private static final int TAG_SIZE_OFFSET = 4;
 	private static final int TAG_AVAIL_OFFSET = 8;
 	
-	// the only tunable parameter.
-	private static final int MEM_MANAGER_WASTE_TOLERANCE = MMGR_TWICE_TAG_SIZE + 8;
+	// the tunable parameters.
+	// A block is only split if the remainder is at least MMGR_SMALLEST_BLOCK, so
+	// every free block is big enough for some request.
+	private static final int MMGR_SMALL_BLOCK_LIMIT = 1024;
+	private static final int MMGR_SMALLEST_BLOCK = 32;
+	private static final int MEM_MANAGER_WASTE_TOLERANCE = MMGR_SMALLEST_BLOCK;
+
+	// free blocks are kept on one list per size class: class k holds the blocks
+	// of 2^k to 2^(k+1)-1 bytes, tags included.  Small requests (under
+	// MMGR_SMALL_BLOCK_LIMIT) are rounded up to a power of two, so the head of
+	// their class always fits; only large blocks are searched, split and coalesced.
+	private static final int MMGR_NUM_SIZE_CLASSES = 32;
 
 	
 
 	// this code should reside on the executable pathway before the application.
-	public static ASMCodeFragment codeForInitialization() {
+	// memoryMode must match codeForAfterApplication's.
+	public static ASMCodeFragment codeForInitialization(Mode memoryMode) {
 		ASMCodeFragment frag = new ASMCodeFragment(GENERATES_VOID);
 		frag.add(Label, MEM_MANAGER_INITIALIZE);
 		
 		declareI(frag, MEM_MANAGER_HEAP_START_PTR);	// declare variables
 		declareI(frag, MEM_MANAGER_HEAP_END_PTR);	
-		declareI(frag, MEM_MANAGER_FIRST_FREE_BLOCK);
+		frag.add(DLabel, MEM_MANAGER_FREE_LISTS);		// no blocks free: every list head is 0.
+		frag.add(DataZ, 4 * MMGR_NUM_SIZE_CLASSES);
+		if(memoryMode == Mode.ARENA) {
+			frag.add(PushD, MEM_MANAGER_HEAP);			// heapEnd is the bump pointer
+			frag.add(Duplicate);
+			storeITo(frag, MEM_MANAGER_HEAP_START_PTR);
+			storeITo(frag, MEM_MANAGER_HEAP_END_PTR);
+			return frag;
+		}
 		
 		declareI(frag, MMGR_NEWBLOCK_BLOCK);
 		declareI(frag, MMGR_NEWBLOCK_SIZE);
@@ -103,9 +170,6 @@ public class MemoryManager {
 		frag.add(Duplicate);
 		storeITo(frag, MEM_MANAGER_HEAP_START_PTR);
 		storeITo(frag, MEM_MANAGER_HEAP_END_PTR);
-		
-		frag.add(PushI, 0);								// no blocks allocated.
-		storeITo(frag, MEM_MANAGER_FIRST_FREE_BLOCK);
 
 		if(DEBUGGING) {
 			insertDebugMain(frag);
@@ -116,14 +180,22 @@ public class MemoryManager {
 
 
 	// this goes after the main program, so that MEM_MANAGER_HEAP is after all other variable declarations.
-	public static ASMCodeFragment codeForAfterApplication() {
+	public static ASMCodeFragment codeForAfterApplication(Mode memoryMode) {
 		ASMCodeFragment frag = new ASMCodeFragment(GENERATES_VOID);	
+		if(memoryMode == Mode.ARENA) {
+			frag.append(subroutineArenaAllocate());
+			frag.append(subroutineArenaDeallocate());
+			frag.add(DLabel, MEM_MANAGER_HEAP);
+			return frag;
+		}
 		
 		frag.append(subroutineMakeTags());
 		frag.append(subroutineMakeOneTag());
 		frag.append(subroutineAllocate());
 		frag.append(subroutineDeallocate());
 		frag.append(subroutineRemoveBlock());
+		frag.append(subroutineInsertBlock());
+		frag.append(subroutineSizeClass());
 		if(DEBUGGING) {
 			frag.append(subroutineDebugPrintBlock());
 			frag.append(subroutineDebugPrintFreeList());
@@ -221,6 +293,8 @@ public class MemoryManager {
 		declareI(frag, MMGR_ALLOC_CURRENT_BLOCK);
 		declareI(frag, MMGR_ALLOC_REMAINDER_BLOCK);
 		declareI(frag, MMGR_ALLOC_REMAINDER_SIZE);
+		declareI(frag, MMGR_ALLOC_CLASS);
+		declareI(frag, MMGR_ALLOC_ROUNDED_SIZE);
 		
 
 		//store return addr
@@ -235,15 +309,25 @@ public class MemoryManager {
 		frag.add(Add);									// [... size]
 		storeITo(frag, MMGR_ALLOC_SIZE);				// [...]
 
-	
-		//initialize current block
-			loadIFrom(frag, MEM_MANAGER_FIRST_FREE_BLOCK);
+		// if (size < smallBlockLimit) goto SMALL
+			loadIFrom(frag, MMGR_ALLOC_SIZE);
+			frag.add(PushI, MMGR_SMALL_BLOCK_LIMIT);
+			frag.add(Subtract);
+			frag.add(JumpNeg, MMGR_ALLOC_SMALL);
+
+		//initialize current block to the head of size's class
+			loadIFrom(frag, MMGR_ALLOC_SIZE);
+			frag.add(Call, MEM_MANAGER_SIZE_CLASS);
+			storeITo(frag, MMGR_ALLOC_CLASS);
+			loadIFrom(frag, MMGR_ALLOC_CLASS);
+			freeListHead(frag);
+			frag.add(LoadI);
 			storeITo(frag, MMGR_ALLOC_CURRENT_BLOCK);
 
-		// if (curblock == null) goto NO_BLOCK_WORKS
+		// if (curblock == null) goto NEXT_CLASS
 		frag.add(Label, MMGR_ALLOC_PROCESS_CURRENT);
 			loadIFrom(frag, MMGR_ALLOC_CURRENT_BLOCK);
-			frag.add(JumpFalse, MMGR_ALLOC_NO_BLOCK_WORKS);
+			frag.add(JumpFalse, MMGR_ALLOC_NEXT_CLASS);
 
 		// if (curblock.size >= allocsize) goto FOUND_BLOCK		
 		frag.add(Label, MMGR_ALLOC_TEST_BLOCK);
@@ -270,6 +354,53 @@ public class MemoryManager {
 		frag.add(Jump, MMGR_ALLOC_PROCESS_CURRENT);
 		
 		
+		// round size up to a power of two; then any block in its class fits.
+		frag.add(Label, MMGR_ALLOC_SMALL);
+			frag.add(PushI, MMGR_SMALLEST_BLOCK);
+			storeITo(frag, MMGR_ALLOC_ROUNDED_SIZE);
+		frag.add(Label, MMGR_ALLOC_ROUND_UP);
+			loadIFrom(frag, MMGR_ALLOC_ROUNDED_SIZE);		// [... rounded]
+			loadIFrom(frag, MMGR_ALLOC_SIZE);				// [... rounded allocSize]
+			frag.add(Subtract);								// [... rounded-allocSize]
+			frag.add(PushI, 1);
+			frag.add(Add);									// [... rounded-allocSize+1]
+			frag.add(JumpPos, MMGR_ALLOC_ROUNDED);
+			loadIFrom(frag, MMGR_ALLOC_ROUNDED_SIZE);
+			frag.add(PushI, 2);
+			frag.add(Multiply);
+			storeITo(frag, MMGR_ALLOC_ROUNDED_SIZE);
+			frag.add(Jump, MMGR_ALLOC_ROUND_UP);
+
+		frag.add(Label, MMGR_ALLOC_ROUNDED);
+			loadIFrom(frag, MMGR_ALLOC_ROUNDED_SIZE);
+			storeITo(frag, MMGR_ALLOC_SIZE);
+
+			// if (class head != null) goto FOUND_BLOCK
+			loadIFrom(frag, MMGR_ALLOC_SIZE);
+			frag.add(Call, MEM_MANAGER_SIZE_CLASS);
+			storeITo(frag, MMGR_ALLOC_CLASS);
+			loadIFrom(frag, MMGR_ALLOC_CLASS);
+			freeListHead(frag);
+			frag.add(LoadI);
+			storeITo(frag, MMGR_ALLOC_CURRENT_BLOCK);
+			loadIFrom(frag, MMGR_ALLOC_CURRENT_BLOCK);
+			frag.add(JumpTrue, MMGR_ALLOC_FOUND_BLOCK);
+
+		// every block of a higher class fits: take the head of the first nonempty one.
+		frag.add(Label, MMGR_ALLOC_NEXT_CLASS);
+			incrementInteger(frag, MMGR_ALLOC_CLASS);
+			loadIFrom(frag, MMGR_ALLOC_CLASS);
+			frag.add(PushI, MMGR_NUM_SIZE_CLASSES);
+			frag.add(Subtract);
+			frag.add(JumpFalse, MMGR_ALLOC_NO_BLOCK_WORKS);
+
+			loadIFrom(frag, MMGR_ALLOC_CLASS);
+			freeListHead(frag);
+			frag.add(LoadI);
+			storeITo(frag, MMGR_ALLOC_CURRENT_BLOCK);
+			loadIFrom(frag, MMGR_ALLOC_CURRENT_BLOCK);
+			frag.add(JumpFalse, MMGR_ALLOC_NEXT_CLASS);
+
 		frag.add(Label, MMGR_ALLOC_FOUND_BLOCK);
 			// remove block from free list
 			loadIFrom(frag, MMGR_ALLOC_CURRENT_BLOCK);
@@ -319,11 +450,9 @@ public class MemoryManager {
 			loadIFrom(frag, MMGR_ALLOC_REMAINDER_SIZE);		// size of block
 			frag.add(Call, MEM_MANAGER_MAKE_TAGS);	
 			
-			// insert remainder block into free block list
+			// insert remainder block into its free block list
 			loadIFrom(frag, MMGR_ALLOC_REMAINDER_BLOCK);
-			frag.add(PushI, MMGR_TAG_SIZE_IN_BYTES);
-			frag.add(Add);
-			frag.add(Call, MEM_MANAGER_DEALLOCATE);
+			frag.add(Call, MEM_MANAGER_INSERT_BLOCK);
 			
 			// currentBlock is now usable.
 			frag.add(Jump, MMGR_ALLOC_RETURN_USERBLOCK);
@@ -342,6 +471,14 @@ public class MemoryManager {
 		
 		// [... ] -> [... userBlock] & return
 		frag.add(Label, MMGR_ALLOC_RETURN_USERBLOCK);
+			frag.add(PushI, 0);							// block is in use
+			loadIFrom(frag, MMGR_ALLOC_CURRENT_BLOCK);
+			writeTagAvailable(frag);
+			frag.add(PushI, 0);
+			loadIFrom(frag, MMGR_ALLOC_CURRENT_BLOCK);
+			tailTag(frag);
+			writeTagAvailable(frag);
+
 			loadIFrom(frag, MMGR_ALLOC_CURRENT_BLOCK);	// [... block]
 			frag.add(PushI, MMGR_TAG_SIZE_IN_BYTES);	// [... block tagsize]
 			frag.add(Add);								// [... userBlock]
@@ -354,6 +491,34 @@ public class MemoryManager {
 
 
 
+	// [... usableSize] -> [... userBlock]
+	// ARENA mode: the block is the next usableSize bytes of the heap.
+	private static ASMCodeFragment subroutineArenaAllocate() {
+		ASMCodeFragment frag = new ASMCodeFragment(GENERATES_VOID);
+		frag.add(Label, MEM_MANAGER_ALLOCATE);		// [... usableSize (return)]
+		
+		declareI(frag, MMGR_ALLOC_RETURN_ADDRESS);
+		storeITo(frag, MMGR_ALLOC_RETURN_ADDRESS);	// [... usableSize]
+		
+		loadIFrom(frag, MEM_MANAGER_HEAP_END_PTR);	// [... usableSize userBlock]
+		frag.add(Exchange);							// [... userBlock usableSize]
+		addITo(frag, MEM_MANAGER_HEAP_END_PTR);		// [... userBlock]
+		
+		loadIFrom(frag, MMGR_ALLOC_RETURN_ADDRESS);
+		frag.add(Return);
+		return frag;
+	}
+	// [... usableBlockPtr] -> [...]
+	// ARENA mode: memory is never reused.
+	private static ASMCodeFragment subroutineArenaDeallocate() {
+		ASMCodeFragment frag = new ASMCodeFragment(GENERATES_VOID);
+		frag.add(Label, MEM_MANAGER_DEALLOCATE);		// [... usableBlockPtr (return)]
+		frag.add(Exchange);								// [... (return) usableBlockPtr]
+		frag.add(Pop);
+		frag.add(Return);
+		return frag;
+	}
+
 	// [... block] -> [...]
 	// pre: block is in Free Block List.
 	private static ASMCodeFragment subroutineRemoveBlock() {
@@ -391,9 +556,13 @@ public class MemoryManager {
 			writeTagPointer(frag);						// [...]
 			frag.add(Jump, MMGR_REMOVE_PROCESS_NEXT);
 
-		frag.add(Label, MMGR_REMOVE_NO_PREV);
-			loadIFrom(frag, MMGR_REMOVE_NEXT);
-			storeITo(frag, MEM_MANAGER_FIRST_FREE_BLOCK);
+		frag.add(Label, MMGR_REMOVE_NO_PREV);			// block was the head of its class
+			loadIFrom(frag, MMGR_REMOVE_BLOCK);			// [... block]
+			readTagSize(frag);							// [... block.size]
+			frag.add(Call, MEM_MANAGER_SIZE_CLASS);		// [... class]
+			freeListHead(frag);							// [... headLocation]
+			loadIFrom(frag, MMGR_REMOVE_NEXT);			// [... headLocation next]
+			frag.add(StoreI);
 
 		//set next block's ptr
 		frag.add(Label, MMGR_REMOVE_PROCESS_NEXT);
@@ -413,12 +582,14 @@ public class MemoryManager {
 	}
 
 	// [... usableBlockPtr (return)]
+	// large blocks are first coalesced with any free neighbours.
 	private static ASMCodeFragment subroutineDeallocate() {
 		ASMCodeFragment frag = new ASMCodeFragment(GENERATES_VOID);
 		frag.add(Label, MEM_MANAGER_DEALLOCATE);		// [... blockptr (return)]
 		
 		declareI(frag, MMGR_DEALLOC_RETURN_ADDRESS);
 		declareI(frag, MMGR_DEALLOC_BLOCK);
+		declareI(frag, MMGR_DEALLOC_NEIGHBOR);
 		
 		//store return addr
 		storeITo(frag, MMGR_DEALLOC_RETURN_ADDRESS);	// [... usableBlock]
@@ -428,49 +599,290 @@ public class MemoryManager {
 		frag.add(Subtract);								// [... block]
 		storeITo(frag, MMGR_DEALLOC_BLOCK);				// [...]
 		
-		// if(firstFree != 0) { firstFree.prev = block }
-        String bypassLabel = "-mmgr-bypass-firstFree";
-        loadIFrom(frag, MEM_MANAGER_FIRST_FREE_BLOCK);
-        frag.add(JumpFalse, bypassLabel);
-        loadIFrom(frag, MMGR_DEALLOC_BLOCK);
-        loadIFrom(frag, MEM_MANAGER_FIRST_FREE_BLOCK);    // [... block firstFree]
-        writeTagPointer(frag);
-        frag.add(Label, bypassLabel);
-        
+		// if (block.size < smallBlockLimit) goto INSERT
+		loadIFrom(frag, MMGR_DEALLOC_BLOCK);
+		readTagSize(frag);
+		frag.add(PushI, MMGR_SMALL_BLOCK_LIMIT);
+		frag.add(Subtract);
+		frag.add(JumpNeg, MMGR_DEALLOC_INSERT);
+		
+		// next = block + block.size; if (next != heapEnd && next.avail) merge next into block
+		loadIFrom(frag, MMGR_DEALLOC_BLOCK);			// [... block]
+		frag.add(Duplicate);							// [... block block]
+		readTagSize(frag);								// [... block block.size]
+		frag.add(Add);									// [... next]
+		storeITo(frag, MMGR_DEALLOC_NEIGHBOR);
+		
+		loadIFrom(frag, MMGR_DEALLOC_NEIGHBOR);
+		loadIFrom(frag, MEM_MANAGER_HEAP_END_PTR);
+		frag.add(Subtract);
+		frag.add(JumpFalse, MMGR_DEALLOC_TRY_PREV);
+		loadIFrom(frag, MMGR_DEALLOC_NEIGHBOR);
+		readTagAvailable(frag);
+		frag.add(JumpFalse, MMGR_DEALLOC_TRY_PREV);
+		
+		loadIFrom(frag, MMGR_DEALLOC_NEIGHBOR);
+		frag.add(Call, MEM_MANAGER_REMOVE_BLOCK);
+		frag.add(PushI, 0);								// prevPtr
+		frag.add(PushI, 0);								// nextPtr
+		frag.add(PushI, 0);								// isAvailable
+		loadIFrom(frag, MMGR_DEALLOC_BLOCK);			// start_addr
+		loadIFrom(frag, MMGR_DEALLOC_BLOCK);
+		readTagSize(frag);
+		loadIFrom(frag, MMGR_DEALLOC_NEIGHBOR);
+		readTagSize(frag);
+		frag.add(Add);									// size of both blocks
+		frag.add(Call, MEM_MANAGER_MAKE_TAGS);
+		
+		// if (block != heapStart && prev.avail) merge block into prev, where prev's tail tag is just before block
+		frag.add(Label, MMGR_DEALLOC_TRY_PREV);
+		loadIFrom(frag, MMGR_DEALLOC_BLOCK);
+		loadIFrom(frag, MEM_MANAGER_HEAP_START_PTR);
+		frag.add(Subtract);
+		frag.add(JumpFalse, MMGR_DEALLOC_INSERT);
+		loadIFrom(frag, MMGR_DEALLOC_BLOCK);
+		frag.add(PushI, MMGR_TAG_SIZE_IN_BYTES);
+		frag.add(Subtract);								// [... prevTail]
+		readTagAvailable(frag);
+		frag.add(JumpFalse, MMGR_DEALLOC_INSERT);
+		
+		loadIFrom(frag, MMGR_DEALLOC_BLOCK);			// [... block]
+		frag.add(Duplicate);							// [... block block]
+		frag.add(PushI, MMGR_TAG_SIZE_IN_BYTES);
+		frag.add(Subtract);								// [... block prevTail]
+		readTagSize(frag);								// [... block prev.size]
+		frag.add(Subtract);								// [... prev]
+		storeITo(frag, MMGR_DEALLOC_NEIGHBOR);
+		
+		loadIFrom(frag, MMGR_DEALLOC_NEIGHBOR);
+		frag.add(Call, MEM_MANAGER_REMOVE_BLOCK);
+		frag.add(PushI, 0);								// prevPtr
+		frag.add(PushI, 0);								// nextPtr
+		frag.add(PushI, 0);								// isAvailable
+		loadIFrom(frag, MMGR_DEALLOC_NEIGHBOR);			// start_addr
+		loadIFrom(frag, MMGR_DEALLOC_NEIGHBOR);
+		readTagSize(frag);
+		loadIFrom(frag, MMGR_DEALLOC_BLOCK);
+		readTagSize(frag);
+		frag.add(Add);									// size of both blocks
+		frag.add(Call, MEM_MANAGER_MAKE_TAGS);
+		loadIFrom(frag, MMGR_DEALLOC_NEIGHBOR);
+		storeITo(frag, MMGR_DEALLOC_BLOCK);
+		
+		frag.add(Label, MMGR_DEALLOC_INSERT);
+		loadIFrom(frag, MMGR_DEALLOC_BLOCK);
+		frag.add(Call, MEM_MANAGER_INSERT_BLOCK);
+		
+		// return
+		loadIFrom(frag, MMGR_DEALLOC_RETURN_ADDRESS);
+		frag.add(Return);
+		return frag;
+	}
+	
+	// [... block] -> [...]
+	// puts block at the head of its class's free list and marks it available.
+	private static ASMCodeFragment subroutineInsertBlock() {
+		ASMCodeFragment frag = new ASMCodeFragment(GENERATES_VOID);
+		frag.add(Label, MEM_MANAGER_INSERT_BLOCK);		// [... block (return)]
+		
+		declareI(frag, MMGR_INSERT_RETURN_ADDRESS);
+		declareI(frag, MMGR_INSERT_BLOCK);
+		declareI(frag, MMGR_INSERT_HEAD);
+		
+		storeITo(frag, MMGR_INSERT_RETURN_ADDRESS);		// [... block]
+		storeITo(frag, MMGR_INSERT_BLOCK);				// [...]
+		
+		loadIFrom(frag, MMGR_INSERT_BLOCK);
+		readTagSize(frag);
+		frag.add(Call, MEM_MANAGER_SIZE_CLASS);
+		freeListHead(frag);
+		storeITo(frag, MMGR_INSERT_HEAD);				// location of the list head
+		
+		// if(first != 0) { first.prev = block }
+		loadIFrom(frag, MMGR_INSERT_HEAD);
+		frag.add(LoadI);
+		frag.add(JumpFalse, MMGR_INSERT_BYPASS_FIRST);
+		loadIFrom(frag, MMGR_INSERT_BLOCK);
+		loadIFrom(frag, MMGR_INSERT_HEAD);
+		frag.add(LoadI);								// [... block first]
+		writeTagPointer(frag);
+		frag.add(Label, MMGR_INSERT_BYPASS_FIRST);
+		
 		// block.prev = 0
 		frag.add(PushI, 0);
-		loadIFrom(frag, MMGR_DEALLOC_BLOCK);	// [... 0 block]
+		loadIFrom(frag, MMGR_INSERT_BLOCK);		// [... 0 block]
 		writeTagPointer(frag);
 		
-		// block.next = firstFree
-		loadIFrom(frag, MEM_MANAGER_FIRST_FREE_BLOCK);	// [... firstFree]
-		loadIFrom(frag, MMGR_DEALLOC_BLOCK);			// [... firstFree block]
-		tailTag(frag);								// [... firstFree blockTail]
+		// block.next = first
+		loadIFrom(frag, MMGR_INSERT_HEAD);
+		frag.add(LoadI);							// [... first]
+		loadIFrom(frag, MMGR_INSERT_BLOCK);		// [... first block]
+		tailTag(frag);							// [... first blockTail]
 		writeTagPointer(frag);
-				
+		
 		// block.avail1 = 1;
 		frag.add(PushI, 1);						// [... 1]
-		loadIFrom(frag, MMGR_DEALLOC_BLOCK);	// [... 1 block]
+		loadIFrom(frag, MMGR_INSERT_BLOCK);		// [... 1 block]
 		writeTagAvailable(frag);
 
 		// block.avail2 = 1;
 		frag.add(PushI, 1);						// [... 1]
-		loadIFrom(frag, MMGR_DEALLOC_BLOCK);	// [... 1 block]
-		tailTag(frag);						// [... 1 blockTail]
+		loadIFrom(frag, MMGR_INSERT_BLOCK);		// [... 1 block]
+		tailTag(frag);							// [... 1 blockTail]
 		writeTagAvailable(frag);
 
-		// firstFree = block
-		loadIFrom(frag, MMGR_DEALLOC_BLOCK);
-		storeITo(frag, MEM_MANAGER_FIRST_FREE_BLOCK);
+		// first = block
+		loadIFrom(frag, MMGR_INSERT_HEAD);
+		loadIFrom(frag, MMGR_INSERT_BLOCK);		// [... headLocation block]
+		frag.add(StoreI);
 		
-		// return
-		loadIFrom(frag, MMGR_DEALLOC_RETURN_ADDRESS);
+		loadIFrom(frag, MMGR_INSERT_RETURN_ADDRESS);
 		frag.add(Return);
 		return frag;
 	}
 	
+	// [... size] -> [... floor(log2(size))]
+	private static ASMCodeFragment subroutineSizeClass() {
+		ASMCodeFragment frag = new ASMCodeFragment(GENERATES_VOID);
+		frag.add(Label, MEM_MANAGER_SIZE_CLASS);		// [... size (return)]
+		
+		declareI(frag, MMGR_CLASS_RETURN_ADDRESS);
+		declareI(frag, MMGR_CLASS_SIZE);
+		declareI(frag, MMGR_CLASS_CLASS);
+		
+		storeITo(frag, MMGR_CLASS_RETURN_ADDRESS);		// [... size]
+		storeITo(frag, MMGR_CLASS_SIZE);				// [...]
+		frag.add(PushI, 0);
+		storeITo(frag, MMGR_CLASS_CLASS);
+		
+		// while (size > 1) { size /= 2; class++ }
+		frag.add(Label, MMGR_CLASS_LOOP);
+			loadIFrom(frag, MMGR_CLASS_SIZE);
+			frag.add(PushI, 1);
+			frag.add(Subtract);
+			frag.add(JumpFalse, MMGR_CLASS_DONE);
+			loadIFrom(frag, MMGR_CLASS_SIZE);
+			frag.add(PushI, 2);
+			frag.add(Divide);
+			storeITo(frag, MMGR_CLASS_SIZE);
+			incrementInteger(frag, MMGR_CLASS_CLASS);
+			frag.add(Jump, MMGR_CLASS_LOOP);
+		
+		frag.add(Label, MMGR_CLASS_DONE);
+			loadIFrom(frag, MMGR_CLASS_CLASS);			// [... class]
+			loadIFrom(frag, MMGR_CLASS_RETURN_ADDRESS);
+			frag.add(Return);
+		return frag;
+	}
+	
 ////////////////////////////////////////////////////////////////////////////////////
-//Macros: these get inlined into the subroutines defined above.
+//Inline allocation: for the code generator, where the size is known at compile time.
+////////////////////////////////////////////////////////////////////////////////////
+
+	// [...] -> [... userBlock]
+	// ARENA mode: the heap end is bumped by usableSize, as MEM_MANAGER_ALLOCATE would.
+	// FREE_LISTS mode: a small block is the head of its class's free list, popped in
+	// place, or if that list is empty is cut straight off the end of the heap, with
+	// its tags.  A popped block is used whole: it is at most twice the rounded size.
+	// Large blocks go through MEM_MANAGER_ALLOCATE.
+	// memoryMode must be the mode the program's memory manager is generated in.
+	public static void allocateInline(ASMCodeFragment frag, Mode memoryMode, int usableSize) {
+		if(memoryMode == Mode.ARENA) {
+			loadIFrom(frag, MEM_MANAGER_HEAP_END_PTR);		// [... userBlock]
+			frag.add(PushI, usableSize);
+			addITo(frag, MEM_MANAGER_HEAP_END_PTR);
+			return;
+		}
+		int size = blockSizeFor(usableSize);
+		if(size >= MMGR_SMALL_BLOCK_LIMIT) {
+			frag.add(PushI, usableSize);
+			frag.add(Call, MEM_MANAGER_ALLOCATE);
+			return;
+		}
+		int classHeadOffset = 4 * sizeClassOf(size);
+		Labeller labeller = new Labeller("mmgr-inline-allocate");
+		String noNext = labeller.newLabel("no-next");
+		String markInUse = labeller.newLabel("mark-in-use");
+		String bump = labeller.newLabel("bump");
+		String userBlock = labeller.newLabel("user-block");
+
+		frag.add(PushD, MEM_MANAGER_FREE_LISTS);
+		readIOffset(frag, classHeadOffset);				// [... block]
+		frag.add(Duplicate);
+		frag.add(JumpFalse, bump);
+
+		// classHead = block.next; next.prev = 0
+		frag.add(Duplicate);
+		tailTag(frag);
+		readTagPointer(frag);							// [... block next]
+		frag.add(Duplicate);
+		frag.add(PushD, MEM_MANAGER_FREE_LISTS);
+		writeIOffset(frag, classHeadOffset);			// [... block next]
+		frag.add(Duplicate);
+		frag.add(JumpFalse, noNext);
+		frag.add(PushI, 0);
+		frag.add(Exchange);								// [... block 0 next]
+		writeTagPointer(frag);							// [... block]
+		frag.add(Jump, markInUse);
+		frag.add(Label, noNext);
+		frag.add(Pop);									// [... block]
+
+		frag.add(Label, markInUse);
+		frag.add(Duplicate);
+		frag.add(PushI, 0);
+		frag.add(Exchange);								// [... block 0 block]
+		writeTagAvailable(frag);
+		frag.add(Duplicate);
+		tailTag(frag);									// [... block blockTail]
+		frag.add(PushI, 0);
+		frag.add(Exchange);
+		writeTagAvailable(frag);						// [... block]
+		frag.add(Jump, userBlock);
+
+		frag.add(Label, bump);
+		frag.add(Pop);									// [...]
+		loadIFrom(frag, MEM_MANAGER_HEAP_END_PTR);		// [... block]
+		frag.add(PushI, size);
+		addITo(frag, MEM_MANAGER_HEAP_END_PTR);			// heapEnd += size
+
+		frag.add(Duplicate);							// [... block block]
+		writeInUseTag(frag, size);						// [... block]
+		frag.add(Duplicate);
+		frag.add(PushI, size - MMGR_TAG_SIZE_IN_BYTES);
+		frag.add(Add);									// [... block blockTail]
+		writeInUseTag(frag, size);						// [... block]
+
+		frag.add(Label, userBlock);
+		frag.add(PushI, MMGR_TAG_SIZE_IN_BYTES);
+		frag.add(Add);									// [... userBlock]
+	}
+	// the size of block MEM_MANAGER_ALLOCATE makes for usableSize bytes, if it makes a new one.
+	private static int blockSizeFor(int usableSize) {
+		int size = usableSize + MMGR_TWICE_TAG_SIZE;
+		if(size >= MMGR_SMALL_BLOCK_LIMIT) {
+			return size;
+		}
+		int rounded = MMGR_SMALLEST_BLOCK;
+		while(rounded < size) {
+			rounded *= 2;
+		}
+		return rounded;
+	}
+	private static int sizeClassOf(int size) {
+		return 31 - Integer.numberOfLeadingZeros(size);
+	}
+	// [... tagBaseLocation] -> [...]
+	// the tag of a block in use: size given, not available.  Pointers are left alone.
+	private static void writeInUseTag(ASMCodeFragment frag, int size) {
+		frag.add(Duplicate);						// [... tag tag]
+		frag.add(PushI, size);
+		frag.add(Exchange);							// [... tag size tag]
+		writeTagSize(frag);							// [... tag]
+		frag.add(PushI, 0);
+		frag.add(Exchange);							// [... 0 tag]
+		writeTagAvailable(frag);					// [...]
+	}
+
 ////////////////////////////////////////////////////////////////////////////////////
 
 	// [... size] -> [... block]
@@ -498,6 +910,14 @@ public class MemoryManager {
 		loadIFrom(frag, MMGR_NEWBLOCK_BLOCK);
 	}
 
+	// [... sizeClass] -> [... location of the class's free list head]
+	private static void freeListHead(ASMCodeFragment frag) {
+		frag.add(PushI, 4);
+		frag.add(Multiply);
+		frag.add(PushD, MEM_MANAGER_FREE_LISTS);
+		frag.add(Add);
+	}
+
 	// [... blockBaseLocation] -> [... blockTailTagLocation]
 	private static void tailTag(ASMCodeFragment frag) {
 		frag.add(Duplicate);						// [... block block]
@@ -691,6 +1111,9 @@ public class MemoryManager {
 	private static final String MMGRD_PBLOCK_FORMAT =		  "$$mmgrd-pblock-format";
 	private static final String MMGRD_PFREE_RETURN_ADDRESS =  "$$mmgrd-pfree-return";
 	private static final String MMGRD_PFREE_CURRENT_BLOCK  =  "$$mmgrd-pfree-current-block";
+	private static final String MMGRD_PFREE_CLASS  		   =  "$$mmgrd-pfree-class";
+	private static final String MMGRD_PFREE_CLASS_TEST 	   =  "--mmgrd-pfree-class-test";
+	private static final String MMGRD_PFREE_NEXT_CLASS 	   =  "--mmgrd-pfree-next-class";
 	private static final String MMGRD_PFREE_LOOP_TEST  	   =  "--mmgrd-pfree-loop-test";
 	private static final String MMGRD_PFREE_LOOP_DONE  	   =  "--mmgrd-pfree-loop-done";
 	
@@ -747,19 +1170,32 @@ public class MemoryManager {
 
 		declareI(frag, MMGRD_PFREE_RETURN_ADDRESS);
 		declareI(frag, MMGRD_PFREE_CURRENT_BLOCK);
+		declareI(frag, MMGRD_PFREE_CLASS);
 		
 		storeITo(frag, MMGRD_PFREE_RETURN_ADDRESS);
 		
 		debugPrint(frag, "Free list:\n");
 		
 		
-		loadIFrom(frag, MEM_MANAGER_FIRST_FREE_BLOCK);
-		storeITo(frag, MMGRD_PFREE_CURRENT_BLOCK);
+		frag.add(PushI, 0);
+		storeITo(frag, MMGRD_PFREE_CLASS);
+		
+		frag.add(Label, MMGRD_PFREE_CLASS_TEST);
+		    // if(class == numSizeClasses) break;
+			loadIFrom(frag, MMGRD_PFREE_CLASS);
+			frag.add(PushI, MMGR_NUM_SIZE_CLASSES);
+			frag.add(Subtract);
+			frag.add(JumpFalse, MMGRD_PFREE_LOOP_DONE);
+			
+			loadIFrom(frag, MMGRD_PFREE_CLASS);
+			freeListHead(frag);
+			frag.add(LoadI);
+			storeITo(frag, MMGRD_PFREE_CURRENT_BLOCK);
 		
 		frag.add(Label, MMGRD_PFREE_LOOP_TEST);
-		    // if(currentBlock == 0) break;
+		    // if(currentBlock == 0) go on to the next class;
 			loadIFrom(frag, MMGRD_PFREE_CURRENT_BLOCK);		
-			frag.add(JumpFalse, MMGRD_PFREE_LOOP_DONE);
+			frag.add(JumpFalse, MMGRD_PFREE_NEXT_CLASS);
 			
 			// print "    "+currentBlock;
 			debugPrint(frag, "    ");						
@@ -775,6 +1211,10 @@ public class MemoryManager {
 			
 			frag.add(Jump, MMGRD_PFREE_LOOP_TEST);
 
+		frag.add(Label, MMGRD_PFREE_NEXT_CLASS);
+			incrementInteger(frag, MMGRD_PFREE_CLASS);
+			frag.add(Jump, MMGRD_PFREE_CLASS_TEST);
+
 		frag.add(Label, MMGRD_PFREE_LOOP_DONE);
 			debugPrint(frag, "\n");
 			loadIFrom(frag, MMGRD_PFREE_RETURN_ADDRESS);
@@ -1,4 +1,5 @@
 package asmCodeGenerator.runtime;
+import static asmCodeGenerator.Macros.*;
 import static asmCodeGenerator.codeStorage.ASMCodeFragment.CodeType.*;
 import static asmCodeGenerator.codeStorage.ASMOpcode.*;
 import asmCodeGenerator.codeStorage.ASMCodeFragment;
@@ -16,6 +17,7 @@ public class RunTime {
 	public static final String BOOLEAN_TRUE_STRING    = "$boolean-true-string";
 	public static final String BOOLEAN_FALSE_STRING   = "$boolean-false-string";
 	public static final String GLOBAL_MEMORY_BLOCK    = "$global-memory-block";
+	public static final String TEMPORARY_MEMORY_BLOCK = "$temporary-memory-block";
 	public static final String USABLE_MEMORY_START    = "$usable-memory-start";
 	public static final String MAIN_PROGRAM_LABEL     = "$$main";
 	public static final String FRAME_POINTER 		  = "$frame-pointer";
@@ -24,12 +26,28 @@ public class RunTime {
 	public static final String GENERAL_RUNTIME_ERROR = "$$general-runtime-error";
 	public static final String INTEGER_DIVIDE_BY_ZERO_RUNTIME_ERROR = "$$i-divide-by-zero";
 	public static final String INDEX_OUT_OF_RANGE_ERROR = "$$index-out-of-range";
+	
+	// rational subroutines: operands and results are on the accumulator stack,
+	// numerator below denominator, with the return address pushed by Call on top.
+	// results are in lowest terms with a positive denominator, and the fast
+	// paths assume their operands are too.
+	public static final String RATIONAL_GCD 			= "-rational-gcd";				// [... a b] -> [... |gcd(a,b)|]
+	public static final String RATIONAL_NORMALIZE 		= "-rational-normalize";		// [... n d] -> [... n' d']
+	public static final String RATIONAL_ADD 			= "-rational-add";				// [... n1 d1 n2 d2] -> [... n d]
+	public static final String RATIONAL_SUBTRACT 		= "-rational-subtract";			// [... n1 d1 n2 d2] -> [... n d]
+	public static final String RATIONAL_MULTIPLY 		= "-rational-multiply";			// [... n1 d1 n2 d2] -> [... n d]
+	public static final String RATIONAL_DIVIDE 			= "-rational-divide";			// [... n1 d1 n2 d2] -> [... n d]
+	public static final String RATIONAL_EXPRESS_OVER 	= "-rational-express-over";		// [... n d k] -> [... n*k/d]
+	public static final String RATIONAL_RATIONALIZE 	= "-rational-rationalize";		// [... n d k] -> [... n' d']
+	public static final String FLOAT_RATIONALIZE 		= "-rational-float-rationalize";// [... f k] -> [... n' d']
+	public static final String RATIONAL_PRINT 			= "-rational-print";			// [... n d] -> [...]
 
 	private ASMCodeFragment environmentASM() {
 		ASMCodeFragment result = new ASMCodeFragment(GENERATES_VOID);
 		result.append(jumpToMain());
 		result.append(stringsForPrintf());
 		result.append(runtimeErrors());
+		result.append(rationalSubroutines());
 		result.add(DLabel, USABLE_MEMORY_START);
 		
 		return result;
@@ -127,6 +145,379 @@ public class RunTime {
 		frag.add(Jump, GENERAL_RUNTIME_ERROR);
 	}
 	
+	
+	////////////////////////////////////////////////////////////////////////////
+	// rational arithmetic
+	
+	private ASMCodeFragment rationalSubroutines() {
+		ASMCodeFragment frag = new ASMCodeFragment(GENERATES_VOID);
+		
+		rationalGCD(frag);
+		rationalNormalize(frag);
+		rationalAdd(frag);
+		rationalSubtract(frag);
+		rationalMultiply(frag);
+		rationalDivide(frag);
+		rationalExpressOver(frag);
+		rationalRationalize(frag);
+		floatRationalize(frag);
+		rationalPrint(frag);
+		
+		return frag;
+	}
+	// euclid's algorithm.  a and b must not both be zero.
+	private void rationalGCD(ASMCodeFragment frag) {
+		String returnAddress = "$rational-gcd-return";
+		String a = "$rational-gcd-a";
+		String b = "$rational-gcd-b";
+		String loop = "-rational-gcd-loop";
+		String done = "-rational-gcd-done";
+		String positive = "-rational-gcd-positive";
+		
+		frag.add(Label, RATIONAL_GCD);			// [... a b (return)]
+		declareI(frag, returnAddress);
+		declareI(frag, a);
+		declareI(frag, b);
+		storeITo(frag, returnAddress);
+		storeITo(frag, b);
+		storeITo(frag, a);						// [...]
+		
+		// while (b != 0) { a, b = b, a % b }
+		frag.add(Label, loop);
+		loadIFrom(frag, b);
+		frag.add(JumpFalse, done);
+		loadIFrom(frag, a);
+		loadIFrom(frag, b);
+		frag.add(Remainder);					// [... a%b]
+		loadIFrom(frag, b);
+		storeITo(frag, a);
+		storeITo(frag, b);
+		frag.add(Jump, loop);
+		
+		frag.add(Label, done);
+		loadIFrom(frag, a);
+		frag.add(Duplicate);
+		frag.add(JumpPos, positive);
+		frag.add(Negate);
+		frag.add(Label, positive);				// [... gcd]
+		loadIFrom(frag, returnAddress);
+		frag.add(Return);
+	}
+	// divides out the gcd and moves any sign to the numerator.  d must be nonzero.
+	private void rationalNormalize(ASMCodeFragment frag) {
+		String returnAddress = "$rational-normalize-return";
+		String numerator = "$rational-normalize-numerator";
+		String denominator = "$rational-normalize-denominator";
+		String positive = "-rational-normalize-positive";
+		
+		frag.add(Label, RATIONAL_NORMALIZE);	// [... n d (return)]
+		declareI(frag, returnAddress);
+		declareI(frag, numerator);
+		declareI(frag, denominator);
+		storeITo(frag, returnAddress);
+		storeITo(frag, denominator);
+		storeITo(frag, numerator);
+		
+		loadIFrom(frag, numerator);
+		loadIFrom(frag, denominator);
+		frag.add(Call, RATIONAL_GCD);			// [... g]
+		frag.add(Duplicate);
+		loadIFrom(frag, numerator);
+		frag.add(Exchange);
+		frag.add(Divide);						// [... g n/g]
+		frag.add(Exchange);
+		loadIFrom(frag, denominator);
+		frag.add(Exchange);
+		frag.add(Divide);						// [... n/g d/g]
+		
+		loadIFrom(frag, denominator);
+		frag.add(JumpPos, positive);
+		frag.add(Negate);
+		frag.add(Exchange);
+		frag.add(Negate);
+		frag.add(Exchange);
+		frag.add(Label, positive);
+		loadIFrom(frag, returnAddress);
+		frag.add(Return);
+	}
+	// an operand with denominator 1 is an integer i, and n/d + i = (n + i*d)/d
+	// is already in lowest terms: only the general case is normalized.
+	private void rationalAdd(ASMCodeFragment frag) {
+		String returnAddress = "$rational-add-return";
+		String numerator1 = "$rational-add-numerator1";
+		String denominator1 = "$rational-add-denominator1";
+		String numerator2 = "$rational-add-numerator2";
+		String denominator2 = "$rational-add-denominator2";
+		String leftInteger = "-rational-add-left-integer";
+		String rightInteger = "-rational-add-right-integer";
+		String done = "-rational-add-done";
+		
+		frag.add(Label, RATIONAL_ADD);			// [... n1 d1 n2 d2 (return)]
+		declareI(frag, returnAddress);
+		declareI(frag, numerator1);
+		declareI(frag, denominator1);
+		declareI(frag, numerator2);
+		declareI(frag, denominator2);
+		storeITo(frag, returnAddress);
+		storeITo(frag, denominator2);
+		storeITo(frag, numerator2);
+		storeITo(frag, denominator1);
+		storeITo(frag, numerator1);
+		
+		loadIFrom(frag, denominator1);
+		frag.add(PushI, 1);
+		frag.add(Subtract);
+		frag.add(JumpFalse, leftInteger);
+		loadIFrom(frag, denominator2);
+		frag.add(PushI, 1);
+		frag.add(Subtract);
+		frag.add(JumpFalse, rightInteger);
+		
+		loadIFrom(frag, numerator1);			// n1*d2 + n2*d1, d1*d2
+		loadIFrom(frag, denominator2);
+		frag.add(Multiply);
+		loadIFrom(frag, numerator2);
+		loadIFrom(frag, denominator1);
+		frag.add(Multiply);
+		frag.add(Add);
+		loadIFrom(frag, denominator1);
+		loadIFrom(frag, denominator2);
+		frag.add(Multiply);
+		frag.add(Call, RATIONAL_NORMALIZE);
+		frag.add(Jump, done);
+		
+		frag.add(Label, leftInteger);			// n1*d2 + n2, d2
+		loadIFrom(frag, numerator1);
+		loadIFrom(frag, denominator2);
+		frag.add(Multiply);
+		loadIFrom(frag, numerator2);
+		frag.add(Add);
+		loadIFrom(frag, denominator2);
+		frag.add(Jump, done);
+		
+		frag.add(Label, rightInteger);			// n1 + n2*d1, d1
+		loadIFrom(frag, numerator1);
+		loadIFrom(frag, numerator2);
+		loadIFrom(frag, denominator1);
+		frag.add(Multiply);
+		frag.add(Add);
+		loadIFrom(frag, denominator1);
+		
+		frag.add(Label, done);					// [... n d]
+		loadIFrom(frag, returnAddress);
+		frag.add(Return);
+	}
+	// n1/d1 - n2/d2 = n1/d1 + -n2/d2: negate n2 and go on to RATIONAL_ADD.
+	private void rationalSubtract(ASMCodeFragment frag) {
+		String returnAddress = "$rational-subtract-return";
+		String denominator2 = "$rational-subtract-denominator2";
+		
+		frag.add(Label, RATIONAL_SUBTRACT);		// [... n1 d1 n2 d2 (return)]
+		declareI(frag, returnAddress);
+		declareI(frag, denominator2);
+		storeITo(frag, returnAddress);
+		storeITo(frag, denominator2);
+		frag.add(Negate);
+		loadIFrom(frag, denominator2);
+		loadIFrom(frag, returnAddress);			// [... n1 d1 -n2 d2 (return)]
+		frag.add(Jump, RATIONAL_ADD);
+	}
+	// a product of two integers needs no normalizing.
+	private void rationalMultiply(ASMCodeFragment frag) {
+		String returnAddress = "$rational-multiply-return";
+		String numerator2 = "$rational-multiply-numerator2";
+		String denominator2 = "$rational-multiply-denominator2";
+		String integers = "-rational-multiply-integers";
+		
+		frag.add(Label, RATIONAL_MULTIPLY);		// [... n1 d1 n2 d2 (return)]
+		declareI(frag, returnAddress);
+		declareI(frag, numerator2);
+		declareI(frag, denominator2);
+		storeITo(frag, returnAddress);
+		storeITo(frag, denominator2);
+		storeITo(frag, numerator2);				// [... n1 d1]
+		
+		loadIFrom(frag, denominator2);
+		frag.add(Multiply);						// [... n1 d1*d2]
+		frag.add(Exchange);
+		loadIFrom(frag, numerator2);
+		frag.add(Multiply);
+		frag.add(Exchange);						// [... n1*n2 d1*d2]
+		frag.add(Duplicate);
+		frag.add(PushI, 1);
+		frag.add(Subtract);
+		frag.add(JumpFalse, integers);
+		frag.add(Call, RATIONAL_NORMALIZE);
+		
+		frag.add(Label, integers);
+		loadIFrom(frag, returnAddress);
+		frag.add(Return);
+	}
+	private void rationalDivide(ASMCodeFragment frag) {
+		String returnAddress = "$rational-divide-return";
+		String numerator2 = "$rational-divide-numerator2";
+		String denominator2 = "$rational-divide-denominator2";
+		
+		frag.add(Label, RATIONAL_DIVIDE);		// [... n1 d1 n2 d2 (return)]
+		declareI(frag, returnAddress);
+		declareI(frag, numerator2);
+		declareI(frag, denominator2);
+		storeITo(frag, returnAddress);
+		storeITo(frag, denominator2);
+		storeITo(frag, numerator2);				// [... n1 d1]
+		
+		loadIFrom(frag, numerator2);
+		frag.add(JumpFalse, INTEGER_DIVIDE_BY_ZERO_RUNTIME_ERROR);
+		loadIFrom(frag, numerator2);
+		frag.add(Multiply);						// [... n1 d1*n2]
+		frag.add(Exchange);
+		loadIFrom(frag, denominator2);
+		frag.add(Multiply);
+		frag.add(Exchange);						// [... n1*d2 d1*n2]
+		frag.add(Call, RATIONAL_NORMALIZE);
+		loadIFrom(frag, returnAddress);
+		frag.add(Return);
+	}
+	private void rationalExpressOver(ASMCodeFragment frag) {
+		String returnAddress = "$rational-express-return";
+		String k = "$rational-express-k";
+		
+		frag.add(Label, RATIONAL_EXPRESS_OVER);	// [... n d k (return)]
+		declareI(frag, returnAddress);
+		declareI(frag, k);
+		storeITo(frag, returnAddress);
+		storeITo(frag, k);
+		frag.add(Exchange);
+		loadIFrom(frag, k);
+		frag.add(Multiply);
+		frag.add(Exchange);
+		frag.add(Divide);						// [... n*k/d]
+		loadIFrom(frag, returnAddress);
+		frag.add(Return);
+	}
+	// n/d rounded to a fraction over k, in lowest terms.
+	private void rationalRationalize(ASMCodeFragment frag) {
+		String returnAddress = "$rational-rationalize-return";
+		String k = "$rational-rationalize-k";
+		
+		frag.add(Label, RATIONAL_RATIONALIZE);	// [... n d k (return)]
+		declareI(frag, returnAddress);
+		declareI(frag, k);
+		storeITo(frag, returnAddress);
+		frag.add(Duplicate);
+		storeITo(frag, k);
+		frag.add(Call, RATIONAL_EXPRESS_OVER);
+		loadIFrom(frag, k);
+		frag.add(Call, RATIONAL_NORMALIZE);
+		loadIFrom(frag, returnAddress);
+		frag.add(Return);
+	}
+	// f rounded to a fraction over k, in lowest terms.
+	private void floatRationalize(ASMCodeFragment frag) {
+		String returnAddress = "$rational-float-return";
+		String k = "$rational-float-k";
+		
+		frag.add(Label, FLOAT_RATIONALIZE);		// [... f k (return)]
+		declareI(frag, returnAddress);
+		declareI(frag, k);
+		storeITo(frag, returnAddress);
+		frag.add(Duplicate);
+		storeITo(frag, k);
+		frag.add(ConvertF);
+		frag.add(FMultiply);
+		frag.add(ConvertI);
+		loadIFrom(frag, k);
+		frag.add(Call, RATIONAL_NORMALIZE);
+		loadIFrom(frag, returnAddress);
+		frag.add(Return);
+	}
+	// prints n/d as [-]q_r/d: q is left out when it is zero, and _r/d when r is.
+	private void rationalPrint(ASMCodeFragment frag) {
+		String returnAddress = "$rational-print-return";
+		String numerator = "$rational-print-numerator";
+		String denominator = "$rational-print-denominator";
+		String negativeDenominator = "-rational-print-negative-denominator";
+		String minus = "-rational-print-minus";
+		String quotient = "-rational-print-quotient";
+		String quotientPositive = "-rational-print-quotient-positive";
+		String noQuotient = "-rational-print-no-quotient";
+		String fraction = "-rational-print-fraction";
+		String remainderPositive = "-rational-print-remainder-positive";
+		String denominatorPositive = "-rational-print-denominator-positive";
+		String done = "-rational-print-done";
+		
+		frag.add(Label, RATIONAL_PRINT);		// [... n d (return)]
+		declareI(frag, returnAddress);
+		declareI(frag, numerator);
+		declareI(frag, denominator);
+		storeITo(frag, returnAddress);
+		storeITo(frag, denominator);
+		storeITo(frag, numerator);				// [...]
+		
+		// negative if n and d are nonzero and of opposite signs
+		loadIFrom(frag, denominator);
+		frag.add(JumpNeg, negativeDenominator);
+		loadIFrom(frag, numerator);
+		frag.add(JumpNeg, minus);
+		frag.add(Jump, quotient);
+		frag.add(Label, negativeDenominator);
+		loadIFrom(frag, numerator);
+		frag.add(JumpPos, minus);
+		frag.add(Jump, quotient);
+		frag.add(Label, minus);
+		frag.add(PushI, '-');
+		frag.add(PushD, CHARACTER_PRINT_FORMAT);
+		frag.add(Printf);
+		
+		frag.add(Label, quotient);
+		loadIFrom(frag, numerator);
+		loadIFrom(frag, denominator);
+		frag.add(Divide);
+		frag.add(Duplicate);
+		frag.add(JumpPos, quotientPositive);
+		frag.add(Negate);
+		frag.add(Label, quotientPositive);		// [... |q|]
+		frag.add(Duplicate);
+		frag.add(JumpFalse, noQuotient);
+		frag.add(PushD, INTEGER_PRINT_FORMAT);
+		frag.add(Printf);
+		frag.add(Jump, fraction);
+		frag.add(Label, noQuotient);
+		frag.add(Pop);
+		
+		frag.add(Label, fraction);
+		loadIFrom(frag, numerator);
+		loadIFrom(frag, denominator);
+		frag.add(Remainder);
+		frag.add(JumpFalse, done);
+		frag.add(PushI, '_');
+		frag.add(PushD, CHARACTER_PRINT_FORMAT);
+		frag.add(Printf);
+		loadIFrom(frag, numerator);
+		loadIFrom(frag, denominator);
+		frag.add(Remainder);
+		frag.add(Duplicate);
+		frag.add(JumpPos, remainderPositive);
+		frag.add(Negate);
+		frag.add(Label, remainderPositive);		// [... |r|]
+		frag.add(PushD, INTEGER_PRINT_FORMAT);
+		frag.add(Printf);
+		frag.add(PushI, '/');
+		frag.add(PushD, CHARACTER_PRINT_FORMAT);
+		frag.add(Printf);
+		loadIFrom(frag, denominator);
+		frag.add(Duplicate);
+		frag.add(JumpPos, denominatorPositive);
+		frag.add(Negate);
+		frag.add(Label, denominatorPositive);	// [... |d|]
+		frag.add(PushD, INTEGER_PRINT_FORMAT);
+		frag.add(Printf);
+		
+		frag.add(Label, done);
+		loadIFrom(frag, returnAddress);
+		frag.add(Return);
+	}
+	
 	public static ASMCodeFragment getEnvironment() {
 		RunTime rt = new RunTime();
 		return rt.environmentASM();
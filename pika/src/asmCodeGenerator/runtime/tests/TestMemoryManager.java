@@ -0,0 +1,245 @@
+package asmCodeGenerator.runtime.tests;
+
+import static asmCodeGenerator.Macros.*;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import junit.framework.TestCase;
+import emulator.Interpreter;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMCodeFragment.CodeType;
+import asmCodeGenerator.runtime.MemoryManager;
+import asmCodeGenerator.runtime.MemoryManager.Mode;
+
+// runs allocate/deallocate sequences on the Interpreter and checks the addresses handed out.
+public class TestMemoryManager extends TestCase {
+	private static final String FORMAT = "$test-format";
+	private static final int TAG_SIZE = 9;
+
+	public void testFreedBlockIsReused() {
+		ASMCodeFragment code = fragment();
+		allocate(code, 20, "a");
+		deallocate(code, "a");
+		allocate(code, 20, "b");
+		print(code, "a", "b");
+
+		int[] addresses = run(Mode.FREE_LISTS, code);
+		assertEquals(addresses[0], addresses[1]);
+	}
+	public void testSmallRequestsShareASizeClass() {
+		ASMCodeFragment code = fragment();
+		allocate(code, 20, "a");				// 20+18 and 30+18 both round up to 64
+		deallocate(code, "a");
+		allocate(code, 30, "b");
+		print(code, "a", "b");
+
+		int[] addresses = run(Mode.FREE_LISTS, code);
+		assertEquals(addresses[0], addresses[1]);
+	}
+	public void testLargeBlockIsSplit() {
+		ASMCodeFragment code = fragment();
+		allocate(code, 2000, "a");
+		deallocate(code, "a");
+		allocate(code, 100, "b");				// 100+18 rounds up to 128
+		allocate(code, 100, "c");
+		print(code, "a", "b", "c");
+
+		int[] addresses = run(Mode.FREE_LISTS, code);
+		assertEquals(addresses[0], addresses[1]);
+		assertEquals(addresses[1] + 128, addresses[2]);
+	}
+	public void testNeighboursCoalesce() {
+		ASMCodeFragment code = fragment();
+		allocate(code, 1100, "a");
+		allocate(code, 1100, "b");
+		allocate(code, 1100, "guard");
+		deallocate(code, "a");
+		deallocate(code, "b");
+		allocate(code, 2200, "c");				// fits only in a and b together
+		print(code, "a", "c");
+
+		int[] addresses = run(Mode.FREE_LISTS, code);
+		assertEquals(addresses[0], addresses[1]);
+	}
+	public void testNoSliverRemainders() {
+		ASMCodeFragment code = fragment();
+		allocate(code, 1100, "a");				// a block of 1118 bytes
+		allocate(code, 1100, "guard");
+		deallocate(code, "a");
+		allocate(code, 1072, "b");				// needs 1090: 28 bytes over, too few to split off
+		print(code, "a", "b");
+		printBlockSize(code, "b");
+
+		int[] results = run(Mode.FREE_LISTS, code);
+		assertEquals(results[0], results[1]);
+		assertEquals(1118, results[2]);
+	}
+	public void testArenaHandsOutConsecutiveBlocks() {
+		ASMCodeFragment code = fragment();
+		allocate(code, 20, "a");
+		allocate(code, 30, "b");
+		allocate(code, 8, "c");
+		print(code, "a", "b", "c");
+
+		int[] addresses = run(Mode.ARENA, code);
+		assertEquals(addresses[0] + 20, addresses[1]);
+		assertEquals(addresses[1] + 30, addresses[2]);
+	}
+	public void testArenaNeverReuses() {
+		ASMCodeFragment code = fragment();
+		allocate(code, 20, "a");
+		deallocate(code, "a");
+		allocate(code, 20, "b");
+		print(code, "a", "b");
+
+		int[] addresses = run(Mode.ARENA, code);
+		assertEquals(addresses[0] + 20, addresses[1]);
+	}
+	public void testBothModesKeepBlocksApart() {
+		for(Mode mode: Mode.values()) {
+			ASMCodeFragment code = fragment();
+			allocate(code, 12, "a");
+			allocate(code, 12, "b");
+			store(code, "a", 7);
+			store(code, "b", 9);
+			deallocate(code, "a");
+			allocate(code, 1200, "c");
+			store(code, "c", 11);
+			printContents(code, "b", "c");
+
+			int[] values = run(mode, code);
+			assertEquals(mode.toString(), 9, values[0]);
+			assertEquals(mode.toString(), 11, values[1]);
+		}
+	}
+	public void testArenaInlineAllocationBumps() {
+		ASMCodeFragment code = fragment();
+		allocateInline(code, Mode.ARENA, 20, "a");
+		allocate(code, 30, "b");
+		allocateInline(code, Mode.ARENA, 8, "c");
+		print(code, "a", "b", "c");
+
+		int[] addresses = run(Mode.ARENA, code);
+		assertEquals(addresses[0] + 20, addresses[1]);
+		assertEquals(addresses[1] + 30, addresses[2]);
+	}
+	public void testInlineBlocksAreFreeable() {
+		ASMCodeFragment code = fragment();
+		allocateInline(code, Mode.FREE_LISTS, 20, "a");
+		deallocate(code, "a");
+		allocate(code, 20, "b");
+		allocateInline(code, Mode.FREE_LISTS, 20, "c");		// class is empty again: off the heap end
+		print(code, "a", "b", "c");
+
+		int[] addresses = run(Mode.FREE_LISTS, code);
+		assertEquals(addresses[0], addresses[1]);
+		assertEquals(addresses[1] + 64, addresses[2]);
+	}
+	public void testInlineAllocationPopsFreedBlocks() {
+		ASMCodeFragment code = fragment();
+		allocateInline(code, Mode.FREE_LISTS, 20, "a");
+		allocateInline(code, Mode.FREE_LISTS, 20, "b");
+		allocateInline(code, Mode.FREE_LISTS, 20, "guard");
+		deallocate(code, "a");
+		deallocate(code, "b");
+		allocateInline(code, Mode.FREE_LISTS, 20, "c");		// the list head: b, then a
+		allocateInline(code, Mode.FREE_LISTS, 20, "d");
+		allocateInline(code, Mode.FREE_LISTS, 20, "e");		// class is empty again: off the heap end
+		print(code, "a", "b", "c", "d", "guard", "e");
+
+		int[] addresses = run(Mode.FREE_LISTS, code);
+		assertEquals(addresses[1], addresses[2]);
+		assertEquals(addresses[0], addresses[3]);
+		assertEquals(addresses[4] + 64, addresses[5]);
+	}
+	public void testPoppedBlockIsInUseAndFreeable() {
+		ASMCodeFragment code = fragment();
+		allocateInline(code, Mode.FREE_LISTS, 20, "a");
+		allocateInline(code, Mode.FREE_LISTS, 20, "guard");
+		deallocate(code, "a");
+		allocateInline(code, Mode.FREE_LISTS, 20, "b");
+		allocate(code, 20, "c");							// b is in use: c must not get it
+		deallocate(code, "b");
+		allocate(code, 20, "d");
+		print(code, "a", "b", "c", "d");
+
+		int[] addresses = run(Mode.FREE_LISTS, code);
+		assertEquals(addresses[0], addresses[1]);
+		assertFalse(addresses[1] == addresses[2]);
+		assertEquals(addresses[1], addresses[3]);
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// program building
+
+	private ASMCodeFragment fragment() {
+		return new ASMCodeFragment(CodeType.GENERATES_VOID);
+	}
+	private void allocate(ASMCodeFragment code, int usableSize, String variable) {
+		declareI(code, variable);
+		code.add(PushI, usableSize);
+		code.add(Call, MemoryManager.MEM_MANAGER_ALLOCATE);
+		storeITo(code, variable);
+	}
+	private void allocateInline(ASMCodeFragment code, Mode mode, int usableSize, String variable) {
+		declareI(code, variable);
+		MemoryManager.allocateInline(code, mode, usableSize);
+		storeITo(code, variable);
+	}
+	private void deallocate(ASMCodeFragment code, String variable) {
+		loadIFrom(code, variable);
+		code.add(Call, MemoryManager.MEM_MANAGER_DEALLOCATE);
+	}
+	private void print(ASMCodeFragment code, String... variables) {
+		for(String variable: variables) {
+			loadIFrom(code, variable);
+			code.add(PushD, FORMAT);
+			code.add(Printf);
+		}
+	}
+	private void store(ASMCodeFragment code, String variable, int value) {
+		loadIFrom(code, variable);
+		code.add(PushI, value);
+		code.add(StoreI);
+	}
+	private void printContents(ASMCodeFragment code, String... variables) {
+		for(String variable: variables) {
+			loadIFrom(code, variable);
+			code.add(LoadI);
+			code.add(PushD, FORMAT);
+			code.add(Printf);
+		}
+	}
+	// the size in the block's head tag, which sits just before the user's bytes.
+	private void printBlockSize(ASMCodeFragment code, String variable) {
+		loadIFrom(code, variable);
+		code.add(PushI, TAG_SIZE - 4);
+		code.add(Subtract);
+		code.add(LoadI);
+		code.add(PushD, FORMAT);
+		code.add(Printf);
+	}
+
+	// the numbers the program printed.
+	private int[] run(Mode mode, ASMCodeFragment program) {
+		ASMCodeFragment code = fragment();
+		code.append(MemoryManager.codeForInitialization(mode));
+		code.add(DLabel, FORMAT);
+		code.add(DataS, "%d ");
+		code.append(program);
+		code.add(Halt);
+		code.append(MemoryManager.codeForAfterApplication(mode));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Interpreter.run(code, new PrintStream(bytes));
+		String[] printed = bytes.toString().trim().split(" ");
+		int[] result = new int[printed.length];
+		for(int i = 0; i < printed.length; i++) {
+			result[i] = Integer.parseInt(printed[i]);
+		}
+		return result;
+	}
+}
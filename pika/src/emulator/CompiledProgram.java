@@ -0,0 +1,67 @@
+package emulator;
+
+// The superclass of the classes JitCompiler generates.  A generated class has
+// one method per basic block, each returning the number of the instruction to
+// run next, and a run(Machine, int) that dispatches between them until it
+// reaches Halt or an instruction that starts no compiled block (a JumpV or
+// CallV into the middle of a block, or past the end of the program).  From
+// there, execute() hands the machine over to the Interpreter.
+public abstract class CompiledProgram {
+	/** What run() returns when the program executes Halt. */
+	public static final int HALTED = Integer.MIN_VALUE;
+
+	private ProgramImage image;
+
+	void initialize(ProgramImage image) {
+		this.image = image;
+	}
+
+	/** Run compiled code from instruction pc.
+	 *  @return HALTED, or the instruction at which compiled code cannot continue.
+	 */
+	public abstract int run(Machine m, int pc);
+
+	/** Run the program to completion on the machine, interpreting whatever is not compiled. */
+	public void execute(Machine machine) {
+		int pc;
+		try {
+			pc = run(machine, 0);
+		}
+		finally {
+			machine.flush();
+		}
+		if(pc != HALTED) {
+			new Interpreter(image, machine).run(pc);
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// support for the generated code
+
+	// the exception, with the location added the way the Interpreter adds it.
+	protected EmulatorException located(EmulatorException e, int index) {
+		return new EmulatorException(e.getMessage() + " at instruction #" + index + ": " + image.getSource(index).toString().trim());
+	}
+	protected static int bool(boolean value) {
+		return value ? 1 : 0;
+	}
+	protected static int divide(int dividend, int divisor) {
+		if(divisor == 0) {
+			throw new EmulatorException("integer divide by zero");
+		}
+		return dividend / divisor;
+	}
+	protected static int remainder(int dividend, int divisor) {
+		if(divisor == 0) {
+			throw new EmulatorException("integer divide by zero");
+		}
+		return dividend % divisor;
+	}
+	protected static double fdivide(double dividend, double divisor) {
+		if(divisor == 0.0) {
+			throw new EmulatorException("floating divide by zero");
+		}
+		return dividend / divisor;
+	}
+}
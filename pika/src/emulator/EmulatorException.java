@@ -0,0 +1,11 @@
+package emulator;
+
+// a problem loading or running an ASM program: anything that makes the machine halt
+// abnormally (bad address, wrong operand type, divide by zero, missing label ...).
+public class EmulatorException extends RuntimeException {
+	private static final long serialVersionUID = 2170478326180613413L;
+
+	public EmulatorException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,43 @@
+package emulator;
+
+import java.io.PrintStream;
+
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+
+// The ways the emulator can run a program.  All of them behave the same; they
+// differ only in how much work they do up front to make execution faster.
+public enum ExecutionTier {
+	INTERPRETED {
+		public void run(ASMCodeFragment fragment, PrintStream out) {
+			Interpreter.run(fragment, out);
+		}
+	},
+	PREDECODED {
+		public void run(ASMCodeFragment fragment, PrintStream out) {
+			PredecodedInterpreter.run(fragment, out);
+		}
+	},
+	COMPILED {
+		public void run(ASMCodeFragment fragment, PrintStream out) {
+			JitCompiler.run(fragment, out);
+		}
+	};
+
+	public static final ExecutionTier DEFAULT = PREDECODED;
+
+	/** Load the fragment and run it to completion, printing to out. */
+	public abstract void run(ASMCodeFragment fragment, PrintStream out);
+
+	/** The tier with the given name (in any case), or DEFAULT if name is null. */
+	public static ExecutionTier forName(String name) {
+		if(name == null) {
+			return DEFAULT;
+		}
+		for(ExecutionTier tier: values()) {
+			if(tier.name().equalsIgnoreCase(name)) {
+				return tier;
+			}
+		}
+		throw new IllegalArgumentException("no execution tier named " + name);
+	}
+}
@@ -0,0 +1,153 @@
+package emulator;
+
+import java.io.PrintStream;
+
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMOpcode;
+
+// Runs a ProgramImage one instruction at a time, with a single switch over the
+// opcode.  All label operands were resolved when the image was loaded, so a
+// jump is just an assignment to the pc.
+public class Interpreter {
+	private ProgramImage program;
+	private Machine machine;
+	private long instructionCount;
+
+	/** Load the fragment and run it to completion, printing to out. */
+	public static void run(ASMCodeFragment fragment, PrintStream out) {
+		ProgramImage program = ProgramImage.load(fragment);
+		new Interpreter(program, new Machine(program, out)).run();
+	}
+	public Interpreter(ProgramImage program, Machine machine) {
+		this.program = program;
+		this.machine = machine;
+		this.instructionCount = 0;
+	}
+
+	public void run() {
+		run(0);
+	}
+	/** Execute from instruction pc until Halt, or until control runs off the end.
+	 *  @return the number of instructions executed by this call
+	 */
+	public long run(int pc) {
+		final ASMOpcode[] opcodes = program.opcodes();
+		final int[] intOperands = program.intOperands();
+		final double[] floatOperands = program.floatOperands();
+		final Machine m = machine;
+		final int size = program.size();
+		long count = 0;
+		int current = pc;
+
+		try {
+			while(pc < size) {
+				current = pc++;
+				count++;
+
+				switch(opcodes[current]) {
+				case Add:		{ int b = m.popInt(); m.pushInt(m.popInt() + b); break; }
+				case Subtract:	{ int b = m.popInt(); m.pushInt(m.popInt() - b); break; }
+				case Negate:	m.pushInt(-m.popInt());		break;
+				case Multiply:	{ int b = m.popInt(); m.pushInt(m.popInt() * b); break; }
+				case Divide:	{ int b = nonZero(m.popInt()); m.pushInt(m.popInt() / b); break; }
+				case Remainder:	{ int b = nonZero(m.popInt()); m.pushInt(m.popInt() % b); break; }
+
+				case FAdd:		{ double b = m.popFloat(); m.pushFloat(m.popFloat() + b); break; }
+				case FSubtract:	{ double b = m.popFloat(); m.pushFloat(m.popFloat() - b); break; }
+				case FNegate:	m.pushFloat(-m.popFloat());	break;
+				case FMultiply:	{ double b = m.popFloat(); m.pushFloat(m.popFloat() * b); break; }
+				case FDivide:	{ double b = nonZero(m.popFloat()); m.pushFloat(m.popFloat() / b); break; }
+
+				case And:		{ boolean b = m.popInt() != 0; m.pushInt(bool((m.popInt() != 0) & b));    break; }
+				case Or:		{ boolean b = m.popInt() != 0; m.pushInt(bool((m.popInt() != 0) | b));    break; }
+				case Nand:		{ boolean b = m.popInt() != 0; m.pushInt(bool(!((m.popInt() != 0) & b))); break; }
+				case Nor:		{ boolean b = m.popInt() != 0; m.pushInt(bool(!((m.popInt() != 0) | b))); break; }
+				case Xor:		{ boolean b = m.popInt() != 0; m.pushInt(bool((m.popInt() != 0) ^ b));    break; }
+				case BEqual:	{ boolean b = m.popInt() != 0; m.pushInt(bool((m.popInt() != 0) == b));   break; }
+				case BNegate:	m.pushInt(bool(m.popInt() == 0));	break;
+
+				case BTAnd:		{ int b = m.popInt(); m.pushInt(m.popInt() & b);    break; }
+				case BTOr:		{ int b = m.popInt(); m.pushInt(m.popInt() | b);    break; }
+				case BTNand:	{ int b = m.popInt(); m.pushInt(~(m.popInt() & b)); break; }
+				case BTNor:		{ int b = m.popInt(); m.pushInt(~(m.popInt() | b)); break; }
+				case BTXor:		{ int b = m.popInt(); m.pushInt(m.popInt() ^ b);    break; }
+				case BTEqual:	{ int b = m.popInt(); m.pushInt(~(m.popInt() ^ b)); break; }
+				case BTNegate:	m.pushInt(~m.popInt());	break;
+
+				case ConvertF:	m.pushFloat((double)m.popInt());	break;
+				case ConvertI:	m.pushInt((int)m.popFloat());		break;
+
+				case Duplicate:	m.duplicate();	break;
+				case Exchange:	m.exchange();	break;
+				case Pop:		m.pop();		break;
+				case PushI:		m.pushInt(intOperands[current]);		break;
+				case PushD:		m.pushInt(intOperands[current]);		break;
+				case PushF:		m.pushFloat(floatOperands[current]);	break;
+				case PushPC:	m.pushInt(pc);		break;
+				case PopPC:		pc = m.popInt();	break;
+				case Return:	pc = m.popInt();	break;
+
+				case LoadC:		m.pushInt(m.loadC(m.popInt()));		break;
+				case LoadI:		m.pushInt(m.loadI(m.popInt()));		break;
+				case LoadF:		m.pushFloat(m.loadF(m.popInt()));	break;
+				case StoreC:	{ int value = m.popInt();      m.storeC(m.popInt(), value); break; }
+				case StoreI:	{ int value = m.popInt();      m.storeI(m.popInt(), value); break; }
+				case StoreF:	{ double value = m.popFloat(); m.storeF(m.popInt(), value); break; }
+				case Memtop:	m.pushInt(m.memorySize());	break;
+
+				case Jump:		pc = intOperands[current];	break;
+				case JumpFalse:	if(m.popInt() == 0)     pc = intOperands[current];	break;
+				case JumpTrue:	if(m.popInt() != 0)     pc = intOperands[current];	break;
+				case JumpNeg:	if(m.popInt() < 0)      pc = intOperands[current];	break;
+				case JumpPos:	if(m.popInt() > 0)      pc = intOperands[current];	break;
+				case JumpFNeg:	if(m.popFloat() < 0)    pc = intOperands[current];	break;
+				case JumpFPos:	if(m.popFloat() > 0)    pc = intOperands[current];	break;
+				case JumpFZero:	if(m.popFloat() == 0.0) pc = intOperands[current];	break;
+				case Call:		m.pushInt(pc); pc = intOperands[current];	break;
+				case JumpV:		pc = m.popInt();	break;
+				case CallV:		{ int target = m.popInt(); m.pushInt(pc); pc = target; break; }
+				case Halt:		instructionCount += count; return count;
+
+				case PStack:	m.printStack();	break;
+				case Printf:	m.printf();		break;
+
+				default:
+					throw new EmulatorException("not an instruction");
+				}
+			}
+		}
+		catch(ArrayIndexOutOfBoundsException e) {
+			instructionCount += count;
+			throw new EmulatorException("invalid instruction number " + current);
+		}
+		catch(EmulatorException e) {
+			instructionCount += count;
+			throw new EmulatorException(e.getMessage() + " at instruction #" + current + ": " + program.getSource(current).toString().trim());
+		}
+		finally {
+			m.flush();
+		}
+		instructionCount += count;
+		return count;
+	}
+
+	public long getInstructionCount() {
+		return instructionCount;
+	}
+
+	private static int bool(boolean value) {
+		return value ? 1 : 0;
+	}
+	private static int nonZero(int divisor) {
+		if(divisor == 0) {
+			throw new EmulatorException("integer divide by zero");
+		}
+		return divisor;
+	}
+	private static double nonZero(double divisor) {
+		if(divisor == 0.0) {
+			throw new EmulatorException("floating divide by zero");
+		}
+		return divisor;
+	}
+}
@@ -0,0 +1,541 @@
+package emulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import logging.PikaLogger;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMOpcode;
+
+// Translates a ProgramImage into a JVM class (a subclass of CompiledProgram), so
+// that HotSpot compiles the ASM program the way it compiles Java.
+//
+// The translation is written as Java source and compiled in memory with the
+// system Java compiler.  Each basic block becomes a method.  Inside a block the
+// accumulator is modelled at translation time: pushes become Java locals, and
+// only what is left on the stack at the end of the block (or before an
+// instruction that needs the real stack, like Printf) is pushed on the Machine.
+// Blocks are dispatched by small switches, one per range of instructions, so
+// that each method stays small enough for HotSpot to compile and inline.
+//
+// If there is no system compiler (running on a JRE) or the generated class does
+// not compile, compile() returns null and the program is interpreted instead;
+// run() logs the reason as a warning.
+public class JitCompiler {
+	private static final int RANGE_SHIFT = 8;			// instructions per dispatch range: 256
+	private static final String CLASS_NAME_PREFIX = "PikaCompiledProgram";
+	private static int classCount = 0;
+
+	private ProgramImage image;
+	private boolean[] blockStarts;
+	private String className;
+	private String failure;
+
+	/** Load the fragment and run it to completion, printing to out: compiled
+	 *  if possible, otherwise interpreted.
+	 */
+	public static void run(ASMCodeFragment fragment, PrintStream out) {
+		ProgramImage image = ProgramImage.load(fragment);
+		Machine machine = new Machine(image, out);
+		JitCompiler compiler = new JitCompiler(image);
+		CompiledProgram program = compiler.compile();
+		if(program != null) {
+			program.execute(machine);
+		}
+		else {
+			PikaLogger log = PikaLogger.getLogger("emulator.JitCompiler");
+			log.warning("not compiled, interpreting instead: " + compiler.getFailure());
+			new Interpreter(image, machine).run();
+		}
+	}
+	public JitCompiler(ProgramImage image) {
+		this.image = image;
+		this.blockStarts = findBlockStarts();
+		this.className = nextClassName();
+		this.failure = null;
+	}
+	private static synchronized String nextClassName() {
+		return CLASS_NAME_PREFIX + (classCount++);
+	}
+
+	/** The compiled program, or null if it could not be compiled (see getFailure). */
+	public CompiledProgram compile() {
+		String source = generateSource();
+		Class<?> compiledClass = compileSource(source);
+		if(compiledClass == null) {
+			return null;
+		}
+		try {
+			CompiledProgram result = (CompiledProgram) compiledClass.getDeclaredConstructor().newInstance();
+			result.initialize(image);
+			return result;
+		}
+		catch(ReflectiveOperationException e) {
+			failure = "cannot instantiate compiled program: " + e;
+			return null;
+		}
+	}
+	/** Why compile() returned null, or null if it didn't. */
+	public String getFailure() {
+		return failure;
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// basic blocks
+
+	// a block starts at 0, at every labelled instruction, and after every
+	// instruction that can transfer control or whose successor is a return address.
+	private boolean[] findBlockStarts() {
+		int size = image.size();
+		boolean[] result = new boolean[size + 1];
+		result[0] = true;
+		for(int i = 0; i < size; i++) {
+			ASMOpcode opcode = image.getOpcode(i);
+			result[i] |= image.isLabelled(i);
+			if(opcode.endsBasicBlock() || opcode == ASMOpcode.PushPC) {
+				result[i+1] = true;
+			}
+		}
+		return result;
+	}
+	private int blockEnd(int start) {
+		int end = start + 1;
+		while(end < image.size() && !blockStarts[end]) {
+			end++;
+		}
+		return end;
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// source generation
+
+	/** The Java source of the class compile() compiles. */
+	public String generateSource() {
+		StringBuilder source = new StringBuilder();
+		source.append("import emulator.*;\n\n");
+		source.append("public final class ").append(className).append(" extends CompiledProgram {\n");
+
+		List<List<Integer>> ranges = blockStartsByRange();
+		writeDispatcher(source, ranges);
+		for(int r = 0; r < ranges.size(); r++) {
+			writeRangeDispatcher(source, r, ranges.get(r));
+		}
+		for(int start = 0; start < image.size(); start = blockEnd(start)) {
+			new BlockWriter(source, start, blockEnd(start)).write();
+		}
+		source.append("}\n");
+		return source.toString();
+	}
+	private List<List<Integer>> blockStartsByRange() {
+		List<List<Integer>> result = new ArrayList<List<Integer>>();
+		for(int start = 0; start < image.size(); start = blockEnd(start)) {
+			int range = start >> RANGE_SHIFT;
+			while(result.size() <= range) {
+				result.add(new ArrayList<Integer>());
+			}
+			result.get(range).add(start);
+		}
+		return result;
+	}
+
+	// range r returns pc unchanged only if no block starts at pc.
+	private void writeDispatcher(StringBuilder source, List<List<Integer>> ranges) {
+		source.append("\tpublic int run(Machine m, int pc) {\n");
+		source.append("\t\twhile(true) {\n");
+		source.append("\t\t\tint next;\n");
+		source.append("\t\t\tswitch(pc >> ").append(RANGE_SHIFT).append(") {\n");
+		for(int r = 0; r < ranges.size(); r++) {
+			if(!ranges.get(r).isEmpty()) {
+				source.append("\t\t\tcase ").append(r).append(": next = range").append(r).append("(m, pc); break;\n");
+			}
+		}
+		source.append("\t\t\tdefault: return pc;\n");
+		source.append("\t\t\t}\n");
+		source.append("\t\t\tif(next == pc) {\n");
+		source.append("\t\t\t\treturn pc;\n");
+		source.append("\t\t\t}\n");
+		source.append("\t\t\tpc = next;\n");
+		source.append("\t\t}\n");
+		source.append("\t}\n");
+	}
+	private void writeRangeDispatcher(StringBuilder source, int range, List<Integer> starts) {
+		if(starts.isEmpty()) {
+			return;
+		}
+		source.append("\tprivate int range").append(range).append("(Machine m, int pc) {\n");
+		source.append("\t\twhile(true) {\n");
+		source.append("\t\t\tswitch(pc) {\n");
+		for(int start: starts) {
+			source.append("\t\t\tcase ").append(start).append(": pc = block").append(start).append("(m); break;\n");
+		}
+		source.append("\t\t\tdefault: return pc;\n");
+		source.append("\t\t\t}\n");
+		source.append("\t\t}\n");
+		source.append("\t}\n");
+	}
+
+	// an entry on the accumulator as modelled during translation: a Java
+	// expression (a local or a literal) and whether it is a float.
+	private static class Value {
+		final String expression;
+		final boolean isFloat;
+
+		Value(String expression, boolean isFloat) {
+			this.expression = expression;
+			this.isFloat = isFloat;
+		}
+	}
+
+	// writes one basic block as a method returning the next instruction number.
+	private class BlockWriter {
+		private StringBuilder source;
+		private int start;
+		private int end;
+		private List<Value> stack;			// on top of the Machine's stack
+		private int localCount;
+
+		BlockWriter(StringBuilder source, int start, int end) {
+			this.source = source;
+			this.start = start;
+			this.end = end;
+			this.stack = new ArrayList<Value>();
+			this.localCount = 0;
+		}
+
+		void write() {
+			source.append("\tprivate int block").append(start).append("(Machine m) {\n");
+			source.append("\t\tint at = ").append(start).append(";\n");
+			source.append("\t\ttry {\n");
+			boolean returned = false;
+			for(int i = start; i < end && !returned; i++) {
+				returned = translate(i);
+			}
+			if(!returned) {
+				spill();
+				line("return " + end + ";");
+			}
+			source.append("\t\t}\n");
+			source.append("\t\tcatch(EmulatorException e) {\n");
+			source.append("\t\t\tthrow located(e, at);\n");
+			source.append("\t\t}\n");
+			source.append("\t}\n");
+		}
+
+		// returns true if the translation ends with a return.
+		private boolean translate(int i) {
+			ASMOpcode opcode = image.getOpcode(i);
+			int operand = image.getIntOperand(i);
+
+			switch(opcode) {
+			case PushI:
+			case PushD:		push(intLiteral(operand), false);					return false;
+			case PushF:		push(floatLiteral(image.getFloatOperand(i)), true);	return false;
+			case PushPC:	push(intLiteral(i + 1), false);						return false;
+			default:		break;
+			}
+
+			line("at = " + i + ";");
+			switch(opcode) {
+			case Duplicate:
+				if(stack.isEmpty()) {
+					line("m.duplicate();");
+				}
+				else {
+					stack.add(top(0));
+				}
+				return false;
+			case Exchange:
+				if(stack.size() >= 2) {
+					Value top = stack.remove(stack.size() - 1);
+					stack.add(stack.size() - 1, top);
+				}
+				else {
+					spill();
+					line("m.exchange();");
+				}
+				return false;
+			case Pop:
+				if(stack.isEmpty()) {
+					line("m.pop();");
+				}
+				else {
+					stack.remove(stack.size() - 1);
+				}
+				return false;
+
+			case Printf:	spill(); line("m.printf();");		return false;
+			case PStack:	spill(); line("m.printStack();");	return false;
+
+			case Jump:		spill(); line("return " + operand + ";");	return true;
+			case JumpFalse:	return conditionalJump("I", "%1$s == 0", operand, i);
+			case JumpTrue:	return conditionalJump("I", "%1$s != 0", operand, i);
+			case JumpNeg:	return conditionalJump("I", "%1$s < 0", operand, i);
+			case JumpPos:	return conditionalJump("I", "%1$s > 0", operand, i);
+			case JumpFNeg:	return conditionalJump("F", "%1$s < 0", operand, i);
+			case JumpFPos:	return conditionalJump("F", "%1$s > 0", operand, i);
+			case JumpFZero:	return conditionalJump("F", "%1$s == 0.0", operand, i);
+			case Call:
+				spill();
+				line("m.pushInt(" + (i + 1) + ");");
+				line("return " + operand + ";");
+				return true;
+			case CallV: {
+				String target = operands("I")[0];
+				spill();
+				line("m.pushInt(" + (i + 1) + ");");
+				line("return " + target + ";");
+				return true;
+			}
+			case JumpV:
+			case Return:
+			case PopPC: {
+				String target = operands("I")[0];
+				spill();
+				line("return " + target + ";");
+				return true;
+			}
+			case Halt:
+				spill();
+				line("return HALTED;");
+				return true;
+
+			default:
+				return operation(opcode);
+			}
+		}
+
+		private boolean conditionalJump(String type, String condition, int target, int i) {
+			String[] operands = operands(type);
+			spill();
+			line("if(" + String.format(condition, (Object[])operands) + ") {");
+			line("\treturn " + target + ";");
+			line("}");
+			line("return " + (i + 1) + ";");
+			return true;
+		}
+
+		// an instruction that takes typed operands and leaves at most one result.
+		private boolean operation(ASMOpcode opcode) {
+			String operandTypes;		// deepest first
+			String resultType;			// "I", "F", or "" for none
+			String template;
+
+			switch(opcode) {
+			case Add:		operandTypes = "II"; resultType = "I"; template = "%1$s + %2$s";	break;
+			case Subtract:	operandTypes = "II"; resultType = "I"; template = "%1$s - %2$s";	break;
+			case Negate:	operandTypes = "I";  resultType = "I"; template = "-%1$s";			break;
+			case Multiply:	operandTypes = "II"; resultType = "I"; template = "%1$s * %2$s";	break;
+			case Divide:	operandTypes = "II"; resultType = "I"; template = "divide(%1$s, %2$s)";		break;
+			case Remainder:	operandTypes = "II"; resultType = "I"; template = "remainder(%1$s, %2$s)";	break;
+
+			case FAdd:		operandTypes = "FF"; resultType = "F"; template = "%1$s + %2$s";	break;
+			case FSubtract:	operandTypes = "FF"; resultType = "F"; template = "%1$s - %2$s";	break;
+			case FNegate:	operandTypes = "F";  resultType = "F"; template = "-%1$s";			break;
+			case FMultiply:	operandTypes = "FF"; resultType = "F"; template = "%1$s * %2$s";	break;
+			case FDivide:	operandTypes = "FF"; resultType = "F"; template = "fdivide(%1$s, %2$s)";	break;
+
+			case And:		operandTypes = "II"; resultType = "I"; template = "bool(%1$s != 0 & %2$s != 0)";		break;
+			case Or:		operandTypes = "II"; resultType = "I"; template = "bool(%1$s != 0 | %2$s != 0)";		break;
+			case Nand:		operandTypes = "II"; resultType = "I"; template = "bool(!(%1$s != 0 & %2$s != 0))";	break;
+			case Nor:		operandTypes = "II"; resultType = "I"; template = "bool(!(%1$s != 0 | %2$s != 0))";	break;
+			case Xor:		operandTypes = "II"; resultType = "I"; template = "bool(%1$s != 0 ^ %2$s != 0)";		break;
+			case BEqual:	operandTypes = "II"; resultType = "I"; template = "bool((%1$s != 0) == (%2$s != 0))";	break;
+			case BNegate:	operandTypes = "I";  resultType = "I"; template = "bool(%1$s == 0)";					break;
+
+			case BTAnd:		operandTypes = "II"; resultType = "I"; template = "%1$s & %2$s";		break;
+			case BTOr:		operandTypes = "II"; resultType = "I"; template = "%1$s | %2$s";		break;
+			case BTNand:	operandTypes = "II"; resultType = "I"; template = "~(%1$s & %2$s)";	break;
+			case BTNor:		operandTypes = "II"; resultType = "I"; template = "~(%1$s | %2$s)";	break;
+			case BTXor:		operandTypes = "II"; resultType = "I"; template = "%1$s ^ %2$s";		break;
+			case BTEqual:	operandTypes = "II"; resultType = "I"; template = "~(%1$s ^ %2$s)";	break;
+			case BTNegate:	operandTypes = "I";  resultType = "I"; template = "~%1$s";			break;
+
+			case ConvertF:	operandTypes = "I"; resultType = "F"; template = "(double)%1$s";	break;
+			case ConvertI:	operandTypes = "F"; resultType = "I"; template = "(int)%1$s";		break;
+
+			case LoadC:		operandTypes = "I";  resultType = "I"; template = "m.loadC(%1$s)";	break;
+			case LoadI:		operandTypes = "I";  resultType = "I"; template = "m.loadI(%1$s)";	break;
+			case LoadF:		operandTypes = "I";  resultType = "F"; template = "m.loadF(%1$s)";	break;
+			case StoreC:	operandTypes = "II"; resultType = "";  template = "m.storeC(%1$s, %2$s);";	break;
+			case StoreI:	operandTypes = "II"; resultType = "";  template = "m.storeI(%1$s, %2$s);";	break;
+			case StoreF:	operandTypes = "IF"; resultType = "";  template = "m.storeF(%1$s, %2$s);";	break;
+			case Memtop:	operandTypes = "";   resultType = "I"; template = "m.memorySize()";		break;
+
+			default:
+				spill();
+				line("throw new EmulatorException(\"not an instruction\");");
+				return true;
+			}
+
+			String expression = String.format(template, (Object[])operands(operandTypes));
+			if(resultType.isEmpty()) {
+				line(expression);
+			}
+			else {
+				push(newLocal(resultType.equals("F"), expression), resultType.equals("F"));
+			}
+			return false;
+		}
+
+		// the Java expressions for the top operands, deepest first.  Those not
+		// in the model are popped from the Machine, which checks their types;
+		// if a modelled operand has the wrong type, everything is spilled so
+		// that the Machine reports the error.
+		private String[] operands(String types) {
+			int count = types.length();
+			String[] result = new String[count];
+			int modelled = Math.min(count, stack.size());
+			for(int k = 0; k < modelled; k++) {
+				Value value = top(k);
+				if(value.isFloat != (types.charAt(count - 1 - k) == 'F')) {
+					spill();
+					modelled = 0;
+					break;
+				}
+			}
+			for(int k = 0; k < modelled; k++) {
+				result[count - 1 - k] = stack.remove(stack.size() - 1).expression;
+			}
+			for(int k = count - 1 - modelled; k >= 0; k--) {
+				boolean isFloat = types.charAt(k) == 'F';
+				result[k] = newLocal(isFloat, isFloat ? "m.popFloat()" : "m.popInt()");
+			}
+			return result;
+		}
+		private Value top(int depth) {
+			return stack.get(stack.size() - 1 - depth);
+		}
+		private void push(String expression, boolean isFloat) {
+			stack.add(new Value(expression, isFloat));
+		}
+		private String newLocal(boolean isFloat, String expression) {
+			String name = "v" + (localCount++);
+			line("final " + (isFloat ? "double " : "int ") + name + " = " + expression + ";");
+			return name;
+		}
+		// push the modelled entries onto the Machine.
+		private void spill() {
+			for(Value value: stack) {
+				line((value.isFloat ? "m.pushFloat(" : "m.pushInt(") + value.expression + ");");
+			}
+			stack.clear();
+		}
+		private void line(String statement) {
+			source.append("\t\t\t").append(statement).append("\n");
+		}
+	}
+
+	private static String intLiteral(int value) {
+		return value < 0 ? "(" + value + ")" : Integer.toString(value);
+	}
+	private static String floatLiteral(double value) {
+		if(Double.isNaN(value) || Double.isInfinite(value)) {
+			return "Double.longBitsToDouble(0x" + Long.toHexString(Double.doubleToRawLongBits(value)) + "L)";
+		}
+		String literal = Double.toString(value);
+		return literal.startsWith("-") ? "(" + literal + ")" : literal;
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// compiling the source in memory
+
+	private Class<?> compileSource(String source) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if(compiler == null) {
+			failure = "no Java compiler available";
+			return null;
+		}
+		MemoryFileManager fileManager = new MemoryFileManager(compiler.getStandardFileManager(null, null, null));
+		StringWriter messages = new StringWriter();
+		List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-proc:none", "-nowarn");
+		List<JavaFileObject> units = Arrays.<JavaFileObject>asList(new SourceFile(className, source));
+
+		boolean compiled = compiler.getTask(messages, fileManager, null, options, null, units).call();
+		if(!compiled) {
+			failure = "generated class does not compile: " + messages;
+			return null;
+		}
+		try {
+			return new MemoryClassLoader(fileManager.classes()).loadClass(className);
+		}
+		catch(ClassNotFoundException e) {
+			failure = "compiled class not found: " + className;
+			return null;
+		}
+	}
+
+	private static class SourceFile extends SimpleJavaFileObject {
+		private String source;
+
+		SourceFile(String className, String source) {
+			super(URI.create("string:///" + className + Kind.SOURCE.extension), Kind.SOURCE);
+			this.source = source;
+		}
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return source;
+		}
+	}
+	private static class ClassFile extends SimpleJavaFileObject {
+		private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		ClassFile(String className) {
+			super(URI.create("bytes:///" + className + Kind.CLASS.extension), Kind.CLASS);
+		}
+		public OutputStream openOutputStream() {
+			return bytes;
+		}
+		byte[] getBytes() {
+			return bytes.toByteArray();
+		}
+	}
+	private static class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+		private Map<String, ClassFile> classes = new HashMap<String, ClassFile>();
+
+		MemoryFileManager(JavaFileManager fileManager) {
+			super(fileManager);
+		}
+		public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+			ClassFile file = new ClassFile(className);
+			classes.put(className, file);
+			return file;
+		}
+		Map<String, ClassFile> classes() {
+			return classes;
+		}
+	}
+	private static class MemoryClassLoader extends ClassLoader {
+		private Map<String, ClassFile> classes;
+
+		MemoryClassLoader(Map<String, ClassFile> classes) {
+			super(CompiledProgram.class.getClassLoader());
+			this.classes = classes;
+		}
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			ClassFile file = classes.get(name);
+			if(file == null) {
+				throw new ClassNotFoundException(name);
+			}
+			byte[] bytes = file.getBytes();
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package emulator;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IllegalFormatException;
+import java.util.List;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+
+// The state of the abstract stack machine described in ASMOpcode: the
+// accumulator stack, byte-addressed memory and the output stream.
+// Ints and floats share the stack; each entry remembers which it is, and using
+// one as the other halts the machine, as it does on the reference emulator.
+// Memory is big-endian and starts out zero (apart from the program's data).
+public class Machine {
+	private static final int MAX_STACK_DEPTH = 1 << 20;
+
+	private long[] stackValues;			// an int, or the raw bits of a double
+	private boolean[] stackIsFloat;
+	private int stackSize;
+
+	private byte[] memoryBytes;
+	private ByteBuffer memory;
+	private PrintStream out;
+
+	public Machine(ProgramImage program, PrintStream out) {
+		this.stackValues = new long[64];
+		this.stackIsFloat = new boolean[64];
+		this.stackSize = 0;
+		this.memoryBytes = program.newMemory();
+		this.memory = ByteBuffer.wrap(memoryBytes);
+		this.out = out;
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// accumulator stack
+
+	public void pushInt(int value) {
+		push(value, false);
+	}
+	public void pushFloat(double value) {
+		push(Double.doubleToRawLongBits(value), true);
+	}
+	private void push(long bits, boolean isFloat) {
+		if(stackSize == stackValues.length) {
+			growStack();
+		}
+		stackValues[stackSize] = bits;
+		stackIsFloat[stackSize] = isFloat;
+		stackSize++;
+	}
+	private void growStack() {
+		if(stackSize >= MAX_STACK_DEPTH) {
+			throw new EmulatorException("accumulator stack overflow");
+		}
+		int newLength = stackValues.length * 2;
+		stackValues = Arrays.copyOf(stackValues, newLength);
+		stackIsFloat = Arrays.copyOf(stackIsFloat, newLength);
+	}
+	public int popInt() {
+		checkNotEmpty();
+		stackSize--;
+		if(stackIsFloat[stackSize]) {
+			throw new EmulatorException("expected an integer on the accumulator, found a float");
+		}
+		return (int)stackValues[stackSize];
+	}
+	public double popFloat() {
+		checkNotEmpty();
+		stackSize--;
+		if(!stackIsFloat[stackSize]) {
+			throw new EmulatorException("expected a float on the accumulator, found an integer");
+		}
+		return Double.longBitsToDouble(stackValues[stackSize]);
+	}
+	public void pop() {
+		checkNotEmpty();
+		stackSize--;
+	}
+	public void duplicate() {
+		checkNotEmpty();
+		push(stackValues[stackSize-1], stackIsFloat[stackSize-1]);
+	}
+	public void exchange() {
+		if(stackSize < 2) {
+			throw new EmulatorException("accumulator stack empty");
+		}
+		long bits = stackValues[stackSize-1];
+		boolean isFloat = stackIsFloat[stackSize-1];
+		stackValues[stackSize-1] = stackValues[stackSize-2];
+		stackIsFloat[stackSize-1] = stackIsFloat[stackSize-2];
+		stackValues[stackSize-2] = bits;
+		stackIsFloat[stackSize-2] = isFloat;
+	}
+	public boolean topIsFloat() {
+		checkNotEmpty();
+		return stackIsFloat[stackSize-1];
+	}
+	public int stackSize() {
+		return stackSize;
+	}
+	private void checkNotEmpty() {
+		if(stackSize == 0) {
+			throw new EmulatorException("accumulator stack empty");
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// memory
+
+	public int loadC(int address) {
+		checkAddress(address, 1);
+		return memoryBytes[address] & 0xff;
+	}
+	public int loadI(int address) {
+		checkAddress(address, ASMOpcode.ASMIntSize);
+		return memory.getInt(address);
+	}
+	public double loadF(int address) {
+		checkAddress(address, ASMOpcode.ASMFloatSize);
+		return memory.getDouble(address);
+	}
+	public void storeC(int address, int value) {
+		checkAddress(address, 1);
+		memoryBytes[address] = (byte)value;
+	}
+	public void storeI(int address, int value) {
+		checkAddress(address, ASMOpcode.ASMIntSize);
+		memory.putInt(address, value);
+	}
+	public void storeF(int address, double value) {
+		checkAddress(address, ASMOpcode.ASMFloatSize);
+		memory.putDouble(address, value);
+	}
+	public int memorySize() {
+		return memoryBytes.length;
+	}
+	// the string of (unsigned) bytes starting at address and ending before the next zero byte.
+	public String loadString(int address) {
+		StringBuilder result = new StringBuilder();
+		for(int c = loadC(address); c != 0; c = loadC(++address)) {
+			result.append((char)c);
+		}
+		return result.toString();
+	}
+	private void checkAddress(int address, int size) {
+		if(address < 0 || address > memoryBytes.length - size) {
+			throw new EmulatorException("memory address " + address + " is invalid");
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// output
+
+	/** Printf: the format string's address is on top of the accumulator, and the
+	 *  arguments are below it (first argument on top).  %d, %g and %c take a
+	 *  number from the stack, %s takes the address of a string, and %% and %n
+	 *  take nothing; formatting then follows java.util.Formatter, as the
+	 *  reference emulator does.
+	 */
+	public void printf() {
+		String format = loadString(popInt());
+		List<Object> arguments = new ArrayList<Object>();
+		for(char conversion: conversions(format)) {
+			switch(conversion) {
+			case 's':
+				arguments.add(loadString(popInt()));
+				break;
+			case 'd':
+			case 'g':
+			case 'c':
+				arguments.add(topIsFloat() ? (Object)popFloat() : (Object)popInt());
+				break;
+			default:
+				break;
+			}
+		}
+		try {
+			out.print(String.format(format, arguments.toArray()));
+		}
+		catch(IllegalFormatException e) {
+			throw new EmulatorException("invalid printf format \"" + format + "\": " + e.getMessage());
+		}
+	}
+	// for each %, the first of the characters "%ndgcs" after it.
+	private static List<Character> conversions(String format) {
+		List<Character> result = new ArrayList<Character>();
+		int index = format.indexOf('%');
+		while(index != -1) {
+			index++;
+			while(index < format.length() && "%ndgcs".indexOf(format.charAt(index)) == -1) {
+				index++;
+			}
+			if(index < format.length()) {
+				result.add(format.charAt(index));
+				index++;
+			}
+			index = format.indexOf('%', index);
+		}
+		return result;
+	}
+	public void printStack() {
+		StringBuilder result = new StringBuilder("Stack: [");
+		for(int i = 0; i < stackSize; i++) {
+			if(i > 0) {
+				result.append(' ');
+			}
+			if(stackIsFloat[i]) {
+				result.append(Double.longBitsToDouble(stackValues[i]));
+			}
+			else {
+				result.append((int)stackValues[i]);
+			}
+		}
+		out.println(result.append(']'));
+	}
+	public void flush() {
+		out.flush();
+	}
+}
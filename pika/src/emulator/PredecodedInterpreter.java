@@ -0,0 +1,180 @@
+package emulator;
+
+import static emulator.PredecodedProgram.*;
+
+import java.io.PrintStream;
+
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+
+// The second execution tier: runs a PredecodedProgram with a switch over int
+// operation codes, so dispatch touches only flat arrays.  Superinstructions do
+// the work of their whole sequence at once and then skip over it.
+// Behaviour, including the runtime errors, is that of the Interpreter.
+public class PredecodedInterpreter {
+	private PredecodedProgram program;
+	private Machine machine;
+	private long instructionCount;
+
+	/** Load the fragment and run it to completion, printing to out. */
+	public static void run(ASMCodeFragment fragment, PrintStream out) {
+		ProgramImage image = ProgramImage.load(fragment);
+		new PredecodedInterpreter(new PredecodedProgram(image), new Machine(image, out)).run();
+	}
+	public PredecodedInterpreter(PredecodedProgram program, Machine machine) {
+		this.program = program;
+		this.machine = machine;
+		this.instructionCount = 0;
+	}
+
+	public void run() {
+		run(0);
+	}
+	/** Execute from instruction pc until Halt, or until control runs off the end.
+	 *  @return the number of ASM instructions executed by this call
+	 */
+	public long run(int pc) {
+		final int[] codes = program.codes();
+		final int[] lengths = program.lengths();
+		final int[] intOperands = program.intOperands();
+		final double[] floatOperands = program.floatOperands();
+		final Machine m = machine;
+		final int size = program.size();
+		long count = 0;
+		int current = pc;
+
+		try {
+			while(pc < size) {
+				current = pc;
+				pc += lengths[current];
+				count += lengths[current];
+
+				switch(codes[current]) {
+				case ADD:		{ int b = m.popInt(); m.pushInt(m.popInt() + b); break; }
+				case SUBTRACT:	{ int b = m.popInt(); m.pushInt(m.popInt() - b); break; }
+				case NEGATE:	m.pushInt(-m.popInt());		break;
+				case MULTIPLY:	{ int b = m.popInt(); m.pushInt(m.popInt() * b); break; }
+				case DIVIDE:	{ int b = nonZero(m.popInt()); m.pushInt(m.popInt() / b); break; }
+				case REMAINDER:	{ int b = nonZero(m.popInt()); m.pushInt(m.popInt() % b); break; }
+
+				case FADD:		{ double b = m.popFloat(); m.pushFloat(m.popFloat() + b); break; }
+				case FSUBTRACT:	{ double b = m.popFloat(); m.pushFloat(m.popFloat() - b); break; }
+				case FNEGATE:	m.pushFloat(-m.popFloat());	break;
+				case FMULTIPLY:	{ double b = m.popFloat(); m.pushFloat(m.popFloat() * b); break; }
+				case FDIVIDE:	{ double b = nonZero(m.popFloat()); m.pushFloat(m.popFloat() / b); break; }
+
+				case AND:		{ boolean b = m.popInt() != 0; m.pushInt(bool((m.popInt() != 0) & b));    break; }
+				case OR:		{ boolean b = m.popInt() != 0; m.pushInt(bool((m.popInt() != 0) | b));    break; }
+				case NAND:		{ boolean b = m.popInt() != 0; m.pushInt(bool(!((m.popInt() != 0) & b))); break; }
+				case NOR:		{ boolean b = m.popInt() != 0; m.pushInt(bool(!((m.popInt() != 0) | b))); break; }
+				case XOR:		{ boolean b = m.popInt() != 0; m.pushInt(bool((m.popInt() != 0) ^ b));    break; }
+				case BEQUAL:	{ boolean b = m.popInt() != 0; m.pushInt(bool((m.popInt() != 0) == b));   break; }
+				case BNEGATE:	m.pushInt(bool(m.popInt() == 0));	break;
+
+				case BTAND:		{ int b = m.popInt(); m.pushInt(m.popInt() & b);    break; }
+				case BTOR:		{ int b = m.popInt(); m.pushInt(m.popInt() | b);    break; }
+				case BTNAND:	{ int b = m.popInt(); m.pushInt(~(m.popInt() & b)); break; }
+				case BTNOR:		{ int b = m.popInt(); m.pushInt(~(m.popInt() | b)); break; }
+				case BTXOR:		{ int b = m.popInt(); m.pushInt(m.popInt() ^ b);    break; }
+				case BTEQUAL:	{ int b = m.popInt(); m.pushInt(~(m.popInt() ^ b)); break; }
+				case BTNEGATE:	m.pushInt(~m.popInt());	break;
+
+				case CONVERTF:	m.pushFloat((double)m.popInt());	break;
+				case CONVERTI:	m.pushInt((int)m.popFloat());		break;
+
+				case DUPLICATE:	m.duplicate();	break;
+				case EXCHANGE:	m.exchange();	break;
+				case POP:		m.pop();		break;
+				case PUSHI:		m.pushInt(intOperands[current]);		break;
+				case PUSHF:		m.pushFloat(floatOperands[current]);	break;
+				case PUSHPC:	m.pushInt(pc);		break;
+				case POPPC:		pc = m.popInt();	break;
+
+				case LOADC:		m.pushInt(m.loadC(m.popInt()));		break;
+				case LOADI:		m.pushInt(m.loadI(m.popInt()));		break;
+				case LOADF:		m.pushFloat(m.loadF(m.popInt()));	break;
+				case STOREC:	{ int value = m.popInt();      m.storeC(m.popInt(), value); break; }
+				case STOREI:	{ int value = m.popInt();      m.storeI(m.popInt(), value); break; }
+				case STOREF:	{ double value = m.popFloat(); m.storeF(m.popInt(), value); break; }
+				case MEMTOP:	m.pushInt(m.memorySize());	break;
+
+				case JUMP:		pc = intOperands[current];	break;
+				case JUMPFALSE:	if(m.popInt() == 0)     pc = intOperands[current];	break;
+				case JUMPTRUE:	if(m.popInt() != 0)     pc = intOperands[current];	break;
+				case JUMPNEG:	if(m.popInt() < 0)      pc = intOperands[current];	break;
+				case JUMPPOS:	if(m.popInt() > 0)      pc = intOperands[current];	break;
+				case JUMPFNEG:	if(m.popFloat() < 0)    pc = intOperands[current];	break;
+				case JUMPFPOS:	if(m.popFloat() > 0)    pc = intOperands[current];	break;
+				case JUMPFZERO:	if(m.popFloat() == 0.0) pc = intOperands[current];	break;
+				case CALL:		m.pushInt(pc); pc = intOperands[current];	break;
+				case JUMPV:		pc = m.popInt();	break;
+				case CALLV:		{ int target = m.popInt(); m.pushInt(pc); pc = target; break; }
+				case HALT:		instructionCount += count; return count;
+
+				case PSTACK:	m.printStack();	break;
+				case PRINTF:	m.printf();		break;
+
+				// superinstructions
+				case LOADC_DIRECT:	m.pushInt(m.loadC(intOperands[current]));		break;
+				case LOADI_DIRECT:	m.pushInt(m.loadI(intOperands[current]));		break;
+				case LOADF_DIRECT:	m.pushFloat(m.loadF(intOperands[current]));		break;
+				case STOREC_DIRECT:	m.storeC(intOperands[current], m.popInt());		break;
+				case STOREI_DIRECT:	m.storeI(intOperands[current], m.popInt());		break;
+				case STOREF_DIRECT:	m.storeF(intOperands[current], m.popFloat());	break;
+				case LOADC_OFFSET:	m.pushInt(m.loadC(m.popInt() + intOperands[current]));		break;
+				case LOADI_OFFSET:	m.pushInt(m.loadI(m.popInt() + intOperands[current]));		break;
+				case LOADF_OFFSET:	m.pushFloat(m.loadF(m.popInt() + intOperands[current]));	break;
+				case STOREC_OFFSET:	{ int address = m.popInt() + intOperands[current]; m.storeC(address, m.popInt());   break; }
+				case STOREI_OFFSET:	{ int address = m.popInt() + intOperands[current]; m.storeI(address, m.popInt());   break; }
+				case STOREF_OFFSET:	{ int address = m.popInt() + intOperands[current]; m.storeF(address, m.popFloat()); break; }
+				case ADD_IMMEDIATE:			m.pushInt(m.popInt() + intOperands[current]);	break;
+				case SUBTRACT_IMMEDIATE:	m.pushInt(m.popInt() - intOperands[current]);	break;
+
+				default:
+					throw new EmulatorException("not an instruction");
+				}
+			}
+		}
+		catch(ArrayIndexOutOfBoundsException e) {
+			instructionCount += count;
+			throw new EmulatorException("invalid instruction number " + current);
+		}
+		catch(EmulatorException e) {
+			instructionCount += count;
+			throw new EmulatorException(e.getMessage() + " at instruction #" + current + ": " + source(current));
+		}
+		finally {
+			m.flush();
+		}
+		instructionCount += count;
+		return count;
+	}
+
+	public long getInstructionCount() {
+		return instructionCount;
+	}
+
+	// the instruction(s) at index, as they appeared in the ASM.
+	private String source(int index) {
+		ProgramImage image = program.getImage();
+		StringBuilder result = new StringBuilder(image.getSource(index).toString().trim());
+		for(int i = 1; i < program.getLength(index); i++) {
+			result.append("; ").append(image.getSource(index + i).toString().trim());
+		}
+		return result.toString();
+	}
+	private static int bool(boolean value) {
+		return value ? 1 : 0;
+	}
+	private static int nonZero(int divisor) {
+		if(divisor == 0) {
+			throw new EmulatorException("integer divide by zero");
+		}
+		return divisor;
+	}
+	private static double nonZero(double divisor) {
+		if(divisor == 0.0) {
+			throw new EmulatorException("floating divide by zero");
+		}
+		return divisor;
+	}
+}
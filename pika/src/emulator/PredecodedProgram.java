@@ -0,0 +1,269 @@
+package emulator;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+
+// A ProgramImage re-coded for the PredecodedInterpreter: one int operation code
+// per instruction, in a flat array, with the instruction sequences that Macros
+// emits over and over fused into single superinstructions.
+//
+// Slot i still corresponds to instruction i of the image.  A superinstruction
+// stored at slot i covers instructions i..i+length-1 and the interpreter skips
+// the rest; the covered slots keep their ordinary codes, so nothing changes for
+// code that reaches them some other way.  A sequence is never fused if control
+// can arrive part-way through it: at a labelled instruction, or just after a
+// Call, CallV or PushPC (a return address).
+public class PredecodedProgram {
+	// the plain instructions.
+	static final int ADD = 0;
+	static final int SUBTRACT = 1;
+	static final int NEGATE = 2;
+	static final int MULTIPLY = 3;
+	static final int DIVIDE = 4;
+	static final int REMAINDER = 5;
+	static final int FADD = 6;
+	static final int FSUBTRACT = 7;
+	static final int FNEGATE = 8;
+	static final int FMULTIPLY = 9;
+	static final int FDIVIDE = 10;
+	static final int AND = 11;
+	static final int OR = 12;
+	static final int NAND = 13;
+	static final int NOR = 14;
+	static final int XOR = 15;
+	static final int BEQUAL = 16;
+	static final int BNEGATE = 17;
+	static final int BTAND = 18;
+	static final int BTOR = 19;
+	static final int BTNAND = 20;
+	static final int BTNOR = 21;
+	static final int BTXOR = 22;
+	static final int BTEQUAL = 23;
+	static final int BTNEGATE = 24;
+	static final int CONVERTF = 25;
+	static final int CONVERTI = 26;
+	static final int DUPLICATE = 27;
+	static final int EXCHANGE = 28;
+	static final int POP = 29;
+	static final int PUSHI = 30;				// PushI and PushD: the label is already a number
+	static final int PUSHF = 31;
+	static final int PUSHPC = 32;
+	static final int POPPC = 33;				// PopPC and Return
+	static final int LOADC = 34;
+	static final int LOADI = 35;
+	static final int LOADF = 36;
+	static final int STOREC = 37;
+	static final int STOREI = 38;
+	static final int STOREF = 39;
+	static final int MEMTOP = 40;
+	static final int JUMP = 41;
+	static final int JUMPFALSE = 42;
+	static final int JUMPTRUE = 43;
+	static final int JUMPNEG = 44;
+	static final int JUMPPOS = 45;
+	static final int JUMPFNEG = 46;
+	static final int JUMPFPOS = 47;
+	static final int JUMPFZERO = 48;
+	static final int CALL = 49;
+	static final int JUMPV = 50;
+	static final int CALLV = 51;
+	static final int HALT = 52;
+	static final int PSTACK = 53;
+	static final int PRINTF = 54;
+
+	// the superinstructions.  The operand is that of the leading PushD or PushI.
+	static final int LOADC_DIRECT = 55;			// PushD x; LoadC
+	static final int LOADI_DIRECT = 56;			// PushD x; LoadI
+	static final int LOADF_DIRECT = 57;			// PushD x; LoadF
+	static final int STOREC_DIRECT = 58;		// PushD x; Exchange; StoreC
+	static final int STOREI_DIRECT = 59;		// PushD x; Exchange; StoreI
+	static final int STOREF_DIRECT = 60;		// PushD x; Exchange; StoreF
+	static final int LOADC_OFFSET = 61;			// PushI k; Add; LoadC
+	static final int LOADI_OFFSET = 62;			// PushI k; Add; LoadI
+	static final int LOADF_OFFSET = 63;			// PushI k; Add; LoadF
+	static final int STOREC_OFFSET = 64;		// PushI k; Add; Exchange; StoreC
+	static final int STOREI_OFFSET = 65;		// PushI k; Add; Exchange; StoreI
+	static final int STOREF_OFFSET = 66;		// PushI k; Add; Exchange; StoreF
+	static final int ADD_IMMEDIATE = 67;		// PushI k; Add
+	static final int SUBTRACT_IMMEDIATE = 68;	// PushI k; Subtract
+
+	private final ProgramImage image;
+	private final int[] codes;
+	private final int[] lengths;				// instructions covered by each slot
+	private final int[] intOperands;
+	private final double[] floatOperands;
+	private int superinstructionCount;
+
+	public PredecodedProgram(ProgramImage image) {
+		this.image = image;
+		int size = image.size();
+		this.codes = new int[size];
+		this.lengths = new int[size];
+		this.intOperands = image.intOperands();
+		this.floatOperands = image.floatOperands();
+		this.superinstructionCount = 0;
+
+		ASMOpcode[] opcodes = image.opcodes();
+		for(int i = 0; i < size; i++) {
+			codes[i] = codeFor(opcodes[i]);
+			lengths[i] = 1;
+		}
+		fuse(opcodes, entryPoints(opcodes));
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// fusing
+
+	// the instructions that control can reach other than from the one before.
+	private boolean[] entryPoints(ASMOpcode[] opcodes) {
+		int size = opcodes.length;
+		boolean[] result = new boolean[size + 1];
+		for(int i = 0; i < size; i++) {
+			ASMOpcode opcode = opcodes[i];
+			result[i] |= image.isLabelled(i);
+			if(opcode == ASMOpcode.Call || opcode == ASMOpcode.CallV || opcode == ASMOpcode.PushPC) {
+				result[i+1] = true;
+			}
+		}
+		return result;
+	}
+	private void fuse(ASMOpcode[] opcodes, boolean[] entryPoints) {
+		for(int i = 0; i < opcodes.length; i++) {
+			int length = 0;
+			int code = 0;
+			if(opcodes[i] == ASMOpcode.PushD) {
+				if(matches(opcodes, entryPoints, i, ASMOpcode.LoadC))	{ code = LOADC_DIRECT; length = 2; }
+				else if(matches(opcodes, entryPoints, i, ASMOpcode.LoadI))	{ code = LOADI_DIRECT; length = 2; }
+				else if(matches(opcodes, entryPoints, i, ASMOpcode.LoadF))	{ code = LOADF_DIRECT; length = 2; }
+				else if(matches(opcodes, entryPoints, i, ASMOpcode.Exchange, ASMOpcode.StoreC))	{ code = STOREC_DIRECT; length = 3; }
+				else if(matches(opcodes, entryPoints, i, ASMOpcode.Exchange, ASMOpcode.StoreI))	{ code = STOREI_DIRECT; length = 3; }
+				else if(matches(opcodes, entryPoints, i, ASMOpcode.Exchange, ASMOpcode.StoreF))	{ code = STOREF_DIRECT; length = 3; }
+			}
+			else if(opcodes[i] == ASMOpcode.PushI) {
+				if(matches(opcodes, entryPoints, i, ASMOpcode.Add, ASMOpcode.LoadC))	{ code = LOADC_OFFSET; length = 3; }
+				else if(matches(opcodes, entryPoints, i, ASMOpcode.Add, ASMOpcode.LoadI))	{ code = LOADI_OFFSET; length = 3; }
+				else if(matches(opcodes, entryPoints, i, ASMOpcode.Add, ASMOpcode.LoadF))	{ code = LOADF_OFFSET; length = 3; }
+				else if(matches(opcodes, entryPoints, i, ASMOpcode.Add, ASMOpcode.Exchange, ASMOpcode.StoreC))	{ code = STOREC_OFFSET; length = 4; }
+				else if(matches(opcodes, entryPoints, i, ASMOpcode.Add, ASMOpcode.Exchange, ASMOpcode.StoreI))	{ code = STOREI_OFFSET; length = 4; }
+				else if(matches(opcodes, entryPoints, i, ASMOpcode.Add, ASMOpcode.Exchange, ASMOpcode.StoreF))	{ code = STOREF_OFFSET; length = 4; }
+				else if(matches(opcodes, entryPoints, i, ASMOpcode.Add))		{ code = ADD_IMMEDIATE; length = 2; }
+				else if(matches(opcodes, entryPoints, i, ASMOpcode.Subtract))	{ code = SUBTRACT_IMMEDIATE; length = 2; }
+			}
+			if(length > 0) {
+				codes[i] = code;
+				lengths[i] = length;
+				superinstructionCount++;
+				i += length - 1;
+			}
+		}
+	}
+	// true if the instructions after start are the given ones, and none of them is an entry point.
+	private static boolean matches(ASMOpcode[] opcodes, boolean[] entryPoints, int start, ASMOpcode... following) {
+		if(start + following.length >= opcodes.length) {
+			return false;
+		}
+		for(int k = 0; k < following.length; k++) {
+			int index = start + 1 + k;
+			if(opcodes[index] != following[k] || entryPoints[index]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int codeFor(ASMOpcode opcode) {
+		switch(opcode) {
+		case Add:		return ADD;
+		case Subtract:	return SUBTRACT;
+		case Negate:	return NEGATE;
+		case Multiply:	return MULTIPLY;
+		case Divide:	return DIVIDE;
+		case Remainder:	return REMAINDER;
+		case FAdd:		return FADD;
+		case FSubtract:	return FSUBTRACT;
+		case FNegate:	return FNEGATE;
+		case FMultiply:	return FMULTIPLY;
+		case FDivide:	return FDIVIDE;
+		case And:		return AND;
+		case Or:		return OR;
+		case Nand:		return NAND;
+		case Nor:		return NOR;
+		case Xor:		return XOR;
+		case BEqual:	return BEQUAL;
+		case BNegate:	return BNEGATE;
+		case BTAnd:		return BTAND;
+		case BTOr:		return BTOR;
+		case BTNand:	return BTNAND;
+		case BTNor:		return BTNOR;
+		case BTXor:		return BTXOR;
+		case BTEqual:	return BTEQUAL;
+		case BTNegate:	return BTNEGATE;
+		case ConvertF:	return CONVERTF;
+		case ConvertI:	return CONVERTI;
+		case Duplicate:	return DUPLICATE;
+		case Exchange:	return EXCHANGE;
+		case Pop:		return POP;
+		case PushI:		return PUSHI;
+		case PushD:		return PUSHI;
+		case PushF:		return PUSHF;
+		case PushPC:	return PUSHPC;
+		case PopPC:		return POPPC;
+		case Return:	return POPPC;
+		case LoadC:		return LOADC;
+		case LoadI:		return LOADI;
+		case LoadF:		return LOADF;
+		case StoreC:	return STOREC;
+		case StoreI:	return STOREI;
+		case StoreF:	return STOREF;
+		case Memtop:	return MEMTOP;
+		case Jump:		return JUMP;
+		case JumpFalse:	return JUMPFALSE;
+		case JumpTrue:	return JUMPTRUE;
+		case JumpNeg:	return JUMPNEG;
+		case JumpPos:	return JUMPPOS;
+		case JumpFNeg:	return JUMPFNEG;
+		case JumpFPos:	return JUMPFPOS;
+		case JumpFZero:	return JUMPFZERO;
+		case Call:		return CALL;
+		case JumpV:		return JUMPV;
+		case CallV:		return CALLV;
+		case Halt:		return HALT;
+		case PStack:	return PSTACK;
+		case Printf:	return PRINTF;
+		default:
+			return -1;			// fails when executed, as on the Interpreter
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// accessors
+
+	public ProgramImage getImage() {
+		return image;
+	}
+	public int size() {
+		return codes.length;
+	}
+	public int getSuperinstructionCount() {
+		return superinstructionCount;
+	}
+	/** The number of ASM instructions the slot at index executes. */
+	public int getLength(int index) {
+		return lengths[index];
+	}
+
+	// shared (not copied) with the PredecodedInterpreter.
+	int[] codes() {
+		return codes;
+	}
+	int[] lengths() {
+		return lengths;
+	}
+	int[] intOperands() {
+		return intOperands;
+	}
+	double[] floatOperands() {
+		return floatOperands;
+	}
+}
@@ -0,0 +1,200 @@
+package emulator;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMInstruction;
+import asmCodeGenerator.codeStorage.ASMOpcode;
+
+// An ASM program, loaded the way the emulator loads it: the executable
+// instructions in one array (Labels and data directives are not instructions),
+// every label operand already resolved to a number, and the data directives
+// already laid out in an initial memory image.
+//
+// A Label's value is the index of the instruction after it; a DLabel's value is
+// the address of the data after it.  Data is laid out from address 0, in program
+// order, regardless of where the directives appear among the instructions.
+public class ProgramImage {
+	public static final int MEMORY_SIZE = 300000;		// what Memtop pushes.
+
+	private ASMOpcode[] opcodes;
+	private int[] intOperands;				// PushI value, or resolved label for PushD, jumps and Call
+	private double[] floatOperands;			// PushF value
+	private ASMInstruction[] sources;		// for error messages
+	private boolean[] labelled;				// true if a Label names this instruction
+	private int size;
+
+	private byte[] initialMemory;
+	private int dataSize;
+	private Map<String, Integer> labelValues;
+
+	public static ProgramImage load(ASMCodeFragment fragment) {
+		return new ProgramImage(fragment.instructions());
+	}
+	public ProgramImage(List<ASMInstruction> program) {
+		labelValues = new HashMap<String, Integer>();
+		List<ASMInstruction> executable = new ArrayList<ASMInstruction>();
+		List<Integer> codeLabelValues = new ArrayList<Integer>();
+
+		assignLabelValues(program, executable, codeLabelValues);
+		layOutData(program);
+		decode(executable);
+		markLabelled(codeLabelValues);
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// loading
+
+	private void assignLabelValues(List<ASMInstruction> program, List<ASMInstruction> executable, List<Integer> codeLabelValues) {
+		int dataAddress = 0;
+		for(ASMInstruction instruction: program) {
+			ASMOpcode opcode = instruction.getOpcode();
+			if(opcode == ASMOpcode.Label) {
+				defineLabel(instruction.getStringArgument(), executable.size());
+				codeLabelValues.add(executable.size());
+			}
+			else if(opcode == ASMOpcode.DLabel) {
+				defineLabel(instruction.getStringArgument(), dataAddress);
+			}
+			else if(opcode.isDataDirective()) {
+				dataAddress += dataSize(instruction);
+			}
+			else {
+				executable.add(instruction);
+			}
+		}
+		dataSize = dataAddress;
+	}
+	private void defineLabel(String label, int value) {
+		if(labelValues.containsKey(label)) {
+			throw new EmulatorException("duplicate label " + label);
+		}
+		labelValues.put(label, value);
+	}
+	private static int dataSize(ASMInstruction instruction) {
+		switch(instruction.getOpcode()) {
+		case DataC:	return 1;
+		case DataI:	return ASMOpcode.ASMIntSize;
+		case DataF:	return ASMOpcode.ASMFloatSize;
+		case DataD:	return ASMOpcode.ASMIntSize;
+		case DataS:	return instruction.getStringArgument().length() + 1;
+		case DataZ:	return instruction.getIntArgument();
+		default:	return 0;
+		}
+	}
+
+	private void layOutData(List<ASMInstruction> program) {
+		if(dataSize > MEMORY_SIZE) {
+			throw new EmulatorException("data does not fit in memory: " + dataSize + " bytes");
+		}
+		initialMemory = new byte[MEMORY_SIZE];
+		ByteBuffer data = ByteBuffer.wrap(initialMemory);
+
+		for(ASMInstruction instruction: program) {
+			switch(instruction.getOpcode()) {
+			case DataC:	data.put((byte)instruction.getIntArgument());				break;
+			case DataI:	data.putInt(instruction.getIntArgument());					break;
+			case DataF:	data.putDouble(instruction.getFloatArgument());				break;
+			case DataD:	data.putInt(labelValue(instruction.getStringArgument()));	break;
+			case DataS:
+				String string = instruction.getStringArgument();
+				for(int i = 0; i < string.length(); i++) {
+					data.put((byte)string.charAt(i));
+				}
+				data.put((byte)0);
+				break;
+			case DataZ:	data.position(data.position() + instruction.getIntArgument());	break;
+			default:	break;
+			}
+		}
+	}
+
+	private void decode(List<ASMInstruction> executable) {
+		size = executable.size();
+		opcodes = new ASMOpcode[size];
+		intOperands = new int[size];
+		floatOperands = new double[size];
+		sources = executable.toArray(new ASMInstruction[size]);
+
+		for(int i = 0; i < size; i++) {
+			ASMInstruction instruction = sources[i];
+			ASMOpcode opcode = instruction.getOpcode();
+			opcodes[i] = opcode;
+			if(opcode.takesInteger()) {
+				intOperands[i] = instruction.getIntArgument();
+			}
+			else if(opcode.takesFloat()) {
+				floatOperands[i] = instruction.getFloatArgument();
+			}
+			else if(opcode.takesString()) {
+				intOperands[i] = labelValue(instruction.getStringArgument());
+			}
+		}
+	}
+	private void markLabelled(List<Integer> codeLabelValues) {
+		labelled = new boolean[size + 1];
+		for(int value: codeLabelValues) {
+			labelled[value] = true;
+		}
+	}
+	private int labelValue(String label) {
+		Integer value = labelValues.get(label);
+		if(value == null) {
+			throw new EmulatorException("label does not exist: " + label);
+		}
+		return value;
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// accessors
+
+	public int size() {
+		return size;
+	}
+	public ASMOpcode getOpcode(int index) {
+		return opcodes[index];
+	}
+	public int getIntOperand(int index) {
+		return intOperands[index];
+	}
+	public double getFloatOperand(int index) {
+		return floatOperands[index];
+	}
+	public ASMInstruction getSource(int index) {
+		return sources[index];
+	}
+	/** True if a Label names the instruction at index, so that control may arrive
+	 *  there from somewhere other than the instruction before it.
+	 */
+	public boolean isLabelled(int index) {
+		return labelled[index];
+	}
+	/** A fresh copy of memory as it is when the program starts. */
+	public byte[] newMemory() {
+		return initialMemory.clone();
+	}
+	public int getDataSize() {
+		return dataSize;
+	}
+	public Integer labelValue(String label, Integer defaultValue) {
+		Integer value = labelValues.get(label);
+		return value == null ? defaultValue : value;
+	}
+
+	// the decoded arrays, shared (not copied) with the execution engines in this package.
+	ASMOpcode[] opcodes() {
+		return opcodes;
+	}
+	int[] intOperands() {
+		return intOperands;
+	}
+	double[] floatOperands() {
+		return floatOperands;
+	}
+}
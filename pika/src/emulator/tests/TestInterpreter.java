@@ -0,0 +1,152 @@
+package emulator.tests;
+
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import junit.framework.TestCase;
+import emulator.EmulatorException;
+import emulator.ExecutionTier;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMCodeFragment.CodeType;
+
+public class TestInterpreter extends TestCase {
+
+	public void testArithmeticAndPrintf() {
+		ASMCodeFragment code = fragment();
+		code.add(DLabel, "format");
+		code.add(DataS, "%d %g %s%c%n");
+		code.add(PushI, 'x');
+		code.add(PushD, "word");
+		code.add(PushF, 1.5);
+		code.add(PushI, 6);
+		code.add(PushI, 7);
+		code.add(Multiply);
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(Halt);
+		code.add(DLabel, "word");
+		code.add(DataS, "hi");
+
+		assertEquals(String.format("42 1.50000 hix%n"), run(code));
+	}
+	public void testLabelsDataLayoutAndMemory() {
+		ASMCodeFragment code = fragment();
+		code.add(DLabel, "format");
+		code.add(DataS, "%d ");
+		code.add(Memtop);
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(PushD, "here");			// a code label's value is its instruction number
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(Label, "here");
+		code.add(DLabel, "x");
+		code.add(DataI, 7);
+		code.add(PushD, "x");				// data is laid out in order from address 0
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(PushD, "x");
+		code.add(PushI, -1);
+		code.add(StoreC);					// memory is big-endian
+		code.add(PushD, "x");
+		code.add(LoadI);
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(Halt);
+
+		assertEquals("300000 6 4 -16777209 ", run(code));
+	}
+	public void testCallAndReturn() {
+		ASMCodeFragment code = fragment();
+		code.add(DLabel, "format");
+		code.add(DataS, "%d");
+		code.add(PushI, 5);
+		code.add(Call, "square");
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(Halt);
+		code.add(Label, "square");		// [... n return] -> [... n*n]
+		code.add(Exchange);
+		code.add(Duplicate);
+		code.add(Multiply);
+		code.add(Exchange);
+		code.add(Return);
+
+		assertEquals("25", run(code));
+	}
+	public void testLoop() {
+		ASMCodeFragment code = fragment();
+		code.add(DLabel, "format");
+		code.add(DataS, "%d");
+		code.add(PushI, 0);				// sum
+		code.add(PushI, 100);			// i
+		code.add(Label, "loop");
+		code.add(Duplicate);
+		code.add(JumpFalse, "done");
+		code.add(Duplicate);
+		code.add(PushI, 2);
+		code.add(Remainder);
+		code.add(JumpTrue, "skip");
+		code.add(Exchange);
+		code.add(PushI, 1);
+		code.add(Add);
+		code.add(Exchange);
+		code.add(Label, "skip");
+		code.add(PushI, 1);
+		code.add(Subtract);
+		code.add(Jump, "loop");
+		code.add(Label, "done");
+		code.add(Pop);
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(Halt);
+
+		assertEquals("50", run(code));
+	}
+	public void testRuntimeErrors() {
+		ASMCodeFragment code = fragment();
+		code.add(PushI, 1);
+		code.add(PushI, 0);
+		code.add(Divide);
+		assertRuntimeError(code);
+
+		code = fragment();
+		code.add(PushF, 1.0);
+		code.add(PushI, 1);
+		code.add(Add);
+		assertRuntimeError(code);
+	}
+	public void testNopIsRejected() {				// as on the ASM simulator
+		ASMCodeFragment code = fragment();
+		code.add(PushI, 1);
+		code.add(Nop);
+		code.add(Halt);
+		assertRuntimeError(code);
+	}
+
+
+	// subclasses run the same programs on the other tiers.
+	protected ExecutionTier tier() {
+		return ExecutionTier.INTERPRETED;
+	}
+	protected ASMCodeFragment fragment() {
+		return new ASMCodeFragment(CodeType.GENERATES_VOID);
+	}
+	protected String run(ASMCodeFragment code) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(bytes);
+		tier().run(code, out);
+		return bytes.toString();
+	}
+	protected void assertRuntimeError(ASMCodeFragment code) {
+		try {
+			run(code);
+			fail("expected an EmulatorException");
+		}
+		catch(EmulatorException e) {
+			// expected
+		}
+	}
+}
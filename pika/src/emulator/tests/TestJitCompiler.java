@@ -0,0 +1,71 @@
+package emulator.tests;
+
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+import emulator.CompiledProgram;
+import emulator.ExecutionTier;
+import emulator.JitCompiler;
+import emulator.ProgramImage;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+
+// runs every TestInterpreter program compiled, plus the cases that fall back to the Interpreter.
+public class TestJitCompiler extends TestInterpreter {
+
+	protected ExecutionTier tier() {
+		return ExecutionTier.COMPILED;
+	}
+
+	public void testProgramsCompile() {
+		ASMCodeFragment code = fragment();
+		code.add(DLabel, "format");
+		code.add(DataS, "%g %d");
+		code.add(PushI, -2147483648);
+		code.add(PushF, -0.5);
+		code.add(PushF, 4.0);
+		code.add(FMultiply);
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(Halt);
+
+		JitCompiler compiler = new JitCompiler(ProgramImage.load(code));
+		CompiledProgram program = compiler.compile();
+		assertNull(compiler.getFailure());
+		assertNotNull(program);
+		assertEquals(String.format("%g %d", -2.0, -2147483648), run(code));
+	}
+	public void testJumpIntoABlockFallsBackToInterpreter() {
+		ASMCodeFragment code = fragment();
+		code.add(DLabel, "format");
+		code.add(DataS, "%d");
+		code.add(PushD, "target");
+		code.add(PushI, 1);
+		code.add(Add);					// one past the label: not the start of a block
+		code.add(JumpV);
+		code.add(Label, "target");
+		code.add(PushI, 100);
+		code.add(PushI, 7);
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(Halt);
+
+		assertEquals("7", run(code));
+	}
+	public void testStackCarriedAcrossBlocks() {
+		ASMCodeFragment code = fragment();
+		code.add(DLabel, "format");
+		code.add(DataS, "%g %d");
+		code.add(PushI, 3);
+		code.add(PushF, 2.5);
+		code.add(Jump, "next");
+		code.add(Label, "next");
+		code.add(Exchange);				// one operand modelled, one on the machine
+		code.add(PushI, 1);
+		code.add(Add);
+		code.add(Exchange);
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(Halt);
+
+		assertEquals(String.format("%g %d", 2.5, 4), run(code));
+	}
+}
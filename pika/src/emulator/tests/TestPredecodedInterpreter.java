@@ -0,0 +1,76 @@
+package emulator.tests;
+
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+import emulator.ExecutionTier;
+import emulator.PredecodedProgram;
+import emulator.ProgramImage;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+
+// runs every TestInterpreter program on the predecoded tier, plus the fusing cases.
+public class TestPredecodedInterpreter extends TestInterpreter {
+
+	protected ExecutionTier tier() {
+		return ExecutionTier.PREDECODED;
+	}
+
+	public void testMacroSequencesAreFused() {
+		ASMCodeFragment code = fragment();
+		code.add(DLabel, "format");
+		code.add(DataS, "%d");
+		code.add(DLabel, "x");
+		code.add(DataZ, 8);
+		code.add(PushI, 5);
+		code.add(PushD, "x");			// storeITo x
+		code.add(Exchange);
+		code.add(StoreI);
+		code.add(PushI, 9);
+		code.add(PushD, "x");			// writeIOffset x, 4
+		code.add(PushI, 4);
+		code.add(Add);
+		code.add(Exchange);
+		code.add(StoreI);
+		code.add(PushD, "x");			// loadIFrom x
+		code.add(LoadI);
+		code.add(PushD, "x");			// readIOffset x, 4
+		code.add(PushI, 4);
+		code.add(Add);
+		code.add(LoadI);
+		code.add(Multiply);
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(Halt);
+
+		assertEquals("45", run(code));
+		PredecodedProgram program = new PredecodedProgram(ProgramImage.load(code));
+		assertEquals(4, program.getSuperinstructionCount());
+		assertEquals(3, program.getLength(1));
+	}
+	public void testNoFusingAcrossEntryPoints() {
+		ASMCodeFragment code = fragment();
+		code.add(DLabel, "format");
+		code.add(DataS, "%d ");
+		code.add(DLabel, "x");
+		code.add(DataI, 7);
+		code.add(PushD, "x");
+		code.add(Call, "load");			// the LoadI after this is a return address
+		code.add(LoadI);
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(PushI, 3);
+		code.add(Jump, "add");
+		code.add(PushI, 100);
+		code.add(Label, "add");			// reached with [3] by the jump
+		code.add(PushI, 1);
+		code.add(Add);
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(Halt);
+		code.add(Label, "load");
+		code.add(Return);
+
+		assertEquals("7 4 ", run(code));
+		PredecodedProgram program = new PredecodedProgram(ProgramImage.load(code));
+		assertEquals(1, program.getSuperinstructionCount());		// only the PushI 1; Add
+	}
+}
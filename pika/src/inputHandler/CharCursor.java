@@ -0,0 +1,116 @@
+package inputHandler;
+
+import java.util.Iterator;
+
+/** A character stream over the lines of an InputHandler that keeps each
+ *  character's line and column as ints, rather than allocating a LocatedChar
+ *  and a TextLocation for it.
+ *  <p>
+ *  The current character is the one <code>next()</code> last returned.  A
+ *  TextLocation or LocatedChar for it is made only when asked for, typically
+ *  once per token or error.
+ *  <p>
+ *  The last RING_SIZE characters read stay in a ring of int arrays, so up to
+ *  that many can be unread (pushed back) and read again.
+ */
+public class CharCursor {
+	public static final int END_OF_INPUT = -1;
+	public static final int RING_SIZE = 16;						// a power of two
+	private static final int RING_MASK = RING_SIZE - 1;
+
+	private final InputHandler input;
+	private final Iterator<? extends CharSequence> lines;
+	private CharSequence line;
+	private int index;
+
+	// ring of characters read; slot (n & RING_MASK) holds the n-th character.
+	private final int[] characters = new int[RING_SIZE];
+	private final int[] lineNumbers = new int[RING_SIZE];
+	private final int[] columns = new int[RING_SIZE];
+	private int fetched;			// characters taken from the lines into the ring
+	private int consumed;			// characters handed out by next(), less those unread
+
+	public CharCursor(InputHandler input) {
+		this.input = input;
+		this.lines = input.lines();
+		this.line = "";
+		this.index = 0;
+		this.fetched = 0;
+		this.consumed = 0;
+	}
+
+
+//////////////////////////////////////////////////////////////////////////////
+// reading
+
+	/** Advance to the next character.
+	 *  @return the character, or END_OF_INPUT (repeatedly) once the input is exhausted.
+	 */
+	public int next() {
+		if(consumed == fetched) {
+			fetch();
+		}
+		return characters[consumed++ & RING_MASK];
+	}
+	/** Step back one character, so that <code>next()</code> returns the current character again. */
+	public void unread() {
+		assert consumed > 0 && fetched - consumed < RING_SIZE;
+		consumed--;
+	}
+	public int peek() {
+		int result = next();
+		unread();
+		return result;
+	}
+	public boolean hasNext() {
+		return peek() != END_OF_INPUT;
+	}
+
+
+//////////////////////////////////////////////////////////////////////////////
+// the current character
+
+	public int current() {
+		return characters[(consumed - 1) & RING_MASK];
+	}
+	public int lineNumber() {
+		return lineNumbers[(consumed - 1) & RING_MASK];
+	}
+	public int column() {
+		return columns[(consumed - 1) & RING_MASK];
+	}
+	public TextLocation location() {
+		if(current() == END_OF_INPUT) {
+			return LocatedCharStream.FLAG_END_OF_INPUT.getLocation();
+		}
+		return new TextLocation(input.fileName(), lineNumber(), column());
+	}
+	public LocatedChar locatedChar() {
+		if(current() == END_OF_INPUT) {
+			return LocatedCharStream.FLAG_END_OF_INPUT;
+		}
+		return new LocatedChar((char)current(), location());
+	}
+
+
+//////////////////////////////////////////////////////////////////////////////
+// private parts
+
+	private void fetch() {
+		int slot = fetched++ & RING_MASK;
+		while(index >= line.length() && lines.hasNext()) {
+			line = lines.next();
+			index = 0;
+		}
+		if(index < line.length()) {
+			characters[slot] = line.charAt(index);
+			lineNumbers[slot] = input.lineNumber();
+			columns[slot] = index++;
+		}
+		else {
+			characters[slot] = END_OF_INPUT;
+			lineNumbers[slot] = -1;
+			columns[slot] = -1;
+		}
+	}
+}
@@ -12,6 +12,10 @@ import java.util.Iterator;
  *  Although InputHandler is an Iterable on String, it permits only
  *  one Iterator.  The current line number of the InputHandler is the
  *  line number of the corresponding Iterator, if any. 
+ *  <p>
+ *  An InputHandler from <code>fromMappedFile(...)</code> reads the file
+ *  through a MappedSource instead of a Reader.  Its <code>lines()</code>
+ *  iterator then hands out one reused view per line rather than a new String.
  *
  */
 public class InputHandler implements Iterable<String> {
@@ -21,12 +25,17 @@ public class InputHandler implements Iterable<String> {
 	private boolean iteratorIssued = false;
 	protected String filename;
 	protected String terminator;
+	private MappedSource source;		// null unless mapped
 	
 	
 	private InputHandler(String filename, String terminator) {
 		this.filename = filename;
 		this.terminator = terminator;
 	}
+	private InputHandler(MappedSource source, String filename, String terminator) {
+		this(filename, terminator);
+		this.source = source;
+	}
 	private InputHandler(String filename) {
 		this(filename, DEFAULT_TERMINATOR);
 	}
@@ -47,14 +56,38 @@ public class InputHandler implements Iterable<String> {
 	public int lineNumber() {
 		return lineNumber;
 	}
+	public boolean isMapped() {
+		return source != null;
+	}
+	/** Get the mapped file.
+	 * @return the MappedSource, or null if this InputHandler reads through a Reader.
+	 */
+	public MappedSource getMappedSource() {
+		return source;
+	}
 
 
 	@Override
 	public Iterator<String> iterator() {
 		ensureSingleIterator();
 		
+		if(isMapped()) {
+			return new MappedStringIterator();
+		}
 		return new HandlerIterator(filename);
 	}
+	/** An iterator over the lines, each with the terminator, as CharSequences.
+	 *  When mapped, every call to <code>next()</code> returns the same view,
+	 *  moved to the next line; it is valid until the following call.
+	 *  Counts as this InputHandler's one iterator.
+	 */
+	public Iterator<? extends CharSequence> lines() {
+		if(isMapped()) {
+			ensureSingleIterator();
+			return new MappedLineIterator();
+		}
+		return iterator();
+	}
 	private void ensureSingleIterator() {
 		if(iteratorIssued) {
 			throw new IllegalStateException("Cannot get two iterators on same InputHandler.");
@@ -74,6 +107,71 @@ public class InputHandler implements Iterable<String> {
 			return super.next() + terminator;
 		}
 	}
+	
+	private class MappedLineIterator implements Iterator<CharSequence> {
+		private LineView view = new LineView();
+		
+		@Override
+		public boolean hasNext() {
+			return lineNumber < source.lineCount();
+		}
+		@Override
+		public CharSequence next() {
+			lineNumber++;
+			view.moveTo(source.lineStart(lineNumber), source.lineEnd(lineNumber));
+			return view;
+		}
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+	private class MappedStringIterator implements Iterator<String> {
+		private MappedLineIterator lines = new MappedLineIterator();
+		
+		@Override
+		public boolean hasNext() {
+			return lines.hasNext();
+		}
+		@Override
+		public String next() {
+			return lines.next().toString();
+		}
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	// one line of the mapped source followed by the terminator.
+	private class LineView implements CharSequence {
+		private int start;
+		private int lineLength;
+		
+		void moveTo(int start, int end) {
+			this.start = start;
+			this.lineLength = end - start;
+		}
+		@Override
+		public int length() {
+			return lineLength + terminator.length();
+		}
+		@Override
+		public char charAt(int index) {
+			if(index < lineLength) {
+				return source.charAt(start + index);
+			}
+			return terminator.charAt(index - lineLength);
+		}
+		@Override
+		public CharSequence subSequence(int begin, int end) {
+			return toString().subSequence(begin, end);
+		}
+		@Override
+		public String toString() {
+			return source.subSequence(start, start + lineLength).toString() + terminator;
+		}
+	}
 
 
 //////////////////////////////////////////////////////////////////////////////
@@ -85,4 +183,10 @@ public class InputHandler implements Iterable<String> {
 	public static InputHandler fromFilename(String filename) {
 		return fromFilename(filename, DEFAULT_TERMINATOR);
 	}
+	public static InputHandler fromMappedFile(String filename, String terminator) {
+		return new InputHandler(MappedSource.map(filename), filename, terminator);
+	}
+	public static InputHandler fromMappedFile(String filename) {
+		return fromMappedFile(filename, DEFAULT_TERMINATOR);
+	}
 }
@@ -10,8 +10,8 @@ public class LocatedCharStream implements Iterator<LocatedChar> {
 	public static final LocatedChar FLAG_END_OF_INPUT = new LocatedChar(NULL_CHAR, new TextLocation("null", -1, -1));
 
 	
-	private Iterator<String> inputIterator;
-	private String line;
+	private Iterator<? extends CharSequence> inputIterator;
+	private CharSequence line;
 	private int index;
 
 	private LocatedChar next;
@@ -21,7 +21,7 @@ public class LocatedCharStream implements Iterator<LocatedChar> {
 	public LocatedCharStream(InputHandler input) {
 		super();
 		this.input = input;
-		this.inputIterator = input.iterator();
+		this.inputIterator = input.lines();
 		this.index = 0;
 		this.line = "";
 		preloadChar();
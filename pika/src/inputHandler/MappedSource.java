@@ -0,0 +1,172 @@
+package inputHandler;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/** A source file mapped into memory and viewed as a CharSequence, with a table
+ *  of where each line starts and ends.
+ *  <p>
+ *  A file that is all ASCII is read straight out of the mapping, one byte per
+ *  char, without being copied.  Anything else is decoded once, with the
+ *  platform charset (as the Reader-based InputHandler does), into a CharBuffer.
+ *  <p>
+ *  Lines are ended by "\n", "\r" or "\r\n", as for BufferedReader.readLine().
+ *  The end of a line excludes its terminator.  Lines are numbered from one.
+ */
+public class MappedSource implements CharSequence {
+	private final CharSequence text;
+	private int[] lineStarts;
+	private int[] lineEnds;
+	private int lineCount;
+
+	private MappedSource(CharSequence text) {
+		this.text = text;
+		findLines();
+	}
+
+	/** Map the named file.
+	 *  @throws IllegalArgumentException if the file cannot be opened or read.
+	 */
+	public static MappedSource map(String filename) {
+		try(FileInputStream stream = new FileInputStream(filename);
+			FileChannel channel = stream.getChannel()) {
+			ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(isAscii(bytes)) {
+				return new MappedSource(new AsciiView(bytes));
+			}
+			return new MappedSource(Charset.defaultCharset().decode(bytes));
+		}
+		catch (FileNotFoundException e) {
+			throw new IllegalArgumentException(e);
+		}
+		catch (IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+	private static boolean isAscii(ByteBuffer bytes) {
+		for(int i = 0; i < bytes.limit(); i++) {
+			if(bytes.get(i) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+//////////////////////////////////////////////////////////////////////////////
+// the line table
+
+	private void findLines() {
+		lineStarts = new int[64];
+		lineEnds = new int[64];
+		lineCount = 0;
+
+		int length = text.length();
+		int start = 0;
+		for(int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if(c == '\n' || c == '\r') {
+				addLine(start, i);
+				if(c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+					i++;
+				}
+				start = i + 1;
+			}
+		}
+		if(start < length) {
+			addLine(start, length);			// last line, unterminated
+		}
+	}
+	private void addLine(int start, int end) {
+		if(lineCount == lineStarts.length) {
+			lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+			lineEnds = Arrays.copyOf(lineEnds, lineCount * 2);
+		}
+		lineStarts[lineCount] = start;
+		lineEnds[lineCount] = end;
+		lineCount++;
+	}
+
+	public int lineCount() {
+		return lineCount;
+	}
+	/** Offset of the first character of the one-based line. */
+	public int lineStart(int lineNumber) {
+		return lineStarts[lineNumber - 1];
+	}
+	/** Offset just past the last character of the one-based line, before its terminator. */
+	public int lineEnd(int lineNumber) {
+		return lineEnds[lineNumber - 1];
+	}
+	/** The one-based number of the line holding offset (or whose terminator holds it). */
+	public int lineNumberOf(int offset) {
+		int index = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+		return (index >= 0) ? index + 1 : -(index + 1);
+	}
+
+
+//////////////////////////////////////////////////////////////////////////////
+// CharSequence
+
+	@Override
+	public int length() {
+		return text.length();
+	}
+	@Override
+	public char charAt(int index) {
+		return text.charAt(index);
+	}
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return text.subSequence(start, end);
+	}
+	@Override
+	public String toString() {
+		return text.toString();
+	}
+
+
+//////////////////////////////////////////////////////////////////////////////
+// an ASCII file as chars, straight from the mapping
+
+	private static class AsciiView implements CharSequence {
+		private final ByteBuffer bytes;
+		private final int offset;
+		private final int length;
+
+		AsciiView(ByteBuffer bytes) {
+			this(bytes, 0, bytes.limit());
+		}
+		private AsciiView(ByteBuffer bytes, int offset, int length) {
+			this.bytes = bytes;
+			this.offset = offset;
+			this.length = length;
+		}
+		@Override
+		public int length() {
+			return length;
+		}
+		@Override
+		public char charAt(int index) {
+			return (char)bytes.get(offset + index);
+		}
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new AsciiView(bytes, offset + start, end - start);
+		}
+		@Override
+		public String toString() {
+			char[] chars = new char[length];
+			for(int i = 0; i < length; i++) {
+				chars[i] = charAt(i);
+			}
+			return new String(chars);
+		}
+	}
+}
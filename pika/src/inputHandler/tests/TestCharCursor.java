@@ -0,0 +1,56 @@
+package inputHandler.tests;
+
+import static inputHandler.tests.FixtureDefinitions.*;
+
+import inputHandler.CharCursor;
+import inputHandler.InputHandler;
+
+import java.io.PrintStream;
+
+import tests.FileFixturesTestCase;
+
+public class TestCharCursor extends FileFixturesTestCase {
+
+	// the cursor locates every character as LocatedCharStream does.
+	public void testMatchesLocatedCharStream() throws Exception {
+		final CharCursor cursor = new CharCursor(InputHandler.fromMappedFile(SIMPLE_FIXTURE_FILENAME, "\n"));
+		String actualOutput = outputFor(new Command() {
+			public void run(PrintStream out) {
+				while(cursor.hasNext()) {
+					cursor.next();
+					out.println(cursor.locatedChar());
+				}
+			}
+		});
+		assertEquals(getContents(SIMPLE_LCHAR_FILENAME), actualOutput);
+	}
+	
+	public void testUnread() {
+		CharCursor cursor = new CharCursor(InputHandler.fromFilename(SIMPLE_FIXTURE_FILENAME, "\n"));
+		for(int i = 0; i < CharCursor.RING_SIZE; i++) {
+			cursor.next();
+		}
+		int line = cursor.lineNumber();
+		int column = cursor.column();
+		for(int i = 0; i < CharCursor.RING_SIZE - 1; i++) {
+			cursor.unread();
+		}
+		assertEquals('h', cursor.current());
+		assertEquals('e', cursor.peek());
+		for(int i = 0; i < CharCursor.RING_SIZE - 1; i++) {
+			cursor.next();
+		}
+		assertEquals(line, cursor.lineNumber());
+		assertEquals(column, cursor.column());
+	}
+	
+	public void testEndOfInput() {
+		CharCursor cursor = new CharCursor(InputHandler.fromMappedFile(SIMPLE_FIXTURE_FILENAME, "\n"));
+		while(cursor.hasNext()) {
+			cursor.next();
+		}
+		assertEquals(CharCursor.END_OF_INPUT, cursor.next());
+		assertEquals(CharCursor.END_OF_INPUT, cursor.next());
+		assertEquals(-1, cursor.lineNumber());
+	}
+}
@@ -1,5 +1,9 @@
 package lexicalAnalyzer;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 import tokens.LextantToken;
 import tokens.Token;
 
@@ -48,21 +52,96 @@ public enum Keyword implements Lextant {
 	}
 	
 	public static Keyword forLexeme(String lexeme) {
-		for(Keyword keyword: values()) {
-			if(keyword.lexeme.equals(lexeme)) {
-				return keyword;
+		int length = lexeme.length();
+		if(length == 0) {
+			return NULL_KEYWORD;
+		}
+		if(keywordForHash == null) {
+			return fromMap(lexeme);
+		}
+		Keyword candidate = keywordForHash[hash(lexeme.charAt(0), lexeme.charAt(length/2), lexeme.charAt(length-1), length, hashMultiplier)];
+		return candidate.lexeme.equals(lexeme) ? candidate : NULL_KEYWORD;
+	}
+	/** The keyword spelled by the first length characters of buffer, or NULL_KEYWORD. */
+	public static Keyword forLexeme(char[] buffer, int length) {
+		if(length == 0) {
+			return NULL_KEYWORD;
+		}
+		if(keywordForHash == null) {
+			return fromMap(new String(buffer, 0, length));
+		}
+		Keyword candidate = keywordForHash[hash(buffer[0], buffer[length/2], buffer[length-1], length, hashMultiplier)];
+		if(candidate.lexeme.length() != length) {
+			return NULL_KEYWORD;
+		}
+		for(int i = 0; i < length; i++) {
+			if(candidate.lexeme.charAt(i) != buffer[i]) {
+				return NULL_KEYWORD;
 			}
 		}
-		return NULL_KEYWORD;
+		return candidate;
 	}
 	public static boolean isAKeyword(String lexeme) {
 		return forLexeme(lexeme) != NULL_KEYWORD;
 	}
 	
-	/*   the following hashtable lookup can replace the serial-search implementation of forLexeme() above. It is faster but less clear. 
-	private static LexemeMap<Keyword> lexemeToKeyword = new LexemeMap<Keyword>(values(), NULL_KEYWORD);
-	public static Keyword forLexeme(String lexeme) {
-		return lexemeToKeyword.forLexeme(lexeme);
+	
+	////////////////////////////////////////////////////////////////////////////
+	// a perfect hash of the keyword lexemes, found at class initialization.
+	// It reads only the length and the first, middle and last characters, so the
+	// lexer can look up its character buffer without making a String.
+	// Slots no keyword hashes to hold NULL_KEYWORD.
+	// Two keywords with the same length and the same first, middle and last
+	// characters can't be told apart this way; then the search gives up at
+	// MAX_HASH_TABLE_SIZE and lookups go through an ordinary map instead.
+	
+	private static final int MAX_HASH_TABLE_SIZE = 1 << 12;
+	private static Keyword[] keywordForHash;
+	private static int hashMultiplier;
+	private static Map<String, Keyword> keywordForLexeme;		// only if there is no perfect hash
+	static {
+		if(!findPerfectHash()) {
+			keywordForHash = null;
+			keywordForLexeme = new HashMap<String, Keyword>();
+			for(Keyword keyword: values()) {
+				keywordForLexeme.put(keyword.lexeme, keyword);
+			}
+		}
+	}
+	private static Keyword fromMap(String lexeme) {
+		Keyword keyword = keywordForLexeme.get(lexeme);
+		return (keyword == null) ? NULL_KEYWORD : keyword;
+	}
+	
+	private static int hash(char first, char middle, char last, int length, int multiplier) {
+		return (((first * multiplier + middle) * multiplier + last) * multiplier + length) & (keywordForHash.length - 1);
+	}
+	private static boolean findPerfectHash() {
+		for(int size = 32; size <= MAX_HASH_TABLE_SIZE; size *= 2) {
+			keywordForHash = new Keyword[size];
+			for(int multiplier = 1; multiplier < size; multiplier++) {
+				if(fillsWithoutCollision(multiplier)) {
+					hashMultiplier = multiplier;
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	private static boolean fillsWithoutCollision(int multiplier) {
+		Arrays.fill(keywordForHash, NULL_KEYWORD);
+		for(Keyword keyword: values()) {
+			String lexeme = keyword.lexeme;
+			int length = lexeme.length();
+			if(length == 0) {
+				continue;
+			}
+			int slot = hash(lexeme.charAt(0), lexeme.charAt(length/2), lexeme.charAt(length-1), length, multiplier);
+			if(keywordForHash[slot] != NULL_KEYWORD) {
+				return false;
+			}
+			keywordForHash[slot] = keyword;
+		}
+		return true;
 	}
-	*/
 }
@@ -1,26 +1,33 @@
 package lexicalAnalyzer;
 
 
+import java.util.Arrays;
+
 import logging.PikaLogger;
 
+import inputHandler.CharCursor;
 import inputHandler.InputHandler;
 import inputHandler.LocatedChar;
-import inputHandler.LocatedCharStream;
-import inputHandler.PushbackCharStream;
 import inputHandler.TextLocation;
 import tokens.*;
 import static lexicalAnalyzer.PunctuatorScanningAids.*;
 
 public class LexicalAnalyzer extends ScannerImp implements Scanner {
 	public static LexicalAnalyzer make(String filename) {
-		InputHandler handler = InputHandler.fromFilename(filename);
-		PushbackCharStream charStream = PushbackCharStream.make(handler);
+		InputHandler handler = InputHandler.fromMappedFile(filename);
+		CharCursor charStream = new CharCursor(handler);
 		return new LexicalAnalyzer(charStream);
 	}
 
-	public LexicalAnalyzer(PushbackCharStream input) {
+	public LexicalAnalyzer(CharCursor input) {
 		super(input);
 	}
+	
+	// reused by scanIdentifier, so that keywords never become Strings, and
+	// identifiers only the first time they are seen.
+	// No initializers: ScannerImp's constructor scans the first token before they would run.
+	private char[] identifierBuffer;
+	private int identifierLength;
 
 	
 	//////////////////////////////////////////////////////////////////////////////
@@ -28,44 +35,45 @@ public class LexicalAnalyzer extends ScannerImp implements Scanner {
 
 	@Override
 	protected Token findNextToken() {
-		LocatedChar ch = nextNonWhitespaceChar();
-		if (ch.isChar('#')) {
-			return comments(ch);
+		int ch = nextNonWhitespaceChar();
+		TextLocation location = input.location();
+		if (ch == '#') {
+			return comments(ch, location);
 		}
-		else if(ch.isDigit()) {
-			return scanNumber(ch);
+		else if(isDigit(ch)) {
+			return scanNumber(ch, location);
 		}
-		else if(ch.isLowerCase() || ch.isUpperCase()) {
-			return scanIdentifier(ch);
+		else if(isLowerCase(ch) || isUpperCase(ch)) {
+			return scanIdentifier(ch, location);
 		}
 		else if(isPunctuatorStart(ch)) {
-			if (((ch.getCharacter() == '+') || (ch.getCharacter() == '-')) && (!isLiteral()) && (!wasBracket()) && (!wasIndex()) && (!input.peek().isChar('>'))) {
-				return scanNumber(ch);
+			if (((ch == '+') || (ch == '-')) && (!isLiteral()) && (!wasBracket()) && (!wasIndex()) && (input.peek() != '>')) {
+				return scanNumber(ch, location);
 			}
-			if ((ch.getCharacter() == '.') && (input.peek().isDigit())) {
-				return scanNumber(ch);
+			if ((ch == '.') && (isDigit(input.peek()))) {
+				return scanNumber(ch, location);
 			}
-			return PunctuatorScanner.scan(ch, input);
+			return PunctuatorScanner.scan(ch, location, input);
 		}
-		else if(ch.isChar('"')) {
-			return scanString(ch);
+		else if(ch == '"') {
+			return scanString(ch, location);
 		}
-		else if(ch.isChar('^')) {
-			return scanCharacter(ch);
+		else if(ch == '^') {
+			return scanCharacter(ch, location);
 		}
 		else if(isEndOfInput(ch)) {
-			return NullToken.make(ch.getLocation());
+			return NullToken.make(location);
 		}
 		else {
-			lexicalError(ch, "invalid char");
+			lexicalError(input.locatedChar(), "invalid char");
 			return findNextToken();
 		}
 	}
 
 
-	private LocatedChar nextNonWhitespaceChar() {
-		LocatedChar ch = input.next();
-		while(ch.isWhitespace()) {
+	private int nextNonWhitespaceChar() {
+		int ch = input.next();
+		while(isWhitespace(ch)) {
 			ch = input.next();
 		}
 		return ch;
@@ -75,92 +83,101 @@ public class LexicalAnalyzer extends ScannerImp implements Scanner {
 	//////////////////////////////////////////////////////////////////////////////
 	// Integer lexical analysis	
 
-	private Token scanNumber(LocatedChar firstChar) {
+	private Token scanNumber(int firstChar, TextLocation location) {
 		StringBuffer buffer = new StringBuffer();
-		buffer.append(firstChar.getCharacter());
+		buffer.append((char)firstChar);
 		appendSubsequentDigits(buffer);
 		
 		if ((buffer.toString().contains(".")) || (buffer.toString().contains("E"))) {
-			return FloatToken.make(firstChar.getLocation(), buffer.toString());
+			return FloatToken.make(location, buffer.toString());
 		}
-		return IntToken.make(firstChar.getLocation(), buffer.toString());
+		return IntToken.make(location, buffer.toString());
 	}
 	private void appendSubsequentDigits(StringBuffer buffer) {
-		LocatedChar c = input.next();
-		while(c.isDigit()) {
-			buffer.append(c.getCharacter());
+		int c = input.next();
+		while(isDigit(c)) {
+			buffer.append((char)c);
 			c = input.next();
 		}
-		if (c.isChar('.')) {
-			LocatedChar cnext = input.peek();
-			if (cnext.isDigit()) {
+		if (c == '.') {
+			int cnext = input.peek();
+			if (isDigit(cnext)) {
 				if ((buffer.length() <= 1) && ((buffer.toString().equals("+")) || (buffer.toString().equals("-")))) {
 					buffer.append('0');
 				}
-				buffer.append(c.getCharacter());
+				buffer.append((char)c);
 				c = input.next();
 			}
 		}
-		while (c.isDigit()) {
-			buffer.append(c.getCharacter());
+		while (isDigit(c)) {
+			buffer.append((char)c);
 			c = input.next();
 		}
-		if (c.isChar('E')) {
-			LocatedChar cnext = input.peek();
-			if ((cnext.isChar('+')) || (cnext.isChar('-'))) {
-				buffer.append(c.getCharacter());
+		if (c == 'E') {
+			int cnext = input.peek();
+			if ((cnext == '+') || (cnext == '-')) {
+				buffer.append((char)c);
 				c = input.next();
 				cnext = input.peek();
-				if (cnext.isDigit()) {
-					buffer.append(c.getCharacter());
+				if (isDigit(cnext)) {
+					buffer.append((char)c);
 					c = input.next();
 				}
 				else {
-					lexicalError(c, "invalid char");
+					lexicalError(input.locatedChar(), "invalid char");
 				}
 			}
-			else if (cnext.isDigit()) {
-				buffer.append(c.getCharacter());
+			else if (isDigit(cnext)) {
+				buffer.append((char)c);
 				c = input.next();
 			}
 			else {
-				lexicalError(c, "invalid char");
+				lexicalError(input.locatedChar(), "invalid char");
 			}
 		}
-		while (c.isDigit()) {
-			buffer.append(c.getCharacter());
+		while (isDigit(c)) {
+			buffer.append((char)c);
 			c = input.next();
 		}
-		input.pushback(c);
+		input.unread();
 	}
 	
 	
 	//////////////////////////////////////////////////////////////////////////////
 	// Identifier and keyword lexical analysis	
 
-	private Token scanIdentifier(LocatedChar firstChar) {
-		StringBuffer buffer = new StringBuffer();
-		buffer.append(firstChar.getCharacter());
-		appendSubsequentLowercase(buffer);
-		if (buffer.length() > 32) {
-			lexicalError(firstChar,"identifier");
+	private Token scanIdentifier(int firstChar, TextLocation location) {
+		identifierLength = 0;
+		appendToIdentifier(firstChar);
+		appendSubsequentLowercase();
+		if (identifierLength > 32) {
+			lexicalError(new LocatedChar((char)firstChar, location),"identifier");
 		}
 
-		String lexeme = buffer.toString();
-		if(Keyword.isAKeyword(lexeme)) {
-			return LextantToken.make(firstChar.getLocation(), lexeme, Keyword.forLexeme(lexeme));
+		Keyword keyword = Keyword.forLexeme(identifierBuffer, identifierLength);
+		if(keyword != Keyword.NULL_KEYWORD) {
+			return LextantToken.make(location, keyword.getLexeme(), keyword);
 		}
 		else {
-			return IdentifierToken.make(firstChar.getLocation(), lexeme);
+			return IdentifierToken.make(location, Symbol.intern(identifierBuffer, identifierLength));
 		}
 	}
-	private void appendSubsequentLowercase(StringBuffer buffer) {
-		LocatedChar c = input.next();
-		while(c.isLowerCase() || c.isDigit() || c.isUpperCase()) {
-			buffer.append(c.getCharacter());
+	private void appendSubsequentLowercase() {
+		int c = input.next();
+		while(isLowerCase(c) || isDigit(c) || isUpperCase(c)) {
+			appendToIdentifier(c);
 			c = input.next();
 		}
-		input.pushback(c);
+		input.unread();
+	}
+	private void appendToIdentifier(int c) {
+		if(identifierBuffer == null) {
+			identifierBuffer = new char[64];
+		}
+		if(identifierLength == identifierBuffer.length) {
+			identifierBuffer = Arrays.copyOf(identifierBuffer, identifierLength * 2);
+		}
+		identifierBuffer[identifierLength++] = (char)c;
 	}
 	
 	
@@ -201,13 +218,26 @@ public class LexicalAnalyzer extends ScannerImp implements Scanner {
 	//////////////////////////////////////////////////////////////////////////////
 	// Character-classification routines specific to Pika scanning.	
 
-	private boolean isPunctuatorStart(LocatedChar lc) {
-		char c = lc.getCharacter();
+	private boolean isPunctuatorStart(int c) {
 		return isPunctuatorStartingCharacter(c);
 	}
 
-	private boolean isEndOfInput(LocatedChar lc) {
-		return lc == LocatedCharStream.FLAG_END_OF_INPUT;
+	private boolean isEndOfInput(int c) {
+		return c == CharCursor.END_OF_INPUT;
+	}
+	
+	// as in LocatedChar.  Character's int methods are false for END_OF_INPUT.
+	private static boolean isLowerCase(int c) {
+		return Character.isLowerCase(c) || (c == '_');
+	}
+	private static boolean isUpperCase(int c) {
+		return Character.isUpperCase(c);
+	}
+	private static boolean isDigit(int c) {
+		return Character.isDigit(c);
+	}
+	private static boolean isWhitespace(int c) {
+		return Character.isWhitespace(c);
 	}
 	
 	
@@ -225,58 +255,58 @@ public class LexicalAnalyzer extends ScannerImp implements Scanner {
 	}
 	
 	//dealing with comments
-	private Token comments(LocatedChar ch) {
+	private Token comments(int ch, TextLocation location) {
 		StringBuffer buffer = new StringBuffer();
-		buffer.append(ch.getCharacter());
+		buffer.append((char)ch);
 		appendcomment(buffer);
-		return CommentToken.make(ch.getLocation(), buffer.toString());
+		return CommentToken.make(location, buffer.toString());
 	}
 
 	private void appendcomment(StringBuffer buffer) {
-		LocatedChar c = input.next();
-		while (!c.isChar('#') && !c.isChar('\n')) {
-			buffer.append(c.getCharacter());
+		int c = input.next();
+		while ((c != '#') && (c != '\n')) {
+			buffer.append((char)c);
 			c = input.next();
 		}
 	}
 	
 	//dealing with string constants;
-	private Token scanString(LocatedChar ch) {
+	private Token scanString(int ch, TextLocation location) {
 		StringBuffer buffer = new StringBuffer();
-		buffer.append(ch.getCharacter());
+		buffer.append((char)ch);
 		appendString(buffer);
-		return StringToken.make(ch.getLocation(), buffer.toString());
+		return StringToken.make(location, buffer.toString());
 	}
 	
 	private void appendString(StringBuffer buffer) {
-		LocatedChar c = input.next();
-		while (!c.isChar('"')) {
-			buffer.append(c.getCharacter());
+		int c = input.next();
+		while (c != '"') {
+			buffer.append((char)c);
 			c = input.next();
-			if (c.isChar('\n')) {
-				lexicalError(c, "invalid character");
+			if (c == '\n') {
+				lexicalError(input.locatedChar(), "invalid character");
 			}
 		}
-		buffer.append(c.getCharacter());
+		buffer.append((char)c);
 	}
 	
 	//dealing with characters ^a^
-	private Token scanCharacter(LocatedChar ch) {
+	private Token scanCharacter(int ch, TextLocation location) {
 		StringBuffer buffer = new StringBuffer();
-		buffer.append(ch.getCharacter());
+		buffer.append((char)ch);
 		appendCharacter(buffer);
-		return CharacterToken.make(ch.getLocation(), buffer.toString());
+		return CharacterToken.make(location, buffer.toString());
 	}
 	
 	private void appendCharacter(StringBuffer buffer) {
-		LocatedChar c = input.next();
-		if ((c.getCharacter() < 32) || (c.getCharacter() > 126)) {
-			lexicalError(c, "invalid char");
+		int c = input.next();
+		if ((c < 32) || (c > 126)) {
+			lexicalError(input.locatedChar(), "invalid char");
 		}
 		else {
-			buffer.append(c.getCharacter());
+			buffer.append((char)c);
 			c = input.next();
-			buffer.append(c.getCharacter());
+			buffer.append((char)c);
 		}
 	}
 }
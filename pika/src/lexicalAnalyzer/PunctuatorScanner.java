@@ -1,61 +1,47 @@
 package lexicalAnalyzer;
 
-import static lexicalAnalyzer.PunctuatorScanningAids.punctuatorSetForPrefix;
-import inputHandler.LocatedChar;
-import inputHandler.PushbackCharStream;
-
-import java.util.Set;
-
+import static lexicalAnalyzer.PunctuatorScanningAids.*;
+import inputHandler.CharCursor;
+import inputHandler.TextLocation;
+import tokens.LextantToken;
+import tokens.NullToken;
 import tokens.Token;
 
 /** Algorithm object to scan to find a punctuator.  Invoke only on a character that can start a punctuator lexeme.
  * <p>
- *  PunctuatorScanner will grab input characters as long as it as seen a punctuator lexeme prefix.
- *  If it discovers that it has taken input that is not such a prefix, it backtracks (possibly multiple
- *  characters) until it matches a punctuator.  
+ *  PunctuatorScanner runs the punctuator DFA over input characters for as long as it has a transition,
+ *  remembering the last accepting state.  It then backs the input up to just after that state's lexeme
+ *  (maximal munch).
  * <p>
  *  If it cannot find a punctuator starting with the given starting character, it returns a NullToken at the
  *  startingCharacter's location. 
  * <p>
  *  PunctuatorScanner uses information derived from the lexeme fields of the enum constants of Punctuator,
  *  and should work regardless of what the set of constants in Punctuator is.
- *  Part of derived information is in PunctuatorScanningAids.java, part is in Punctuator itself.
+ *  The derived automaton is in PunctuatorScanningAids.java.
  */
 public class PunctuatorScanner {
-	private PushbackCharStream input;
-	private PartiallyScannedPunctuator scanned;
-	
-	public static Token scan(LocatedChar startingCharacter, PushbackCharStream input) {
-		PunctuatorScanner scanner = new PunctuatorScanner(startingCharacter, input);
-		return scanner.scanPunctuator();
-	}
-	
-	private PunctuatorScanner(LocatedChar startingCharacter, PushbackCharStream input) {
-		this.input = input;
-		
-		scanned = new PartiallyScannedPunctuator(startingCharacter);
-	}
-	
-	private Token scanPunctuator() {
-		Set<Punctuator> punctuators = punctuatorSetForPrefix(scanned.asString());
+	public static Token scan(int startingCharacter, TextLocation location, CharCursor input) {
+		int state = transition(START, startingCharacter);
+		int length = 1;
+		Punctuator punctuator = accepted(state);
+		int punctuatorLength = (punctuator == null) ? 0 : 1;
 		
-		if(punctuators.size() < 1 && scanned.isPunctuator()) {
-			return scanned.asToken();
+		for(int next = transition(state, input.next()); next != NO_STATE; next = transition(state, input.next())) {
+			state = next;
+			length++;
+			if(accepted(state) != null) {
+				punctuator = accepted(state);
+				punctuatorLength = length;
+			}
 		}
-		
-		if(punctuators.isEmpty() || !input.hasNext()) {
-			backupToLastPunctuatorPrefix();
-			return scanned.asToken();
+		for(int i = punctuatorLength; i <= length; i++) {		// the characters read past the lexeme, and the one that stopped the DFA
+			input.unread();
 		}
 		
-		scanned.add(input.next());
-		return scanPunctuator();
-	}
-
-	private void backupToLastPunctuatorPrefix() {
-		while(!scanned.isPunctuator() && !scanned.isEmpty()) {
-			LocatedChar lc = scanned.chopTail();
-			input.pushback(lc);
+		if(punctuator == null) {
+			return NullToken.make(location);
 		}
+		return LextantToken.make(location, punctuator.getLexeme(), punctuator);
 	}
 }
@@ -1,108 +1,77 @@
 package lexicalAnalyzer;
 
-import java.util.Collections;
-import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.Arrays;
 
 
+// A DFA recognizing the punctuator lexemes, derived from Punctuator.values().
+// The states are the nonempty prefixes of the lexemes, plus START for the
+// empty prefix; a state accepts if its prefix is a whole lexeme.  Lexemes
+// are ASCII, so each state has one row of ALPHABET_SIZE transitions.
 public class PunctuatorScanningAids {
-	private static Set<Character> punctuatorStartingCharacters = new HashSet<Character>();
-	private static Map<String, Set<Punctuator>> punctuatorsHavingPrefix = new HashMap<String, Set<Punctuator>>();
-	private static final Set<Punctuator> emptyPunctuatorSet = Collections.unmodifiableSet(EnumSet.noneOf(Punctuator.class));
+	public static final int START = 0;
+	public static final int NO_STATE = -1;
+	private static final int ALPHABET_SIZE = 128;
+
+	private static int[] transitions;			// row per state: transitions[state * ALPHABET_SIZE + c]
+	private static Punctuator[] accepting;		// null where the state accepts nothing
+	private static int stateCount;
 	static {
-		makeStartingCharacters();
-		makePunctuatorsHavingPrefix();
+		makeAutomaton();
 	}
 
 	//////////////////////////////////////////////////////////////////////////////
 	// public static interface
-	
-	public static boolean isPunctuatorStartingCharacter(Character c) {
-		return punctuatorStartingCharacters.contains(c);
-	}
 
-	public static Set<Punctuator> punctuatorSetForPrefix(String prefix) {
-		if(punctuatorsHavingPrefix.containsKey(prefix)) {
-			return punctuatorsHavingPrefix.get(prefix);
-		}
-		else {
-			return emptyPunctuatorSet;
+	public static boolean isPunctuatorStartingCharacter(int c) {
+		return transition(START, c) != NO_STATE;
+	}
+	/** The state reached from state on character c, or NO_STATE. */
+	public static int transition(int state, int c) {
+		if(c < 0 || c >= ALPHABET_SIZE) {
+			return NO_STATE;
 		}
+		return transitions[state * ALPHABET_SIZE + c];
+	}
+	/** The punctuator whose lexeme leads to state, or null if there is none. */
+	public static Punctuator accepted(int state) {
+		return accepting[state];
 	}
 
 	//////////////////////////////////////////////////////////////////////////////
-	// creation of startingCharacters
+	// creation of the automaton
 
-	static private void makeStartingCharacters() {
+	private static void makeAutomaton() {
+		int maxStates = 1;
 		for(Punctuator p: Punctuator.values()) {
-			String lexeme = p.getLexeme();
-			if(!lexeme.isEmpty()) {
-				punctuatorStartingCharacters.add(lexeme.charAt(0));
-			}
+			maxStates += p.getLexeme().length();
 		}
-		punctuatorStartingCharacters = Collections.unmodifiableSet(punctuatorStartingCharacters);
-	}
-	
-	
-	//////////////////////////////////////////////////////////////////////////////
-	// creation of prefix map
+		transitions = new int[maxStates * ALPHABET_SIZE];
+		accepting = new Punctuator[maxStates];
+		Arrays.fill(transitions, NO_STATE);
+		stateCount = 1;
 
-	private static void makePunctuatorsHavingPrefix() {
 		for(Punctuator p: Punctuator.values()) {
-			addAllPrefixesToMap(p);
+			addLexeme(p);
 		}
-		makeAllMapEntriesconstutable();
 	}
-	private static void addAllPrefixesToMap(Punctuator punctuator) {
+	private static void addLexeme(Punctuator punctuator) {
 		String lexeme = punctuator.getLexeme();
-		
-		for(String prefix: allNonemptyPrefixes(lexeme)) {
-			addPrefixToMap(prefix.intern(), punctuator);
-		}
-	}
-
-	private static void addPrefixToMap(String prefix, Punctuator punctuator) {
-		Set<Punctuator> setForThisPrefix = mutablePunctuatorSetForPrefix(prefix);
-		setForThisPrefix.add(punctuator);
-	}
-	private static Set<Punctuator> mutablePunctuatorSetForPrefix(String prefix) {
-		if(punctuatorsHavingPrefix.containsKey(prefix)) {
-			return punctuatorsHavingPrefix.get(prefix);
-		}
-		else {
-			EnumSet<Punctuator> emptySet = EnumSet.noneOf(Punctuator.class);
-			punctuatorsHavingPrefix.put(prefix, emptySet);
-			return emptySet;
+		if(lexeme.isEmpty()) {
+			return;
 		}
-	}
-
-	
-	private static void makeAllMapEntriesconstutable() {
-		for(Entry<String, Set<Punctuator>> entry: punctuatorsHavingPrefix.entrySet()) {
-			replaceValueWithconstutableValue(entry);
+		int state = START;
+		for(int i = 0; i < lexeme.length(); i++) {
+			char c = lexeme.charAt(i);
+			assert c < ALPHABET_SIZE;
+			int next = transitions[state * ALPHABET_SIZE + c];
+			if(next == NO_STATE) {
+				next = stateCount++;
+				transitions[state * ALPHABET_SIZE + c] = next;
+			}
+			state = next;
 		}
-	}
-	private static void replaceValueWithconstutableValue(Entry<String, Set<Punctuator>> entry) {
-		Set<Punctuator> value = entry.getValue();
-		Set<Punctuator> unmodifiableSet = Collections.unmodifiableSet(value);
-		entry.setValue(unmodifiableSet);
-	}
-	
-	
-	//////////////////////////////////////////////////////////////////////////////
-	// string utility
-
-	private static String[] allNonemptyPrefixes(String string) {
-		String[] result = new String[string.length()];
-		
-		for(int length = 1; length <= string.length(); length++) {
-			result[length-1] = string.substring(0, length);
+		if(accepting[state] == null) {
+			accepting[state] = punctuator;
 		}
-		return result;
 	}
-	
 }
@@ -1,15 +1,15 @@
 package lexicalAnalyzer;
 
-import inputHandler.PushbackCharStream;
+import inputHandler.CharCursor;
 import tokens.*;
 
 public abstract class ScannerImp implements Scanner {
 	private Token nextToken;
-	protected final PushbackCharStream input;
+	protected final CharCursor input;
 	
 	protected abstract Token findNextToken();
 
-	public ScannerImp(PushbackCharStream input) {
+	public ScannerImp(CharCursor input) {
 		super();
 		this.input = input;
 		nextToken = findNextToken();
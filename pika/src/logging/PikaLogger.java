@@ -47,6 +47,10 @@ public class PikaLogger {
 	public void severe(String message) {
 		log(Level.SEVERE, message);
 	}
+	// warnings are not counted: hasErrors() is only about errors.
+	public void warning(String message) {
+		logger.log(Level.WARNING, message);
+	}
 	private void incrementNumMessages() {
 		numMessages++;
 		if(numMessages >= maxMessagesBeforeQuit) {
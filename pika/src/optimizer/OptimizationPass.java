@@ -0,0 +1,13 @@
+package optimizer;
+
+import asmCodeGenerator.codeStorage.ASMCodeChunk;
+
+// one transformation of the instruction sequence.  The Optimizer runs its passes
+// repeatedly until none of them reports a change.
+public interface OptimizationPass {
+	/** Rewrite the given instructions in place.
+	 * @param code the whole program, in order
+	 * @return true if anything was changed
+	 */
+	public boolean optimize(ASMCodeChunk code);
+}
@@ -1,22 +1,49 @@
 package optimizer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import optimizer.deadCode.DeadCodePass;
+import optimizer.peephole.PeepholePass;
+import asmCodeGenerator.codeStorage.ASMCodeChunk;
 import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.runtime.RunTime;
 
 public class Optimizer {
 	private ASMCodeFragment fragment;
-	
+	private List<OptimizationPass> passes;
+
 	public static ASMCodeFragment optimize(ASMCodeFragment fragment) {
 		Optimizer optimizer = new Optimizer(fragment);
 		return optimizer.optimize();
 	}
 	public Optimizer(ASMCodeFragment fragment) {
+		this(fragment, standardPasses());
+	}
+	public Optimizer(ASMCodeFragment fragment, List<OptimizationPass> passes) {
 		this.fragment = fragment;
+		this.passes = passes;
+	}
+	private static List<OptimizationPass> standardPasses() {
+		List<OptimizationPass> result = new ArrayList<OptimizationPass>();
+		result.add(PeepholePass.standard());
+		result.add(new DeadCodePass(Arrays.asList(RunTime.EAT_LOCATION_ZERO)));	// keeps address 0 out of use.
+		return result;
 	}
-	
+
+	// run every pass, over and over, until a full round changes nothing.
+	// The passes all rewrite the same chunk in place.
 	public ASMCodeFragment optimize() {
+		ASMCodeChunk code = fragment.toChunk();
 
-		return fragment;
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			for(OptimizationPass pass: passes) {
+				changed |= pass.optimize(code);
+			}
+		}
+		return ASMCodeFragment.fromChunk(fragment.getCodeType(), code);
 	}
 }
-
-
@@ -0,0 +1,179 @@
+package optimizer.deadCode;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import optimizer.OptimizationPass;
+import asmCodeGenerator.codeStorage.ASMCodeChunk;
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.BasicBlock;
+import asmCodeGenerator.codeStorage.ControlFlowGraph;
+
+// Removes code that can't be reached from the first instruction, and data that
+// nothing live refers to.
+//
+// Code is live if control can reach it from the entry block, or if its Label is
+// named by a PushD or DataD in live code or data (it may then be the target of
+// a JumpV or CallV).
+// Data comes in groups: a DLabel (or several) and the data directives right after
+// it.  A group is live if its DLabel is named by live code or data, or by one of the
+// root labels given to the constructor.  Data directives with no DLabel in front of
+// them can't be referred to, but are kept, since code may depend on the space.
+//
+// The blocks come from a ControlFlowGraph built over the chunk, and the chunk
+// is compacted in place.
+public class DeadCodePass implements OptimizationPass {
+	private static final int NONE = -1;
+
+	private Collection<String> rootLabels;
+	private ASMCodeChunk code;
+	private ControlFlowGraph graph;
+
+	// data group g is the directives from groupStarts[g] up to groupEnds[g].
+	private int[] groupOf;			// for each instruction; NONE for code
+	private int[] groupStarts;
+	private int[] groupEnds;
+	private boolean[] groupLabelled;
+	private int groupCount;
+	private Map<String, Integer> groupsByLabel;
+
+	private Set<BasicBlock> liveBlocks;
+	private boolean[] liveGroups;
+	private LinkedList<BasicBlock> blockWorklist;
+
+	public DeadCodePass(Collection<String> rootLabels) {
+		this.rootLabels = rootLabels;
+	}
+
+	public boolean optimize(ASMCodeChunk code) {
+		this.code = code;
+		graph = ControlFlowGraph.build(code);
+		findDataGroups();
+		findLiveCodeAndData();
+
+		int size = code.size();
+		int write = 0;
+		for(BasicBlock block: graph.getBlocks()) {
+			for(int read = block.getStart(); read < block.getEnd(); read++) {
+				if(isLive(read, block)) {
+					if(write != read) {
+						code.move(read, write);
+					}
+					write++;
+				}
+			}
+		}
+		code.truncate(write);
+		return write != size;
+	}
+	private boolean isLive(int index, BasicBlock block) {
+		int group = groupOf[index];
+		if(group == NONE) {
+			return liveBlocks.contains(block);
+		}
+		return !groupLabelled[group] || liveGroups[group];
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// data groups
+
+	private void findDataGroups() {
+		int size = code.size();
+		groupOf = new int[size];
+		groupStarts = new int[size];
+		groupEnds = new int[size];
+		groupLabelled = new boolean[size];
+		groupCount = 0;
+		groupsByLabel = new HashMap<String, Integer>();
+
+		int current = NONE;
+		boolean currentHasData = false;
+		for(int i = 0; i < size; i++) {
+			ASMOpcode opcode = code.getOpcode(i);
+			if(!opcode.isDataDirective()) {
+				groupOf[i] = NONE;
+				current = NONE;
+				continue;
+			}
+			if(current == NONE || (opcode == ASMOpcode.DLabel && currentHasData)) {
+				current = groupCount++;
+				groupStarts[current] = i;
+				currentHasData = false;
+			}
+			groupOf[i] = current;
+			groupEnds[current] = i+1;
+			if(opcode == ASMOpcode.DLabel) {
+				groupLabelled[current] = true;
+				groupsByLabel.put(code.getStringOperand(i), current);
+			}
+			else {
+				currentHasData = true;
+			}
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// liveness
+
+	private void findLiveCodeAndData() {
+		liveBlocks = new HashSet<BasicBlock>();
+		liveGroups = new boolean[groupCount];
+		blockWorklist = new LinkedList<BasicBlock>();
+
+		if(graph.getEntry() != null) {
+			markBlock(graph.getEntry());
+		}
+		for(String label: rootLabels) {
+			markLabel(label);
+		}
+		for(int group = 0; group < groupCount; group++) {
+			if(!groupLabelled[group]) {
+				markGroup(group);
+			}
+		}
+
+		while(!blockWorklist.isEmpty()) {
+			BasicBlock block = blockWorklist.removeFirst();
+			for(BasicBlock successor: block.getSuccessors()) {
+				markBlock(successor);
+			}
+			for(int i = block.getStart(); i < block.getEnd(); i++) {
+				if(code.getOpcode(i) == ASMOpcode.PushD) {
+					markLabel(code.getStringOperand(i));
+				}
+			}
+		}
+	}
+	private void markLabel(String label) {
+		BasicBlock block = graph.blockLabelled(label);
+		if(block != null) {
+			markBlock(block);
+		}
+		Integer group = groupsByLabel.get(label);
+		if(group != null) {
+			markGroup(group);
+		}
+	}
+	private void markBlock(BasicBlock block) {
+		if(liveBlocks.add(block)) {
+			blockWorklist.add(block);
+		}
+	}
+	private void markGroup(int group) {
+		if(liveGroups[group]) {
+			return;
+		}
+		liveGroups[group] = true;
+		for(int i = groupStarts[group]; i < groupEnds[group]; i++) {
+			if(code.getOpcode(i) == ASMOpcode.DataD) {
+				markLabel(code.getStringOperand(i));
+			}
+		}
+	}
+}
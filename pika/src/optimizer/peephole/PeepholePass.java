@@ -0,0 +1,71 @@
+package optimizer.peephole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import optimizer.OptimizationPass;
+import asmCodeGenerator.codeStorage.ASMCodeChunk;
+import asmCodeGenerator.codeStorage.ASMInstruction;
+
+// one left-to-right sweep over the program, trying every rule at every position.
+// When a rule matches, its replacement is emitted and the sweep continues after
+// the window, so a single sweep never rewrites its own output; the Optimizer
+// repeats the pass until it stops changing things.
+// The sweep compacts the chunk as it goes: no rule's replacement is longer than
+// its window, so the instructions written never overtake the ones still to be read.
+public class PeepholePass implements OptimizationPass {
+	private List<PeepholeRule> rules;
+	private int read;		// the next instruction to look at
+	private int write;		// where the next instruction kept goes
+
+	public static PeepholePass standard() {
+		List<PeepholeRule> rules = new ArrayList<PeepholeRule>();
+		rules.addAll(Arrays.asList(StandardPeepholeRule.values()));
+		return new PeepholePass(rules);
+	}
+	public PeepholePass(List<PeepholeRule> rules) {
+		this.rules = rules;
+	}
+
+	public boolean optimize(ASMCodeChunk code) {
+		boolean changed = false;
+		read = 0;
+		write = 0;
+		while(read < code.size()) {
+			if(applyFirstMatchingRule(code)) {
+				changed = true;
+			}
+			else {
+				if(write != read) {
+					code.move(read, write);
+				}
+				read++;
+				write++;
+			}
+		}
+		code.truncate(write);
+		return changed;
+	}
+
+	// if a rule applies to the window at read, writes its replacement at write,
+	// moves both past it and returns true.
+	private boolean applyFirstMatchingRule(ASMCodeChunk code) {
+		for(PeepholeRule rule: rules) {
+			int size = rule.windowSize();
+			if(read + size > code.size()) {
+				continue;
+			}
+			List<ASMInstruction> replacement = rule.rewrite(code, read);
+			if(replacement != null) {
+				assert replacement.size() <= size : rule;
+				for(ASMInstruction instruction: replacement) {
+					code.set(write++, instruction);
+				}
+				read += size;
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,19 @@
+package optimizer.peephole;
+
+import java.util.List;
+
+import asmCodeGenerator.codeStorage.ASMCodeChunk;
+import asmCodeGenerator.codeStorage.ASMInstruction;
+
+// a pattern over a fixed-size window of consecutive instructions.
+public interface PeepholeRule {
+	public int windowSize();
+	
+	/** Returns the instructions that should replace the window, or null if this
+	 *  rule does not apply to it.  An empty list deletes the window.
+	 *  Rules read the window straight from the chunk, so nothing is made unless they match.
+	 * @param code the program
+	 * @param index the start of the window; there are at least windowSize() instructions from here
+	 */
+	public List<ASMInstruction> rewrite(ASMCodeChunk code, int index);
+}
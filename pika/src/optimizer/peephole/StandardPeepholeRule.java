@@ -0,0 +1,216 @@
+package optimizer.peephole;
+
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import asmCodeGenerator.codeStorage.ASMCodeChunk;
+import asmCodeGenerator.codeStorage.ASMInstruction;
+import asmCodeGenerator.codeStorage.ASMOpcode;
+
+// The rules every optimization run uses.  Each rule only removes instructions or
+// replaces them with cheaper ones, so repeated application always terminates.
+public enum StandardPeepholeRule implements PeepholeRule {
+	// [... ] Nop -> [... ]		(the emulator rejects Nop, so this one is also a correctness fix.)
+	NOP_REMOVAL(1) {
+		@Override
+		public List<ASMInstruction> rewrite(ASMCodeChunk code, int index) {
+			if(is(code, index, Nop)) {
+				return nothing();
+			}
+			return null;
+		}
+	},
+
+	// PushI/PushF/PushD/Duplicate followed by Pop -> nothing
+	PUSH_POP_CANCELLATION(2) {
+		@Override
+		public List<ASMInstruction> rewrite(ASMCodeChunk code, int index) {
+			if(is(code, index, PushI, PushF, PushD, Duplicate, Memtop) && is(code, index+1, Pop)) {
+				return nothing();
+			}
+			return null;
+		}
+	},
+
+	// Exchange Exchange -> nothing
+	EXCHANGE_EXCHANGE(2) {
+		@Override
+		public List<ASMInstruction> rewrite(ASMCodeChunk code, int index) {
+			if(is(code, index, Exchange) && is(code, index+1, Exchange)) {
+				return nothing();
+			}
+			return null;
+		}
+	},
+
+	// Duplicate Exchange -> Duplicate		(swapping two equal values)
+	DUPLICATE_EXCHANGE(2) {
+		@Override
+		public List<ASMInstruction> rewrite(ASMCodeChunk code, int index) {
+			if(is(code, index, Duplicate) && is(code, index+1, Exchange)) {
+				return instructions(code.get(index));
+			}
+			return null;
+		}
+	},
+
+	// PushD x  Exchange  StoreI  PushD x  LoadI  ->  Duplicate  PushD x  Exchange  StoreI
+	// i.e. Macros.storeITo(x) followed by Macros.loadIFrom(x).  Also for PushI addresses and floats.
+	// (not for StoreC/LoadC: StoreC truncates to 8 bits.)
+	STORE_LOAD_FORWARDING(5) {
+		@Override
+		public List<ASMInstruction> rewrite(ASMCodeChunk code, int index) {
+			int address = index;
+			int store   = index+2;
+			int reload  = index+3;
+			int load    = index+4;
+
+			if(!is(code, address, PushD, PushI) || !is(code, index+1, Exchange)) {
+				return null;
+			}
+			if(!sameInstruction(code, address, reload)) {
+				return null;
+			}
+			if((is(code, store, StoreI) && is(code, load, LoadI)) || (is(code, store, StoreF) && is(code, load, LoadF))) {
+				return instructions(new ASMInstruction(Duplicate), code.get(address), code.get(index+1), code.get(store));
+			}
+			return null;
+		}
+	},
+
+	// PushI a  PushI b  op  ->  PushI (a op b)
+	// (floats are not folded: PushF operands are printed with %g, so a folded result would lose digits.)
+	CONSTANT_FOLDING(3) {
+		@Override
+		public List<ASMInstruction> rewrite(ASMCodeChunk code, int index) {
+			ASMOpcode operator = code.getOpcode(index+2);
+
+			if(is(code, index, PushI) && is(code, index+1, PushI)) {
+				int a = code.getIntOperand(index);
+				int b = code.getIntOperand(index+1);
+				switch(operator) {
+				case Add:		return instructions(new ASMInstruction(PushI, a + b));
+				case Subtract:	return instructions(new ASMInstruction(PushI, a - b));
+				case Multiply:	return instructions(new ASMInstruction(PushI, a * b));
+				case Divide:	return (b == 0) ? null : instructions(new ASMInstruction(PushI, a / b));
+				case Remainder:	return (b == 0) ? null : instructions(new ASMInstruction(PushI, a % b));
+				default:		return null;
+				}
+			}
+			return null;
+		}
+	},
+
+	// PushI a  Negate  ->  PushI -a,   PushF a  FNegate  ->  PushF -a
+	UNARY_FOLDING(2) {
+		@Override
+		public List<ASMInstruction> rewrite(ASMCodeChunk code, int index) {
+			if(is(code, index, PushI) && is(code, index+1, Negate)) {
+				return instructions(new ASMInstruction(PushI, -code.getIntOperand(index)));
+			}
+			if(is(code, index, PushF) && is(code, index+1, FNegate)) {
+				return instructions(new ASMInstruction(PushF, -code.getFloatOperand(index)));
+			}
+			return null;
+		}
+	},
+
+	// PushI 0  Add  ->  nothing,  PushI 0  Subtract  ->  nothing,  PushI 1  Multiply  ->  nothing
+	IDENTITY_ELIMINATION(2) {
+		@Override
+		public List<ASMInstruction> rewrite(ASMCodeChunk code, int index) {
+			if(!is(code, index, PushI)) {
+				return null;
+			}
+			int value = code.getIntOperand(index);
+			if(value == 0 && is(code, index+1, Add, Subtract)) {
+				return nothing();
+			}
+			if(value == 1 && is(code, index+1, Multiply, Divide)) {
+				return nothing();
+			}
+			return null;
+		}
+	},
+
+	// PushI a  Add  PushI b  Add  ->  PushI (a+b)  Add		(chains of Macros.readIOffset and friends)
+	OFFSET_COMBINING(4) {
+		@Override
+		public List<ASMInstruction> rewrite(ASMCodeChunk code, int index) {
+			if(is(code, index, PushI) && is(code, index+1, Add) &&
+			   is(code, index+2, PushI) && is(code, index+3, Add)) {
+				int sum = code.getIntOperand(index) + code.getIntOperand(index+2);
+				return instructions(new ASMInstruction(PushI, sum), code.get(index+1));
+			}
+			return null;
+		}
+	},
+
+	// Jump L  Label L  ->  Label L;    JumpFalse L  Label L  ->  Pop  Label L   (etc.)
+	JUMP_TO_NEXT(2) {
+		@Override
+		public List<ASMInstruction> rewrite(ASMCodeChunk code, int index) {
+			int jump  = index;
+			int label = index+1;
+
+			if(!is(code, label, Label) || !code.getOpcode(jump).isLabelJump()) {
+				return null;
+			}
+			if(!code.getStringOperand(jump).equals(code.getStringOperand(label))) {
+				return null;
+			}
+			if(is(code, jump, Jump)) {
+				return instructions(code.get(label));
+			}
+			return instructions(new ASMInstruction(Pop), code.get(label));	// conditional jumps still consume their operand.
+		}
+	};
+
+
+	private int windowSize;
+
+	private StandardPeepholeRule(int windowSize) {
+		this.windowSize = windowSize;
+	}
+	public int windowSize() {
+		return windowSize;
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// helpers for the rules
+
+	private static boolean is(ASMCodeChunk code, int index, ASMOpcode ...opcodes) {
+		ASMOpcode actual = code.getOpcode(index);
+		for(ASMOpcode opcode: opcodes) {
+			if(actual == opcode) {
+				return true;
+			}
+		}
+		return false;
+	}
+	// same opcode and operand.  Only asked of PushI and PushD.
+	private static boolean sameInstruction(ASMCodeChunk code, int a, int b) {
+		ASMOpcode opcode = code.getOpcode(a);
+		if(opcode != code.getOpcode(b)) {
+			return false;
+		}
+		if(opcode.takesInteger()) {
+			return code.getIntOperand(a) == code.getIntOperand(b);
+		}
+		return code.getStringOperand(a).equals(code.getStringOperand(b));
+	}
+	private static List<ASMInstruction> nothing() {
+		return Collections.emptyList();
+	}
+	private static List<ASMInstruction> instructions(ASMInstruction ...instructions) {
+		List<ASMInstruction> result = new ArrayList<ASMInstruction>(instructions.length);
+		for(ASMInstruction instruction: instructions) {
+			result.add(instruction);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,143 @@
+package optimizer.tests;
+
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import optimizer.Optimizer;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMInstruction;
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.ASMCodeFragment.CodeType;
+
+public class TestOptimizer extends TestCase {
+
+	public void testPushPopCancellation() {
+		ASMCodeFragment code = fragment();
+		code.add(PushI, 3);
+		code.add(PushI, 5);
+		code.add(Pop);
+		code.add(Halt);
+
+		assertOpcodes(Optimizer.optimize(code), PushI, Halt);
+	}
+	public void testConstantFoldingChains() {
+		ASMCodeFragment code = fragment();
+		code.add(PushI, 2);
+		code.add(PushI, 3);
+		code.add(Add);
+		code.add(PushI, 4);
+		code.add(Multiply);
+		code.add(Halt);
+
+		List<ASMInstruction> result = Optimizer.optimize(code).instructions();
+		assertEquals(2, result.size());
+		assertEquals(20, result.get(0).getIntArgument());
+	}
+	public void testDivisionByZeroIsNotFolded() {
+		ASMCodeFragment code = fragment();
+		code.add(PushI, 2);
+		code.add(PushI, 0);
+		code.add(Divide);
+
+		assertOpcodes(Optimizer.optimize(code), PushI, PushI, Divide);
+	}
+	public void testStoreLoadForwarding() {
+		ASMCodeFragment code = fragment();
+		code.add(PushI, 7);
+		code.add(PushD, "x");
+		code.add(Exchange);
+		code.add(StoreI);
+		code.add(PushD, "x");
+		code.add(LoadI);
+
+		assertOpcodes(Optimizer.optimize(code), PushI, Duplicate, PushD, Exchange, StoreI);
+	}
+	public void testCharStoresAreNotForwarded() {
+		ASMCodeFragment code = fragment();
+		code.add(PushD, "x");
+		code.add(Exchange);
+		code.add(StoreC);
+		code.add(PushD, "x");
+		code.add(LoadC);
+
+		assertOpcodes(Optimizer.optimize(code), PushD, Exchange, StoreC, PushD, LoadC);
+	}
+	public void testOffsetCombining() {
+		ASMCodeFragment code = fragment();
+		code.add(PushD, "record");
+		code.add(PushI, 4);
+		code.add(Add);
+		code.add(PushI, 8);
+		code.add(Add);
+		code.add(LoadI);
+
+		List<ASMInstruction> result = Optimizer.optimize(code).instructions();
+		assertOpcodes(result, PushD, PushI, Add, LoadI);
+		assertEquals(12, result.get(1).getIntArgument());
+	}
+	public void testJumpToNext() {
+		ASMCodeFragment code = fragment();
+		code.add(Jump, "here");
+		code.add(Label, "here");
+		code.add(PushI, 1);
+		code.add(JumpFalse, "there");
+		code.add(Label, "there");
+		code.add(Halt);
+
+		assertOpcodes(Optimizer.optimize(code), Label, Label, Halt);
+	}
+	public void testExchangeExchangeAndNop() {
+		ASMCodeFragment code = fragment();
+		code.add(Exchange);
+		code.add(Nop);
+		code.add(Exchange);
+		code.add(Halt);
+
+		assertOpcodes(Optimizer.optimize(code), Halt);
+	}
+
+	public void testUnreachableSubroutineAndItsDataAreRemoved() {
+		ASMCodeFragment code = fragment();
+		code.add(DLabel, "format");
+		code.add(DataS, "%d");
+		code.add(Jump, "main");
+		code.add(Label, "unused");
+		code.add(DLabel, "unused-local");
+		code.add(DataI, 0);
+		code.add(Return);
+		code.add(Label, "main");
+		code.add(PushI, 3);
+		code.add(PushD, "format");
+		code.add(Printf);
+		code.add(Halt);
+
+		assertOpcodes(Optimizer.optimize(code), DLabel, DataS, Label, PushI, PushD, Printf, Halt);	// Jump main now jumps to next.
+	}
+	public void testAddressTakenCodeIsKept() {
+		ASMCodeFragment code = fragment();
+		code.add(PushD, "target");
+		code.add(JumpV);
+		code.add(Label, "target");
+		code.add(Halt);
+		code.add(Label, "dead");
+		code.add(Halt);
+
+		assertOpcodes(Optimizer.optimize(code), PushD, JumpV, Label, Halt);
+	}
+
+
+	private ASMCodeFragment fragment() {
+		return new ASMCodeFragment(CodeType.GENERATES_VOID);
+	}
+	private void assertOpcodes(ASMCodeFragment fragment, ASMOpcode ...expected) {
+		assertOpcodes(fragment.instructions(), expected);
+	}
+	private void assertOpcodes(List<ASMInstruction> instructions, ASMOpcode ...expected) {
+		assertEquals(expected.length, instructions.size());
+		for(int i=0; i<expected.length; i++) {
+			assertEquals(expected[i], instructions.get(i).getOpcode());
+		}
+	}
+}
@@ -3,12 +3,14 @@ package parseTree;
 import java.util.ArrayList;
 import java.util.List;
 
+import lexicalAnalyzer.Lextant;
 import semanticAnalyzer.types.PrimitiveType;
 import semanticAnalyzer.types.Type;
 import semanticAnalyzer.types.TypeVariable;
 import symbolTable.Binding;
 import symbolTable.Scope;
 import symbolTable.SymbolTable;
+import tokens.Symbol;
 import tokens.Token;
 
 public class ParseNode {
@@ -69,20 +71,26 @@ public class ParseNode {
 		}
 		return Scope.nullInstance();
 	}
-	public boolean containsBindingOf(String identifier) {
+	public boolean containsBindingOf(Symbol identifier) {
 		if(!hasScope()) {
 			return false;
 		}
 		SymbolTable symbolTable = scope.getSymbolTable();
 		return symbolTable.containsKey(identifier);
 	}
-	public Binding bindingOf(String identifier) {
+	public Binding bindingOf(Symbol identifier) {
 		if(!hasScope()) {
 			return Binding.nullInstance();
 		}
 		SymbolTable symbolTable = scope.getSymbolTable();
 		return symbolTable.lookup(identifier);
 	}
+	public boolean containsBindingOf(String identifier) {
+		return containsBindingOf(Symbol.intern(identifier));
+	}
+	public Binding bindingOf(String identifier) {
+		return bindingOf(Symbol.intern(identifier));
+	}
 	
 ////////////////////////////////////////////////////////////////////////////////////
 // dealing with children and parent
@@ -138,6 +146,32 @@ public class ParseNode {
 		return new PathToRootIterable(this);
 	}
 	
+////////////////////////////////////////////////////////////////////////////////////
+// structural queries on the subtree rooted here
+
+	public boolean containsNodeOfClass(Class<? extends ParseNode> nodeClass) {
+		if(nodeClass.isInstance(this)) {
+			return true;
+		}
+		for(ParseNode child : children) {
+			if(child.containsNodeOfClass(nodeClass)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	public boolean containsLextant(Lextant ...lextants) {
+		if(token.isLextant(lextants)) {
+			return true;
+		}
+		for(ParseNode child : children) {
+			if(child.containsLextant(lextants)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 ////////////////////////////////////////////////////////////////////////////////////
 // toString() 
 
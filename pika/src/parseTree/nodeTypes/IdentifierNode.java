@@ -5,12 +5,14 @@ import parseTree.ParseNodeVisitor;
 import logging.PikaLogger;
 import symbolTable.Binding;
 import symbolTable.Scope;
+import symbolTable.SymbolTable;
 import tokens.IdentifierToken;
+import tokens.Symbol;
 import tokens.Token;
 
 public class IdentifierNode extends ParseNode {
 	private Binding binding;
-	private Scope declarationScope;
+	private Scope declarationScope;		// where binding was found; null until resolved.
 
 	public IdentifierNode(Token token) {
 		super(token);
@@ -22,6 +24,7 @@ public class IdentifierNode extends ParseNode {
 		
 		if(node instanceof IdentifierNode) {
 			this.binding = ((IdentifierNode)node).binding;
+			this.declarationScope = ((IdentifierNode)node).declarationScope;
 		}
 		else {
 			this.binding = null;
@@ -41,17 +44,28 @@ public class IdentifierNode extends ParseNode {
 	public Binding getBinding() {
 		return binding;
 	}
+	// records where this identifier resolves to; later lookups return it without searching.
+	public void resolveTo(Binding binding, Scope declarationScope) {
+		this.binding = binding;
+		this.declarationScope = declarationScope;
+	}
+	public boolean isResolved() {
+		return declarationScope != null;
+	}
 	
 ////////////////////////////////////////////////////////////
 // Speciality functions
 
 	public Binding findVariableBinding() {
-		String identifier = token.getLexeme();
+		if(isResolved()) {
+			return binding;
+		}
+		Symbol identifier = SymbolTable.symbolOf(token);
 
 		for(ParseNode current : pathToRoot()) {
 			if(current.containsBindingOf(identifier)) {
-				declarationScope = current.getScope();
-				return current.bindingOf(identifier);
+				resolveTo(current.bindingOf(identifier), current.getScope());
+				return binding;
 			}
 		}
 		useBeforeDefineError();
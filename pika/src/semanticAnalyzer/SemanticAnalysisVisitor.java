@@ -12,9 +12,12 @@ import parseTree.ParseNode;
 import parseTree.ParseNodeVisitor;
 import parseTree.nodeTypes.*;
 import semanticAnalyzer.signatures.FunctionSignature;
+import semanticAnalyzer.signatures.Promotion;
+import semanticAnalyzer.signatures.Promotions;
 import semanticAnalyzer.types.*;
 import symbolTable.Binding;
 import symbolTable.Scope;
+import symbolTable.SymbolTable;
 import tokens.LextantToken;
 import tokens.Token;
 
@@ -157,9 +160,9 @@ class SemanticAnalysisVisitor extends ParseNodeVisitor.Default {
 		node.setType(declarationType);
 		
 		identifier.setType(declarationType);
-		addBinding(identifier, declarationType);
+		addBinding(identifier, declarationType, node.getDeclarationType() == Keyword.CONST);
 		while ((blocknode instanceof BlockNode) || (blocknode instanceof IfNode) || (blocknode instanceof WhileNode)) {
-			if (blocknode.getParent().containsBindingOf(identifier.getToken().getLexeme())) {
+			if (blocknode.getParent().containsBindingOf(SymbolTable.symbolOf(identifier.getToken()))) {
 				logError("Variable " + identifier.getToken().getLexeme() + "cannot be declared in this scope because the value cannot be decided");
 			}
 			blocknode = blocknode.getParent();
@@ -192,76 +195,19 @@ class SemanticAnalysisVisitor extends ParseNodeVisitor.Default {
 			left = node.child(0);
 			childTypes = Arrays.asList(left.getType().getType().getType(), right.getType().getType());
 		}
-		for (ParseNode nodes : node.pathToRoot()) {
-			for (ParseNode childnodes : nodes.getChildren()) {
-				if ((childnodes.getLocalScope() == identifier.getDeclarationScope()) && (childnodes instanceof DeclarationNode)) {
-					DeclarationNode decnode = (DeclarationNode) childnodes;
-					if (decnode.getDeclarationType() == Keyword.CONST) {
-						logError("Can't Assign a const declared variable");
-					}
-				}
-				else if ((childnodes.getLocalScope() == identifier.getDeclarationScope()) && (childnodes instanceof ParameterSpecification)) {
-					break;
-				}
-			}
+		if (identifier.findVariableBinding().isConstant()) {
+			logError("Can't Assign a const declared variable");
 		}
 
-		FunctionSignature signature = FunctionSignature.signatureOf(Punctuator.ASSIGN, childTypes);
-		if (signature.accepts(childTypes)) {
-			node.setType(signature.resultType());
+		Promotion promotion = Promotions.forOperands(Punctuator.ASSIGN, childTypes);
+		if (promotion.isNull()) {
+			logError("Assign not defined for types: " + childTypes);
 		}
 		else {
-			if ((left.getType().getType() == PrimitiveType.INTEGER) && (right.getType().getType() == PrimitiveType.FLOAT)) {
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.INTEGER) && (right.getType().getType() == PrimitiveType.CHAR)){
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.INTEGER) && (right.getType().getType() == PrimitiveType.RATIONAL)){
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.FLOAT) && (right.getType().getType() == PrimitiveType.INTEGER)) {
-				right.setType(PrimitiveType.FLOAT);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.FLOAT) && (right.getType().getType() == PrimitiveType.CHAR)) {
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.FLOAT) && (right.getType().getType() == PrimitiveType.RATIONAL)) {
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.CHAR) && (right.getType().getType() == PrimitiveType.INTEGER)) {
-				right.setType(PrimitiveType.CHAR);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.CHAR) && (right.getType().getType() == PrimitiveType.FLOAT)) {
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.CHAR) && (right.getType().getType() == PrimitiveType.RATIONAL)) {
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.RATIONAL) && (right.getType().getType() == PrimitiveType.INTEGER)) {
-				right.setType(PrimitiveType.RATIONAL);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.RATIONAL) && (right.getType().getType() == PrimitiveType.CHAR)) {
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.RATIONAL) && (right.getType().getType() == PrimitiveType.FLOAT)) {
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else {
-				logError("Assign not defined for types: " + childTypes);
+			if (promotion.promotesRight()) {
+				right.setType(promotion.rightType());
 			}
+			node.setType(promotion.resultType());
 		}
 	}
 	
@@ -318,15 +264,8 @@ class SemanticAnalysisVisitor extends ParseNodeVisitor.Default {
 		ParseNode right = node.child(1);
 		if (node.getToken().isLextant(Punctuator.CAST)) {
 			IdentifierNode identifier = (IdentifierNode) node.child(0);
-			for (ParseNode nodes : node.pathToRoot()) {
-				for (ParseNode childnodes : nodes.getChildren()) {
-					if ((childnodes.getLocalScope() == identifier.getDeclarationScope()) && (childnodes instanceof DeclarationNode)) {
-						DeclarationNode decnode = (DeclarationNode) childnodes;
-						if (decnode.getDeclarationType() == Keyword.CONST) {
-							logError("Can't cast a const declared variable");
-						}
-					}
-				}
+			if (identifier.findVariableBinding().isConstant()) {
+				logError("Can't cast a const declared variable");
 			}
 		}
 		List<Type> childTypes = null;
@@ -372,66 +311,20 @@ class SemanticAnalysisVisitor extends ParseNodeVisitor.Default {
 			childTypes = Arrays.asList(left.getType().getType(), right.getType().getType());
 		}
 		Lextant operator = operatorFor(node);
-		FunctionSignature signature = FunctionSignature.signatureOf(operator, childTypes);
+		Promotion promotion = Promotions.forOperands(operator, childTypes);
 		
-		if(signature.accepts(childTypes)) {
-			node.setType(signature.resultType());
+		if(promotion.isNull()) {
+			typeCheckError(node, childTypes);
+			node.setType(PrimitiveType.ERROR);
 		}
 		else {
-			if ((left.getType().getType() == PrimitiveType.INTEGER) && ((right.getType().getType() == PrimitiveType.FLOAT) || (right.getType().getType() == PrimitiveType.RATIONAL))) {
-				left.setType(right.getType().getType());
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.FLOAT) && (right.getType().getType() == PrimitiveType.INTEGER)) {
-				left.setType(right.getType().getType());
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.RATIONAL) && (right.getType().getType() == PrimitiveType.INTEGER)) {
-				left.setType(right.getType().getType());
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.INTEGER) && (right.getType().getType() == PrimitiveType.CHAR)) {
-				right.setType(left.getType().getType());
-				visitLeave(node);
+			if (promotion.promotesLeft()) {
+				left.setType(promotion.leftType());
 			}
-			else if ((left.getType().getType() == PrimitiveType.FLOAT) && (right.getType().getType() == PrimitiveType.CHAR)) {
-				left.setType(PrimitiveType.INTEGER);
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.RATIONAL) && (right.getType().getType() == PrimitiveType.CHAR)) {
-				left.setType(PrimitiveType.INTEGER);
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.CHAR) && ((right.getType().getType() == PrimitiveType.FLOAT) || (right.getType().getType() == PrimitiveType.RATIONAL))) {
-				left.setType(PrimitiveType.INTEGER);
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.CHAR) && (right.getType().getType() == PrimitiveType.INTEGER)) {
-				left.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.FLOAT) && (right.getType().getType() == PrimitiveType.RATIONAL)) {
-				left.setType(PrimitiveType.INTEGER);
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.RATIONAL) && (right.getType().getType() == PrimitiveType.FLOAT)) {
-				left.setType(PrimitiveType.INTEGER);
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else if ((left.getType().getType() == PrimitiveType.FLOAT) && (right.getType().getType() == PrimitiveType.FLOAT)) {
-				left.setType(PrimitiveType.INTEGER);
-				right.setType(PrimitiveType.INTEGER);
-				visitLeave(node);
-			}
-			else {
-				typeCheckError(node, childTypes);
-				node.setType(PrimitiveType.ERROR);
+			if (promotion.promotesRight()) {
+				right.setType(promotion.rightType());
 			}
+			node.setType(promotion.resultType());
 		}
 	}
 	
@@ -609,7 +502,7 @@ class SemanticAnalysisVisitor extends ParseNodeVisitor.Default {
 	@Override
 	public void visit(IdentifierNode node) {
 		if(!isBeingDeclared(node)) {		
-			Binding binding = node.findVariableBinding();
+			Binding binding = node.findVariableBinding();		// resolves node once, for every later phase
 			
 			node.setType(binding.getType().getType());
 			node.setBinding(binding);
@@ -633,9 +526,12 @@ class SemanticAnalysisVisitor extends ParseNodeVisitor.Default {
 		}
 	}
 	private void addBinding(IdentifierNode identifierNode, Type type) {
+		addBinding(identifierNode, type, false);
+	}
+	private void addBinding(IdentifierNode identifierNode, Type type, boolean isConstant) {
 		Scope scope = identifierNode.getLocalScope();
-		Binding binding = scope.createBinding(identifierNode, type);
-		identifierNode.setBinding(binding);
+		Binding binding = scope.createBinding(identifierNode, type, isConstant);
+		identifierNode.resolveTo(binding, scope);
 	}
 	
 	///////////////////////////////////////////////////////////////////////////
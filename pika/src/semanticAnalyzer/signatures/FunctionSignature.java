@@ -1,5 +1,7 @@
 package semanticAnalyzer.signatures;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import semanticAnalyzer.types.PrimitiveType;
@@ -42,6 +44,9 @@ public class FunctionSignature {
 	public Type resultType() {
 		return resultType;
 	}
+	List<Type> paramTypes() {
+		return Collections.unmodifiableList(Arrays.asList(paramTypes));
+	}
 	public boolean isNull() {
 		return false;
 	}
@@ -88,35 +93,9 @@ public class FunctionSignature {
 	
 
 	
-	// the switch here is ugly compared to polymorphism.  This should perhaps be a method on Lextant.
 	public static FunctionSignature signatureOf(Lextant lextant, List<Type> TypeList) {
 		assert(lextant instanceof Punctuator);	
-		Punctuator punctuator = (Punctuator)lextant;
-		
-		switch(punctuator) {
-		case ASSIGN:	return FunctionSignatures.signaturesOf(Punctuator.ASSIGN).acceptingSignature(TypeList);
-		case ADD:		return FunctionSignatures.signaturesOf(Punctuator.ADD).acceptingSignature(TypeList);
-		case SUBTRACT:	return FunctionSignatures.signaturesOf(Punctuator.SUBTRACT).acceptingSignature(TypeList);
-		case MULTIPLY:	return FunctionSignatures.signaturesOf(Punctuator.MULTIPLY).acceptingSignature(TypeList);
-		case DIVIDE:	return FunctionSignatures.signaturesOf(Punctuator.DIVIDE).acceptingSignature(TypeList);
-		case OVER:		return FunctionSignatures.signaturesOf(Punctuator.OVER).acceptingSignature(TypeList);
-		case EXPRESS_OVER:	return FunctionSignatures.signaturesOf(Punctuator.EXPRESS_OVER).acceptingSignature(TypeList);
-		case RATIONALIZE:	return FunctionSignatures.signaturesOf(Punctuator.RATIONALIZE).acceptingSignature(TypeList);
-		case GREATER:	return FunctionSignatures.signaturesOf(Punctuator.GREATER).acceptingSignature(TypeList);
-		case GREATER_EQUAL:	return FunctionSignatures.signaturesOf(Punctuator.GREATER_EQUAL).acceptingSignature(TypeList);
-		case LESS:		return FunctionSignatures.signaturesOf(Punctuator.LESS).acceptingSignature(TypeList);
-		case LESS_EQUAL:	return FunctionSignatures.signaturesOf(Punctuator.LESS_EQUAL).acceptingSignature(TypeList);
-		case EQUAL:		return FunctionSignatures.signaturesOf(Punctuator.EQUAL).acceptingSignature(TypeList);
-		case NOTEQUAL:	return FunctionSignatures.signaturesOf(Punctuator.NOTEQUAL).acceptingSignature(TypeList);
-		case CAST:		return FunctionSignatures.signaturesOf(Punctuator.CAST).acceptingSignature(TypeList);
-		case AND:		return FunctionSignatures.signaturesOf(Punctuator.AND).acceptingSignature(TypeList);
-		case OR:		return FunctionSignatures.signaturesOf(Punctuator.OR).acceptingSignature(TypeList);
-		case NOT:		return FunctionSignatures.signaturesOf(Punctuator.NOT).acceptingSignature(TypeList);
-		case NULL_PUNCTUATOR:return FunctionSignatures.signaturesOf(Punctuator.NULL_PUNCTUATOR).acceptingSignature(TypeList);
-	
-		default:
-			return neverMatchedSignature;
-		}
+		return FunctionSignatures.signature(lextant, TypeList);
 	}
 
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package semanticAnalyzer.signatures;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,15 +14,25 @@ import asmCodeGenerator.codeStorage.ASMOpcode;
 public class FunctionSignatures extends ArrayList<FunctionSignature> {
 	private static final long serialVersionUID = -4907792488209670697L;
 	private static Map<Object, FunctionSignatures> signaturesForKey = new HashMap<Object, FunctionSignatures>();
+	private static Map<Punctuator, FunctionSignatures> signaturesForPunctuator = new EnumMap<Punctuator, FunctionSignatures>(Punctuator.class);
 	
 	Object key;
+	private Map<List<Type>, FunctionSignature> signatureForTypes;		// first signature listed for each parameter list
 	
 	public FunctionSignatures(Object key, FunctionSignature ...functionSignatures) {
 		this.key = key;
+		Map<List<Type>, FunctionSignature> index = new HashMap<List<Type>, FunctionSignature>();
 		for(FunctionSignature functionSignature: functionSignatures) {
 			add(functionSignature);
+			if(!functionSignature.isNull() && !index.containsKey(functionSignature.paramTypes())) {
+				index.put(functionSignature.paramTypes(), functionSignature);
+			}
 		}
+		signatureForTypes = Collections.unmodifiableMap(index);
 		signaturesForKey.put(key, this);
+		if(key instanceof Punctuator) {
+			signaturesForPunctuator.put((Punctuator)key, this);
+		}
 	}
 	
 	public Object getKey() {
@@ -30,7 +42,13 @@ public class FunctionSignatures extends ArrayList<FunctionSignature> {
 		return this.key.equals(key);
 	}
 	
+	// an exact match is a single probe of the index; only ERROR operands,
+	// which every parameter accepts, need the scan.
 	public FunctionSignature acceptingSignature(List<Type> types) {
+		if(!types.contains(PrimitiveType.ERROR)) {
+			FunctionSignature signature = signatureForTypes.get(types);
+			return (signature == null) ? FunctionSignature.nullInstance() : signature;
+		}
 		for(FunctionSignature functionSignature: this) {
 			if(functionSignature.accepts(types)) {
 				return functionSignature;
@@ -49,6 +67,12 @@ public class FunctionSignatures extends ArrayList<FunctionSignature> {
 	public static FunctionSignatures nullSignatures = new FunctionSignatures(0, FunctionSignature.nullInstance());
 
 	public static FunctionSignatures signaturesOf(Object key) {
+		if(key instanceof Punctuator) {
+			FunctionSignatures signatures = signaturesForPunctuator.get(key);
+			if(signatures != null) {
+				return signatures;
+			}
+		}
 		if(signaturesForKey.containsKey(key)) {
 			return signaturesForKey.get(key);
 		}
@@ -0,0 +1,62 @@
+package semanticAnalyzer.signatures;
+
+import semanticAnalyzer.types.Type;
+
+//immutable
+// The outcome of type checking one operator use: the operand types after any
+// implicit promotion, and the signature that accepts them.
+public class Promotion {
+	private Type leftType;
+	private Type rightType;
+	private boolean promotesLeft;
+	private boolean promotesRight;
+	private FunctionSignature signature;
+
+
+	///////////////////////////////////////////////////////////////
+	// construction
+
+	Promotion(Type originalLeft, Type originalRight, Type leftType, Type rightType, FunctionSignature signature) {
+		this.leftType = leftType;
+		this.rightType = rightType;
+		this.promotesLeft = leftType != originalLeft;
+		this.promotesRight = rightType != originalRight;
+		this.signature = signature;
+	}
+	// no promotion: whatever signature accepts the operands as they are, if any.
+	static Promotion unpromoted(FunctionSignature signature) {
+		return new Promotion(null, null, null, null, signature);
+	}
+
+
+	///////////////////////////////////////////////////////////////
+	// accessors
+
+	public boolean isNull() {
+		return signature.isNull();
+	}
+	public FunctionSignature getSignature() {
+		return signature;
+	}
+	public Type resultType() {
+		return signature.resultType();
+	}
+	public boolean promotesLeft() {
+		return promotesLeft;
+	}
+	public boolean promotesRight() {
+		return promotesRight;
+	}
+	public Type leftType() {
+		return leftType;
+	}
+	public Type rightType() {
+		return rightType;
+	}
+
+	// Null object pattern
+	private static Promotion nullPromotion = unpromoted(FunctionSignature.nullInstance());
+	public static Promotion nullInstance() {
+		return nullPromotion;
+	}
+}
@@ -0,0 +1,109 @@
+package semanticAnalyzer.signatures;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+
+import lexicalAnalyzer.Lextant;
+import lexicalAnalyzer.Punctuator;
+import semanticAnalyzer.types.PrimitiveType;
+import semanticAnalyzer.types.Type;
+
+// The implicit promotions tried when no signature accepts an operator's
+// operands as they are.  Each step table maps a (left, right) pair of
+// PrimitiveTypes to the pair it is promoted to; steps are followed until some
+// signature of the operator accepts the pair, or no step applies.
+//
+// Every (operator, left, right) outcome is worked out once, in the static
+// block, so type checking an operator use is a single table probe.
+public class Promotions {
+	private static final int N_TYPES = PrimitiveType.values().length;
+	private static final int MAX_STEPS = N_TYPES * N_TYPES;		// longer means the steps cycle
+
+	// assignment promotes only the value being assigned.
+	private static PrimitiveType[][][] assignSteps = new PrimitiveType[N_TYPES][N_TYPES][];
+	private static PrimitiveType[][][] operatorSteps = new PrimitiveType[N_TYPES][N_TYPES][];
+	private static EnumMap<Punctuator, Promotion[][]> promotions = new EnumMap<Punctuator, Promotion[][]>(Punctuator.class);
+
+
+	/////////////////////////////////////////////////////////////////////////////////
+	// lookup
+
+	public static Promotion forOperands(Lextant operator, List<Type> types) {
+		if(operator instanceof Punctuator && types.size() == 2 &&
+				types.get(0) instanceof PrimitiveType && types.get(1) instanceof PrimitiveType) {
+			PrimitiveType left = (PrimitiveType)types.get(0);
+			PrimitiveType right = (PrimitiveType)types.get(1);
+			return promotions.get((Punctuator)operator)[left.ordinal()][right.ordinal()];
+		}
+		return Promotion.unpromoted(FunctionSignature.signatureOf(operator, types));
+	}
+
+
+	/////////////////////////////////////////////////////////////////////////////////
+	// building the tables
+
+	private static Promotion[][] resolveAll(Punctuator operator) {
+		PrimitiveType[][][] steps = (operator == Punctuator.ASSIGN) ? assignSteps : operatorSteps;
+		Promotion[][] result = new Promotion[N_TYPES][N_TYPES];
+		for(PrimitiveType left: PrimitiveType.values()) {
+			for(PrimitiveType right: PrimitiveType.values()) {
+				result[left.ordinal()][right.ordinal()] = resolve(operator, steps, left, right);
+			}
+		}
+		return result;
+	}
+	private static Promotion resolve(Punctuator operator, PrimitiveType[][][] steps, PrimitiveType left, PrimitiveType right) {
+		PrimitiveType leftType = left;
+		PrimitiveType rightType = right;
+		for(int i = 0; i < MAX_STEPS; i++) {
+			FunctionSignature signature = FunctionSignature.signatureOf(operator, Arrays.<Type>asList(leftType, rightType));
+			if(!signature.isNull()) {
+				return new Promotion(left, right, leftType, rightType, signature);
+			}
+			PrimitiveType[] step = steps[leftType.ordinal()][rightType.ordinal()];
+			if(step == null) {
+				break;
+			}
+			leftType = step[0];
+			rightType = step[1];
+		}
+		return Promotion.nullInstance();
+	}
+	private static void step(PrimitiveType[][][] steps, PrimitiveType left, PrimitiveType right, PrimitiveType toLeft, PrimitiveType toRight) {
+		steps[left.ordinal()][right.ordinal()] = new PrimitiveType[] { toLeft, toRight };
+	}
+
+	static {
+		step(assignSteps, PrimitiveType.INTEGER, PrimitiveType.FLOAT,		PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+		step(assignSteps, PrimitiveType.INTEGER, PrimitiveType.CHAR,		PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+		step(assignSteps, PrimitiveType.INTEGER, PrimitiveType.RATIONAL,	PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+		step(assignSteps, PrimitiveType.FLOAT, PrimitiveType.INTEGER,		PrimitiveType.FLOAT, PrimitiveType.FLOAT);
+		step(assignSteps, PrimitiveType.FLOAT, PrimitiveType.CHAR,			PrimitiveType.FLOAT, PrimitiveType.INTEGER);
+		step(assignSteps, PrimitiveType.FLOAT, PrimitiveType.RATIONAL,		PrimitiveType.FLOAT, PrimitiveType.INTEGER);
+		step(assignSteps, PrimitiveType.CHAR, PrimitiveType.INTEGER,		PrimitiveType.CHAR, PrimitiveType.CHAR);
+		step(assignSteps, PrimitiveType.CHAR, PrimitiveType.FLOAT,			PrimitiveType.CHAR, PrimitiveType.INTEGER);
+		step(assignSteps, PrimitiveType.CHAR, PrimitiveType.RATIONAL,		PrimitiveType.CHAR, PrimitiveType.INTEGER);
+		step(assignSteps, PrimitiveType.RATIONAL, PrimitiveType.INTEGER,	PrimitiveType.RATIONAL, PrimitiveType.RATIONAL);
+		step(assignSteps, PrimitiveType.RATIONAL, PrimitiveType.CHAR,		PrimitiveType.RATIONAL, PrimitiveType.INTEGER);
+		step(assignSteps, PrimitiveType.RATIONAL, PrimitiveType.FLOAT,		PrimitiveType.RATIONAL, PrimitiveType.INTEGER);
+
+		step(operatorSteps, PrimitiveType.INTEGER, PrimitiveType.FLOAT,		PrimitiveType.FLOAT, PrimitiveType.FLOAT);
+		step(operatorSteps, PrimitiveType.INTEGER, PrimitiveType.RATIONAL,	PrimitiveType.RATIONAL, PrimitiveType.RATIONAL);
+		step(operatorSteps, PrimitiveType.INTEGER, PrimitiveType.CHAR,		PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+		step(operatorSteps, PrimitiveType.FLOAT, PrimitiveType.INTEGER,		PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+		step(operatorSteps, PrimitiveType.FLOAT, PrimitiveType.CHAR,		PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+		step(operatorSteps, PrimitiveType.FLOAT, PrimitiveType.RATIONAL,	PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+		step(operatorSteps, PrimitiveType.FLOAT, PrimitiveType.FLOAT,		PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+		step(operatorSteps, PrimitiveType.RATIONAL, PrimitiveType.INTEGER,	PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+		step(operatorSteps, PrimitiveType.RATIONAL, PrimitiveType.CHAR,		PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+		step(operatorSteps, PrimitiveType.RATIONAL, PrimitiveType.FLOAT,	PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+		step(operatorSteps, PrimitiveType.CHAR, PrimitiveType.INTEGER,		PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+		step(operatorSteps, PrimitiveType.CHAR, PrimitiveType.FLOAT,		PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+		step(operatorSteps, PrimitiveType.CHAR, PrimitiveType.RATIONAL,		PrimitiveType.INTEGER, PrimitiveType.INTEGER);
+
+		for(Punctuator operator: Punctuator.values()) {
+			promotions.put(operator, resolveAll(operator));
+		}
+	}
+}
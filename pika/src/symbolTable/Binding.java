@@ -10,13 +10,18 @@ public class Binding {
 	private TextLocation textLocation;
 	private MemoryLocation memoryLocation;
 	private String lexeme;
+	private boolean isConstant;			// declared with const
 	
 	public Binding(Type type, TextLocation location, MemoryLocation memoryLocation, String lexeme) {
+		this(type, location, memoryLocation, lexeme, false);
+	}
+	public Binding(Type type, TextLocation location, MemoryLocation memoryLocation, String lexeme, boolean isConstant) {
 		super();
 		this.type = type;
 		this.textLocation = location;
 		this.memoryLocation = memoryLocation;
 		this.lexeme = lexeme;
+		this.isConstant = isConstant;
 	}
 	
 
@@ -38,6 +43,9 @@ public class Binding {
 	public MemoryLocation getMemoryLocation() {
 		return memoryLocation;
 	}
+	public boolean isConstant() {
+		return isConstant;
+	}
 	public void generateAddress(ASMCodeFragment code) {
 		memoryLocation.generateAddress(code, "%% " + lexeme);
 	}
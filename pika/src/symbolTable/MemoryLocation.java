@@ -6,6 +6,7 @@ import asmCodeGenerator.runtime.RunTime;
 
 public class MemoryLocation {
 	public static final String GLOBAL_VARIABLE_BLOCK = RunTime.GLOBAL_MEMORY_BLOCK;
+	public static final String TEMPORARY_VARIABLE_BLOCK = RunTime.TEMPORARY_MEMORY_BLOCK;
 	public static final String HEAP_VARIABLE_BLOCK = MemoryManager.MEM_MANAGER_ALLOCATE; 	
 	public static final String FRAME_POINTER = RunTime.FRAME_POINTER;
 	
@@ -79,18 +79,21 @@ public class Scope {
 ///////////////////////////////////////////////////////////////////////
 //bindings
 	public Binding createBinding(IdentifierNode identifierNode, Type type) {
+		return createBinding(identifierNode, type, false);
+	}
+	public Binding createBinding(IdentifierNode identifierNode, Type type, boolean isConstant) {
 		Token token = identifierNode.getToken();
 		symbolTable.errorIfAlreadyDefined(token);
 
 		String lexeme = token.getLexeme();
-		Binding binding = allocateNewBinding(type, token.getLocation(), lexeme);	
-		symbolTable.install(lexeme, binding);
+		Binding binding = allocateNewBinding(type, token.getLocation(), lexeme, isConstant);	
+		symbolTable.install(SymbolTable.symbolOf(token), binding);
 
 		return binding;
 	}
-	private Binding allocateNewBinding(Type type, TextLocation textLocation, String lexeme) {
+	private Binding allocateNewBinding(Type type, TextLocation textLocation, String lexeme, boolean isConstant) {
 		MemoryLocation memoryLocation = allocator.allocate(type.getSize());
-		return new Binding(type, textLocation, memoryLocation, lexeme);
+		return new Binding(type, textLocation, memoryLocation, lexeme, isConstant);
 	}
 	
 ///////////////////////////////////////////////////////////////////////
@@ -118,9 +121,9 @@ public class Scope {
 			return "scope: the-null-scope";
 		}
 		@Override
-		public Binding createBinding(IdentifierNode identifierNode, Type type) {
+		public Binding createBinding(IdentifierNode identifierNode, Type type, boolean isConstant) {
 			unscopedIdentifierError(identifierNode.getToken());
-			return super.createBinding(identifierNode, type);
+			return super.createBinding(identifierNode, type, isConstant);
 		}
 		// subscopes of null scope need their own strategy.  Assumes global block is static.
 		public Scope createSubscope() {
@@ -1,66 +1,150 @@
 package symbolTable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import logging.PikaLogger;
 
+import tokens.IdentifierToken;
+import tokens.Symbol;
 import tokens.Token;
 
+// bindings keyed on the id of the identifier's Symbol, in an open-addressing
+// table of ints: a lookup hashes and compares nothing but ints.
 public class SymbolTable {
-	private Map<String, Binding> table;
-	
+	private static final int EMPTY = -1;
+	private static final int STARTING_SIZE = 8;		// a power of two
+
+	private int[] ids;
+	private Binding[] bindings;
+	private int size;
+
 	public SymbolTable() {
-		table = new HashMap<String, Binding>();
+		ids = new int[STARTING_SIZE];
+		bindings = new Binding[STARTING_SIZE];
+		Arrays.fill(ids, EMPTY);
+		size = 0;
 	}
-	
-	
+
+
 	////////////////////////////////////////////////////////////////
 	// installation and lookup of identifiers
 
-	public Binding install(String identifier, Binding binding) {
-		table.put(identifier, binding);
+	public Binding install(Symbol identifier, Binding binding) {
+		int slot = slotFor(identifier.getId());
+		if(ids[slot] == EMPTY) {
+			ids[slot] = identifier.getId();
+			size++;
+		}
+		bindings[slot] = binding;
+		if(size * 2 > ids.length) {
+			grow();
+		}
 		return binding;
 	}
+	public Binding lookup(Symbol identifier) {
+		int slot = slotFor(identifier.getId());
+		return (ids[slot] == EMPTY) ? Binding.nullInstance() : bindings[slot];
+	}
+	public boolean containsKey(Symbol identifier) {
+		return ids[slotFor(identifier.getId())] != EMPTY;
+	}
+
+	public Binding install(String identifier, Binding binding) {
+		return install(Symbol.intern(identifier), binding);
+	}
 	public Binding lookup(String identifier) {
-		return table.getOrDefault(identifier, Binding.nullInstance());
+		return lookup(Symbol.intern(identifier));
 	}
-	
-	///////////////////////////////////////////////////////////////////////
-	// Map delegates	
-	
 	public boolean containsKey(String identifier) {
-		return table.containsKey(identifier);
+		return containsKey(Symbol.intern(identifier));
 	}
+
+	// the slot holding id, or the empty slot where it would go.
+	private int slotFor(int id) {
+		int mask = ids.length - 1;
+		int slot = (id * 0x9E3779B9) >>> 16 & mask;
+		while(ids[slot] != EMPTY && ids[slot] != id) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	private void grow() {
+		int[] oldIds = ids;
+		Binding[] oldBindings = bindings;
+		ids = new int[oldIds.length * 2];
+		bindings = new Binding[oldIds.length * 2];
+		Arrays.fill(ids, EMPTY);
+		for(int i = 0; i < oldIds.length; i++) {
+			if(oldIds[i] != EMPTY) {
+				int slot = slotFor(oldIds[i]);
+				ids[slot] = oldIds[i];
+				bindings[slot] = oldBindings[i];
+			}
+		}
+	}
+
+	///////////////////////////////////////////////////////////////////////
+	// Map delegates
+
 	public Set<String> keySet() {
-		return table.keySet();
+		Set<String> result = new LinkedHashSet<String>();
+		for(int i = 0; i < ids.length; i++) {
+			if(ids[i] != EMPTY) {
+				result.add(Symbol.forId(ids[i]).getText());
+			}
+		}
+		return result;
 	}
 	public Collection<Binding> values() {
-		return table.values();
+		List<Binding> result = new ArrayList<Binding>(size);
+		for(int i = 0; i < ids.length; i++) {
+			if(ids[i] != EMPTY) {
+				result.add(bindings[i]);
+			}
+		}
+		return result;
 	}
-	
+
 	///////////////////////////////////////////////////////////////////////
 	//error reporting
 
 	public void errorIfAlreadyDefined(Token token) {
-		if(containsKey(token.getLexeme())) {		
+		if(containsKey(symbolOf(token))) {
 			multipleDefinitionError(token);
 		}
 	}
+	public static Symbol symbolOf(Token token) {
+		if(token instanceof IdentifierToken) {
+			return ((IdentifierToken)token).getSymbol();
+		}
+		return Symbol.intern(token.getLexeme());
+	}
 	protected static void multipleDefinitionError(Token token) {
 		PikaLogger log = PikaLogger.getLogger("compiler.symbolTable");
-		log.severe("variable \"" + token.getLexeme() + 
+		log.severe("variable \"" + token.getLexeme() +
 				          "\" multiply defined at " + token.getLocation());
 	}
 
 	///////////////////////////////////////////////////////////////////////
 	// toString
 
+	// listed as a HashMap on the names would list them.
 	public String toString() {
+		Map<String, Binding> byName = new HashMap<String, Binding>();
+		for(int i = 0; i < ids.length; i++) {
+			if(ids[i] != EMPTY) {
+				byName.put(Symbol.forId(ids[i]).getText(), bindings[i]);
+			}
+		}
 		StringBuffer result = new StringBuffer("    symbol table: \n");
-		table.entrySet().forEach((entry) -> {
+		byName.entrySet().forEach((entry) -> {
 			result.append("        " + entry + "\n");
 		});
 		return result.toString();
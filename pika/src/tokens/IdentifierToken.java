@@ -3,14 +3,24 @@ package tokens;
 import inputHandler.TextLocation;
 
 public class IdentifierToken extends TokenImp {
-	protected IdentifierToken(TextLocation location, String lexeme) {
-		super(location, lexeme.intern());
+	private Symbol symbol;
+	
+	protected IdentifierToken(TextLocation location, Symbol symbol) {
+		super(location, symbol.getText());
+		this.symbol = symbol;
 	}
 	
-	public static IdentifierToken make(TextLocation location, String lexeme) {
-		IdentifierToken result = new IdentifierToken(location, lexeme);
+	public static IdentifierToken make(TextLocation location, Symbol symbol) {
+		IdentifierToken result = new IdentifierToken(location, symbol);
 		return result;
 	}
+	public static IdentifierToken make(TextLocation location, String lexeme) {
+		return make(location, Symbol.intern(lexeme));
+	}
+	
+	public Symbol getSymbol() {
+		return symbol;
+	}
 
 
 	@Override
@@ -4,6 +4,7 @@ import inputHandler.TextLocation;
 
 public class StringToken extends TokenImp {
 	protected String value;
+	private Symbol valueSymbol;
 	
 	protected StringToken(TextLocation location, String lexeme) {
 		super(location, lexeme);
@@ -17,11 +18,16 @@ public class StringToken extends TokenImp {
 
 	protected void setValue(String value) {
 		this.value = value;
+		this.valueSymbol = Symbol.intern(getValue());
 	}
 	
 	public String getValue() {
 		return value.substring(1, value.length()-1);
 	}
+	// the interned text between the quotes.
+	public Symbol getValueSymbol() {
+		return valueSymbol;
+	}
 	
 	@Override
 	protected String rawString() {
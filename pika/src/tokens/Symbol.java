@@ -0,0 +1,119 @@
+package tokens;
+
+import java.util.Arrays;
+
+/** The one canonical instance of a name or string-literal text, with a small
+ *  integer id.  Symbols are handed out by the compiler-wide interning table,
+ *  so two Symbols for the same text are the same object, and later phases can
+ *  compare them with == and key tables on the id.
+ *  <p>
+ *  The table can be probed with characters straight from the lexer's buffer;
+ *  a String is made only the first time a text is seen.
+ */
+public final class Symbol {
+	private final int id;
+	private final String text;
+	private final int hash;
+
+	private Symbol(int id, String text, int hash) {
+		this.id = id;
+		this.text = text;
+		this.hash = hash;
+	}
+
+	public int getId() {
+		return id;
+	}
+	public String getText() {
+		return text;
+	}
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	@Override
+	public String toString() {
+		return text;
+	}
+
+
+	////////////////////////////////////////////////////////////////////////////
+	// the interning table: open addressing on the text's hash, which is
+	// String.hashCode() computed over the characters.
+
+	private static Symbol[] slots = new Symbol[1024];
+	private static Symbol[] byId = new Symbol[512];
+	private static int count = 0;
+
+	public static synchronized Symbol intern(char[] chars, int length) {
+		int hash = 0;
+		for(int i = 0; i < length; i++) {
+			hash = 31 * hash + chars[i];
+		}
+		int mask = slots.length - 1;
+		for(int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			Symbol symbol = slots[slot];
+			if(symbol == null) {
+				return add(new String(chars, 0, length), hash, slot);
+			}
+			if(symbol.hash == hash && spells(symbol.text, chars, length)) {
+				return symbol;
+			}
+		}
+	}
+	public static synchronized Symbol intern(String text) {
+		int hash = text.hashCode();
+		int mask = slots.length - 1;
+		for(int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			Symbol symbol = slots[slot];
+			if(symbol == null) {
+				return add(text, hash, slot);
+			}
+			if(symbol.hash == hash && symbol.text.equals(text)) {
+				return symbol;
+			}
+		}
+	}
+	public static synchronized Symbol forId(int id) {
+		return byId[id];
+	}
+	public static synchronized int count() {
+		return count;
+	}
+
+	private static boolean spells(String text, char[] chars, int length) {
+		if(text.length() != length) {
+			return false;
+		}
+		for(int i = 0; i < length; i++) {
+			if(text.charAt(i) != chars[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	private static Symbol add(String text, int hash, int slot) {
+		Symbol symbol = new Symbol(count, text, hash);
+		if(count == byId.length) {
+			byId = Arrays.copyOf(byId, count * 2);
+		}
+		byId[count++] = symbol;
+		slots[slot] = symbol;
+		if(count * 2 > slots.length) {
+			rehash();
+		}
+		return symbol;
+	}
+	private static void rehash() {
+		slots = new Symbol[slots.length * 2];
+		int mask = slots.length - 1;
+		for(int i = 0; i < count; i++) {
+			Symbol symbol = byId[i];
+			int slot = symbol.hash & mask;
+			while(slots[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = symbol;
+		}
+	}
+}